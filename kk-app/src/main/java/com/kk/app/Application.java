@@ -1,6 +1,7 @@
 package com.kk.app;
 
 import cn.hutool.extra.spring.SpringUtil;
+import com.kk.playwright.service.PlaywrightWarmup;
 import com.kk.ui.JavaFXApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
@@ -14,6 +15,8 @@ public class Application {
         ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
                 .headless(false)  // 禁用headless模式以支持JavaFX
                 .run(args);
+        // 后台预热 Playwright 与浏览器（kk.playwright.warmup.enabled），不阻塞界面与 P2P 启动
+        context.getBean(PlaywrightWarmup.class).start();
         // 启动JavaFX应用, 如果p2p - relay 启动hop模式则不启用javafx
         if (!"HOP".equals(SpringUtil.getProperty("kk.p2p.relay.mode"))) {
 
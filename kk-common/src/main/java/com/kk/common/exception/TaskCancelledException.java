@@ -0,0 +1,12 @@
+package com.kk.common.exception;
+
+/**
+ * 任务被主动停止（区别于执行失败）
+ */
+public class TaskCancelledException extends KKException {
+
+    public TaskCancelledException(String message) {
+        super(message);
+    }
+
+}
@@ -4,7 +4,9 @@ import lombok.Data;
 import lombok.experimental.Accessors;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 @Data
 @Accessors(chain = true)
@@ -14,6 +16,26 @@ public class AutomationTask {
     private String name;
     private String description;
     private boolean headless;
+    /**
+     * 调度优先级，数值越大越先执行
+     */
+    private int priority;
+    /**
+     * 调度队列名，不同队列可配置不同的并发上限
+     */
+    private String queue = "default";
+    /**
+     * 执行配置档名称（default / turbo / 自定义），为空时使用全局默认
+     */
+    private String profile;
+    /**
+     * 网络拦截规则，为空时使用全局默认规则
+     */
+    private BlockRules blockRules;
+    /**
+     * 模板变量：执行时替换步骤 value / selector 中的 ${name} 占位符
+     */
+    private Map<String, String> variables = new HashMap<>();
     private List<TaskStep> steps = new ArrayList<>();
     private TaskStatus status = TaskStatus.PENDING;
 
@@ -31,4 +53,20 @@ public class AutomationTask {
         return this;
     }
 
+    /**
+     * 以当前任务为模板生成一个执行实例：新 ID、指定变量，步骤列表与模板共用（执行期间只读）
+     */
+    public AutomationTask instantiate(Map<String, String> variables) {
+        AutomationTask copy = new AutomationTask(name);
+        copy.description = description;
+        copy.headless = headless;
+        copy.priority = priority;
+        copy.queue = queue;
+        copy.profile = profile;
+        copy.blockRules = blockRules;
+        copy.steps = steps;
+        copy.variables = variables;
+        return copy;
+    }
+
 }
@@ -0,0 +1,33 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 网络请求拦截规则 - 命中任一规则的请求直接丢弃
+ */
+@Data
+@Accessors(chain = true)
+public class BlockRules {
+    /**
+     * 资源类型：image / font / media / stylesheet / script / xhr / fetch / other ...
+     */
+    private Set<String> resourceTypes = new HashSet<>();
+    /**
+     * URL 通配符：** 匹配任意字符，* 匹配除 / 以外的字符，例如 https://cdn.example.com/**.gif
+     */
+    private List<String> urlGlobs = new ArrayList<>();
+    /**
+     * 域名列表，同时匹配其子域名，例如 google-analytics.com
+     */
+    private List<String> domains = new ArrayList<>();
+
+    public boolean isEmpty() {
+        return resourceTypes.isEmpty() && urlGlobs.isEmpty() && domains.isEmpty();
+    }
+}
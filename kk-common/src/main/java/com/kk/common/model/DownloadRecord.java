@@ -0,0 +1,25 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 单个 DOWNLOAD 步骤的下载记录
+ *
+ * 说明：
+ * - durationNanos 为从点击触发到写盘完成的总耗时，bytesPerSecond 按其计算
+ * - checksum 为十六进制摘要，algorithm 为 none 时为 null
+ */
+@Data
+@Accessors(chain = true)
+public class DownloadRecord {
+    private int index;
+    private String path;
+    private String url;
+    private String suggestedFilename;
+    private long bytes;
+    private long durationNanos;
+    private long bytesPerSecond;
+    private String algorithm;
+    private String checksum;
+}
@@ -0,0 +1,84 @@
+package com.kk.common.model;
+
+import com.kk.common.constant.Constants;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 执行配置档 - 把影响性能的浏览器/截图/日志选项集中在一处
+ *
+ * 内置两档：
+ * - default：演示用，慢动作 + 1920x1080 + 整页 PNG 截图 + 每步日志 + 导航等待 load
+ * - turbo：生产无头运行，无慢动作 + 较小视口 + 视口 JPEG 截图 + 抽样日志 + 精简渲染的 Chromium 参数
+ *   + 导航等待 DOMContentLoaded（不等图片等子资源，后续步骤按需等待元素）
+ */
+@Data
+@Accessors(chain = true)
+public class ExecutionProfile {
+
+    public static final String DEFAULT = "default";
+    public static final String TURBO = "turbo";
+
+    private String name;
+    private double slowMo;
+    private int viewportWidth;
+    private int viewportHeight;
+    private boolean screenshotFullPage;
+    /**
+     * 截图格式：png / jpeg
+     */
+    private String screenshotType = "png";
+    /**
+     * JPEG 质量（0-100），仅 jpeg 有效
+     */
+    private int screenshotQuality = 80;
+    /**
+     * 日志抽样：每 N 个步骤输出一条步骤日志，1 表示全部输出（任务起止与错误始终输出）
+     */
+    private int logSampleEvery = 1;
+    /**
+     * NAVIGATE 未指定 waitUntil 时的导航完成条件
+     */
+    private TaskStep.NavigationWait navigationWait = TaskStep.NavigationWait.LOAD;
+    /**
+     * 额外的 Chromium 启动参数
+     */
+    private List<String> chromiumArgs = new ArrayList<>();
+
+    public static ExecutionProfile defaults() {
+        return new ExecutionProfile()
+                .setName(DEFAULT)
+                .setSlowMo(Constants.DEFAULT_SLOW_MO)
+                .setViewportWidth(Constants.DEFAULT_VIEWPORT_WIDTH)
+                .setViewportHeight(Constants.DEFAULT_VIEWPORT_HEIGHT)
+                .setScreenshotFullPage(true);
+    }
+
+    public static ExecutionProfile turbo() {
+        return new ExecutionProfile()
+                .setName(TURBO)
+                .setSlowMo(0)
+                .setViewportWidth(1280)
+                .setViewportHeight(720)
+                .setScreenshotFullPage(false)
+                .setScreenshotType("jpeg")
+                .setScreenshotQuality(70)
+                .setLogSampleEvery(10)
+                .setNavigationWait(TaskStep.NavigationWait.DOM_CONTENT_LOADED)
+                .setChromiumArgs(new ArrayList<>(List.of(
+                        "--disable-gpu",
+                        "--disable-dev-shm-usage",
+                        "--disable-extensions",
+                        "--disable-background-networking",
+                        "--disable-background-timer-throttling",
+                        "--disable-backgrounding-occluded-windows",
+                        "--disable-renderer-backgrounding",
+                        "--disable-features=Translate,MediaRouter,OptimizationHints",
+                        "--hide-scrollbars",
+                        "--mute-audio",
+                        "--no-first-run")));
+    }
+}
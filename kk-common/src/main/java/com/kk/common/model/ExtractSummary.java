@@ -0,0 +1,24 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 单个 EXTRACT 步骤的提取汇总
+ *
+ * 说明：
+ * - total 为页面上匹配的行数，rows 为实际写出的行数；受 maxRows 限制时 truncated 为 true
+ * - nanos 为页面内取数与写出的总耗时，chunks 为页面内调用次数
+ */
+@Data
+@Accessors(chain = true)
+public class ExtractSummary {
+    private int index;
+    private String sink;
+    private String target;
+    private int total;
+    private int rows;
+    private int chunks;
+    private long nanos;
+    private boolean truncated;
+}
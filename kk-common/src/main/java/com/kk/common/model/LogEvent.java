@@ -0,0 +1,48 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+
+/**
+ * 结构化执行日志事件
+ *
+ * 说明：
+ * - message 为带 {} 占位符的模板，args 按顺序填充；只在需要展示时才拼接字符串
+ * - code 为稳定的事件代码（如 STEP_DONE），便于对 JSONL 日志做过滤与统计
+ * - step 为步骤序号（0 起），任务级事件为 -1
+ */
+@Data
+@Accessors(chain = true)
+public class LogEvent {
+
+    public enum Level {
+        INFO, WARN, ERROR
+    }
+
+    private long timestamp;
+    private int step = -1;
+    private Level level;
+    private String code;
+    private String message;
+    private List<Object> args;
+
+    /**
+     * 按模板拼接为可读文本
+     */
+    public String render() {
+        if (message == null) return code;
+        if (args == null || args.isEmpty()) return message;
+
+        StringBuilder sb = new StringBuilder(message.length() + 32);
+        int argIndex = 0;
+        int from = 0;
+        int at;
+        while ((at = message.indexOf("{}", from)) >= 0 && argIndex < args.size()) {
+            sb.append(message, from, at).append(args.get(argIndex++));
+            from = at + 2;
+        }
+        return sb.append(message, from, message.length()).toString();
+    }
+}
@@ -0,0 +1,30 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 执行日志摘要：完整日志见 TaskResult.logFile
+ */
+@Data
+@Accessors(chain = true)
+public class LogSummary {
+    /**
+     * 事件总数
+     */
+    private long total;
+    private long warnings;
+    private long errors;
+    /**
+     * 超出环形缓冲容量、未保留在 TaskResult.logs 中的事件数
+     */
+    private long evicted;
+    /**
+     * 写入日志文件失败（队列已满或 I/O 错误）丢失的事件数
+     */
+    private long fileDropped;
+    /**
+     * 最后一条错误事件的文本
+     */
+    private String lastError;
+}
@@ -0,0 +1,37 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 单次任务的网络统计
+ */
+@Data
+@Accessors(chain = true)
+public class NetworkStats {
+    /**
+     * 被拦截丢弃的请求数
+     */
+    private long blockedRequests;
+    /**
+     * 拦截节省字节数的估算值：被拦截的请求没有发出，真实大小无从得知，按资源类型的典型大小累加，
+     * 只适合比较拦截规则的大致效果，不能当作实测流量
+     */
+    private long estimatedSavedBytes;
+    /**
+     * 静态资源缓存命中数（含 304 验证命中）
+     */
+    private long cacheHits;
+    /**
+     * 静态资源缓存未命中数
+     */
+    private long cacheMisses;
+    /**
+     * 已回源但响应不可缓存（no-store / private / Set-Cookie 等）的请求数，不计入未命中
+     */
+    private long cacheNotStorable;
+    /**
+     * 由缓存直接返回的字节数
+     */
+    private long cacheBytesServed;
+}
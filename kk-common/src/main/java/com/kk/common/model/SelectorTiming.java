@@ -0,0 +1,37 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 单个选择器在一次执行中的解析耗时汇总（纳秒）
+ *
+ * 说明：
+ * - 解析耗时指等待元素出现（可见）所用的时间，不含随后的点击/填充动作
+ * - retries 为分片等待中超时重试的片数，多表示元素出现得慢
+ * - matchCount 为首次解析成功时匹配到的元素数，大于 1 说明选择器不唯一，操作的是第一个匹配
+ */
+@Data
+@Accessors(chain = true)
+public class SelectorTiming {
+    private String selector;
+    private int calls;
+    private int retries;
+    private int failures;
+    private long totalNanos;
+    private long maxNanos;
+    private int matchCount = -1;
+
+    /**
+     * 合并另一段统计（如崩溃恢复前的会话）
+     */
+    public SelectorTiming merge(SelectorTiming other) {
+        calls += other.calls;
+        retries += other.retries;
+        failures += other.failures;
+        totalNanos += other.totalNanos;
+        maxNanos = Math.max(maxNanos, other.maxNanos);
+        if (matchCount < 0) matchCount = other.matchCount;
+        return this;
+    }
+}
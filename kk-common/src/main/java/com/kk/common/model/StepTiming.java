@@ -0,0 +1,30 @@
+package com.kk.common.model;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 单个步骤的耗时拆分（纳秒）
+ *
+ * 说明：
+ * - queueNanos：上一步结束到本步动作开始（节流、停止检查等）
+ * - actionNanos：步骤动作本身（含等待元素可操作、驱动锁竞争）
+ * - postWaitNanos：动作完成后的就绪等待
+ * - fused：与相邻步骤合并在一次页面内脚本中执行，actionNanos 为整组耗时的平均分摊
+ */
+@Data
+@Accessors(chain = true)
+public class StepTiming {
+    private int index;
+    private TaskStep.StepType type;
+    private String description;
+    private long queueNanos;
+    private long actionNanos;
+    private long postWaitNanos;
+    private boolean success;
+    private boolean fused;
+
+    public long getTotalNanos() {
+        return queueNanos + actionNanos + postWaitNanos;
+    }
+}
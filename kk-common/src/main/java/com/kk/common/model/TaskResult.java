@@ -1,7 +1,9 @@
 package com.kk.common.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
@@ -9,6 +11,8 @@ import java.util.List;
 
 @Data
 @Builder
+@NoArgsConstructor
+@AllArgsConstructor
 public class TaskResult {
     private String taskId;
     private String taskName;
@@ -16,8 +20,61 @@ public class TaskResult {
     private LocalDateTime startTime;
     private LocalDateTime endTime;
     private long duration;
+    /**
+     * 本次执行使用的执行配置档，便于对比不同配置档的耗时
+     */
+    private String profile;
+    /**
+     * 最近的执行日志（环形缓冲，条数受 kk.automation.log.ringCapacity 限制）
+     */
     @Builder.Default
     private List<String> logs = new ArrayList<>();
+    /**
+     * 本次执行的完整结构化日志（JSONL）路径；未启用文件日志时为 null
+     */
+    private String logFile;
+    private LogSummary logSummary;
+    /**
+     * 各步骤耗时拆分，按执行顺序排列；失败步骤也会记录
+     */
+    @Builder.Default
+    private List<StepTiming> stepTimings = new ArrayList<>();
+    /**
+     * 本次执行解析最慢的选择器（按累计解析耗时降序，条数受 kk.metrics.selectors.slowTopN 限制）
+     */
+    @Builder.Default
+    private List<SelectorTiming> slowSelectors = new ArrayList<>();
+    /**
+     * 依赖图任务的关键路径耗时（毫秒）：各依赖链上步骤耗时之和的最大值；线性任务为 null
+     */
+    private Long criticalPathMs;
+    /**
+     * 各 EXTRACT 步骤的提取汇总；sink=result 的行写入 data（键为步骤 ID，无 ID 时为 step<序号>）
+     */
+    @Builder.Default
+    private List<ExtractSummary> extracts = new ArrayList<>();
+    /**
+     * 各 DOWNLOAD 步骤的下载记录（路径、字节数、吞吐、校验和）
+     */
+    @Builder.Default
+    private List<DownloadRecord> downloads = new ArrayList<>();
     private String errorMessage;
+    private NetworkStats network;
+    /**
+     * 浏览器崩溃/断开后从断点恢复的次数
+     */
+    private int resumeCount;
+    /**
+     * 被停止的任务：从发出停止请求到任务退出并关闭会话的毫秒数；未被停止时为 null
+     */
+    private Long stopLatencyMs;
+    /**
+     * 失败追踪目录（trace.json / page.html / screenshot.png）；未失败、未超过耗时阈值或未开启时为 null
+     */
+    private String traceArtifact;
+    /**
+     * 本次执行中失败追踪采集的累计耗时（纳秒，不含写盘）
+     */
+    private long traceOverheadNanos;
     private Object data;
 }
\ No newline at end of file
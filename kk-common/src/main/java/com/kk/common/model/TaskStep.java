@@ -3,17 +3,66 @@ package com.kk.common.model;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 @Data
 @Accessors(chain = true)
 public class TaskStep {
+    /**
+     * 步骤 ID，供其他步骤的 dependsOn 引用；线性任务可为空
+     */
+    private String id;
+    /**
+     * 依赖的步骤 ID：任一步骤声明了依赖时任务按依赖图执行，未声明依赖的步骤作为起点；
+     * 均未声明时按列表顺序线性执行
+     */
+    private List<String> dependsOn = new ArrayList<>();
     private StepType type;
     private String selector;
     private String value;
     private String description;
+    /**
+     * 步骤完成后等待就绪的上限（毫秒），就绪条件满足即进入下一步，不再固定休眠
+     */
     private long delay = 500;
+    /**
+     * 就绪条件，AUTO 按步骤类型自动选择；NAVIGATION 在短宽限期内发生跳转（或 URL 变化）时等到 DOMContentLoaded，
+     * 没有跳转则立即就绪
+     */
+    private Readiness readiness = Readiness.AUTO;
+    /**
+     * 就绪条件参数：SELECTOR_* 为选择器，PREDICATE 为页面内 JS 表达式/函数
+     */
+    private String readinessTarget;
+    /**
+     * NAVIGATE 的导航完成条件，为空时使用执行配置档的 navigationWait；SELECTOR 等待本步 selector 可见
+     */
+    private NavigationWait waitUntil;
+    /**
+     * 节流：与上一步开始时间的最小间隔（毫秒），0 表示不节流
+     */
+    private long throttle;
+    /**
+     * 步骤扩展参数，按步骤类型解释；如 SCREENSHOT 的 type / quality / fullPage / clip / scale
+     */
+    private Map<String, String> params = new HashMap<>();
 
     public enum StepType {
-        NAVIGATE, CLICK, FILL, SCREENSHOT, WAIT, SCRIPT, SCROLL, HOVER
+        NAVIGATE, CLICK, FILL, SCREENSHOT, WAIT, SCRIPT, SCROLL, HOVER, EXTRACT, DOWNLOAD
+    }
+
+    /**
+     * 导航完成条件：COMMIT 收到响应即返回，越往后等待越久
+     */
+    public enum NavigationWait {
+        COMMIT, DOM_CONTENT_LOADED, LOAD, NETWORK_IDLE, SELECTOR
+    }
+
+    public enum Readiness {
+        AUTO, NONE, NAVIGATION, LOAD, DOM_CONTENT_LOADED, NETWORK_IDLE, SELECTOR_VISIBLE, SELECTOR_STABLE, PREDICATE
     }
 
     public static TaskStep navigate(String url) {
@@ -45,6 +94,52 @@ public class TaskStep {
                 .setDescription("截图: " + path);
     }
 
+    /**
+     * 批量提取：selector 为行选择器，fields 为字段映射（name=selector@attr，分号分隔），
+     * output 为输出文件（.csv / .jsonl），为空时写入 TaskResult.data
+     */
+    public static TaskStep extract(String rowSelector, String fields, String output) {
+        return new TaskStep()
+                .setType(StepType.EXTRACT)
+                .setSelector(rowSelector)
+                .setValue(output)
+                .param("fields", fields)
+                .setDescription("提取: " + rowSelector);
+    }
+
+    /**
+     * 下载：点击 selector 触发下载，流式写入 output（文件路径，或以 / 结尾的目录）
+     */
+    public static TaskStep download(String selector, String output) {
+        return new TaskStep()
+                .setType(StepType.DOWNLOAD)
+                .setSelector(selector)
+                .setValue(output)
+                .setDescription("下载: " + output);
+    }
+
+    public TaskStep waitUntil(NavigationWait wait, String selector) {
+        return this.setWaitUntil(wait).setSelector(selector);
+    }
+
+    public TaskStep param(String key, String value) {
+        this.params.put(key, value);
+        return this;
+    }
+
+    public String param(String key) {
+        return params == null ? null : params.get(key);
+    }
+
+    public TaskStep after(String... stepIds) {
+        this.dependsOn.addAll(List.of(stepIds));
+        return this;
+    }
+
+    public TaskStep readyWhen(Readiness readiness, String target) {
+        return this.setReadiness(readiness).setReadinessTarget(target);
+    }
+
     public static TaskStep waitFor(String selector, int timeout) {
         return new TaskStep()
                 .setType(StepType.WAIT)
@@ -0,0 +1,47 @@
+package com.kk.common.utils;
+
+import java.util.Map;
+
+public class Placeholders {
+
+    // 替换文本中的 ${name} 占位符
+    // 未定义的变量及非标识符内容（如 JS 模板字符串里的 ${a + b}）原样保留
+    public static String resolve(String text, Map<String, String> variables) {
+        if (text == null || variables == null || variables.isEmpty() || !text.contains("${")) {
+            return text;
+        }
+
+        StringBuilder sb = new StringBuilder(text.length() + 16);
+        int pos = 0;
+        while (pos < text.length()) {
+            int start = text.indexOf("${", pos);
+            if (start < 0) break;
+            int end = text.indexOf('}', start + 2);
+            if (end < 0) break;
+
+            String name = text.substring(start + 2, end);
+            String value = isName(name) ? variables.get(name) : null;
+            if (value == null) {
+                sb.append(text, pos, start + 2);
+                pos = start + 2;
+                continue;
+            }
+            sb.append(text, pos, start).append(value);
+            pos = end + 1;
+        }
+        sb.append(text, pos, text.length());
+        return sb.toString();
+    }
+
+    // 变量名：字母或下划线开头，后接字母、数字、下划线、点、短横线
+    private static boolean isName(String name) {
+        if (name.isEmpty()) return false;
+        char first = name.charAt(0);
+        if (!Character.isLetter(first) && first != '_') return false;
+        for (int i = 1; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '.' && c != '-') return false;
+        }
+        return true;
+    }
+}
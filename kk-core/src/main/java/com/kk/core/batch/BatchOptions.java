@@ -0,0 +1,52 @@
+package com.kk.core.batch;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.nio.file.Path;
+
+/**
+ * 批量执行参数
+ */
+@Data
+@Accessors(chain = true)
+public class BatchOptions {
+
+    public enum InputFormat {
+        AUTO, CSV, JSONL
+    }
+
+    private Path input;
+    private InputFormat format = InputFormat.AUTO;
+    private char csvDelimiter = ',';
+
+    /**
+     * 逐行结果输出（JSONL）
+     */
+    private Path output;
+
+    /**
+     * 断点文件，为空时使用 output + ".checkpoint"
+     */
+    private Path checkpoint;
+
+    /**
+     * 并行执行的行数（同时打开的浏览器会话数），&lt;= 0 时使用全局配置
+     */
+    private int parallelism;
+
+    /**
+     * 从第几行（0 起，不含表头）开始；resume 为 true 且断点文件存在时以断点为准
+     */
+    private long startOffset;
+
+    /**
+     * 是否从断点续跑：跳过已完成的行，输出追加写入
+     */
+    private boolean resume;
+
+    /**
+     * 最多执行的行数，&lt;= 0 表示不限
+     */
+    private long limit;
+}
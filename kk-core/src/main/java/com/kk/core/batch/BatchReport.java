@@ -0,0 +1,23 @@
+package com.kk.core.batch;
+
+/**
+ * 批量执行汇总
+ *
+ * @param startOffset 本次起始行
+ * @param nextOffset  下次续跑的起始行（此前的行均已完成并写入输出）
+ * @param executed    本次执行的行数
+ * @param succeeded   成功行数
+ * @param failed      失败行数
+ * @param elapsedMs   总耗时（毫秒）
+ * @param stopped     是否被中途停止
+ */
+public record BatchReport(
+        long startOffset,
+        long nextOffset,
+        long executed,
+        long succeeded,
+        long failed,
+        long elapsedMs,
+        boolean stopped
+) {
+}
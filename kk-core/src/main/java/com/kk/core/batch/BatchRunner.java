@@ -0,0 +1,313 @@
+package com.kk.core.batch;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kk.common.exception.KKException;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+import com.kk.core.repository.TaskRepository;
+import com.kk.core.service.AutomationExecutor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * 数据驱动的批量执行 - 同一任务模板 × 流式数据集
+ *
+ * 说明：
+ * - 输入按行流式读取（CSV / JSONL），每行作为变量生成一个任务实例，替换步骤中的 ${name}
+ * - parallelism 个工作线程各自取行执行，同时打开的会话数还受执行器并发名额约束
+ * - 结果逐行追加到输出 JSONL；每 checkpointEvery 行刷盘并写断点（已连续完成的下一行）
+ * - 续跑语义为至少一次：断点之后已完成的行会被重跑，输出中可按 offset 去重
+ * - 每行执行完即从任务仓储中删除，长时间批量执行不会累积内存
+ */
+@Slf4j
+@Service
+public class BatchRunner {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Value("${kk.batch.parallelism:${kk.automation.maxConcurrentTasks:4}}")
+    private int defaultParallelism;
+
+    /**
+     * 每完成多少行刷盘并写一次断点
+     */
+    @Value("${kk.batch.checkpointEvery:100}")
+    private int checkpointEvery;
+
+    /**
+     * 每完成多少行输出一次进度日志
+     */
+    @Value("${kk.batch.progressEvery:1000}")
+    private int progressEvery;
+
+    private final AutomationExecutor automationExecutor;
+    private final TaskRepository taskRepository;
+    private final Map<String, AtomicBoolean> running = new ConcurrentHashMap<>();
+
+    public BatchRunner(@Lazy AutomationExecutor automationExecutor, TaskRepository taskRepository) {
+        this.automationExecutor = automationExecutor;
+        this.taskRepository = taskRepository;
+    }
+
+    /**
+     * 执行批量任务，阻塞直到数据读完、达到 limit 或被停止
+     */
+    public BatchReport run(AutomationTask template, BatchOptions options, Consumer<String> logCallback) {
+        if (options.getInput() == null || options.getOutput() == null) {
+            throw new KKException("批量执行需要指定输入与输出文件");
+        }
+        Path checkpointFile = options.getCheckpoint() != null
+                ? options.getCheckpoint()
+                : options.getOutput().resolveSibling(options.getOutput().getFileName() + ".checkpoint");
+
+        long startOffset = Math.max(0, options.getStartOffset());
+        if (options.isResume()) {
+            Long saved = readCheckpoint(checkpointFile);
+            if (saved != null) {
+                startOffset = saved;
+            }
+        }
+
+        AtomicBoolean stop = new AtomicBoolean(false);
+        if (running.putIfAbsent(template.getId(), stop) != null) {
+            throw new KKException("该批量任务正在执行: " + template.getName());
+        }
+
+        int parallelism = Math.max(1, options.getParallelism() > 0 ? options.getParallelism() : defaultParallelism);
+        long begin = System.currentTimeMillis();
+        StandardOpenOption mode = options.isResume() ? StandardOpenOption.APPEND : StandardOpenOption.TRUNCATE_EXISTING;
+
+        try (RowReader reader = RowReader.open(options.getInput(), options.getFormat(), options.getCsvDelimiter());
+             BufferedWriter writer = Files.newBufferedWriter(options.getOutput(), StandardCharsets.UTF_8,
+                     StandardOpenOption.CREATE, StandardOpenOption.WRITE, mode)) {
+
+            long skipped = reader.skip(startOffset);
+            logCallback.accept("开始批量执行: " + template.getName() + " (起始行: " + startOffset
+                    + ", 并行: " + parallelism + ")");
+
+            Progress progress = new Progress(startOffset, writer, checkpointFile, logCallback);
+            Feed feed = new Feed(reader, startOffset, options.getLimit());
+            AtomicReference<Exception> failure = new AtomicReference<>();
+
+            if (skipped == startOffset) {
+                try (ExecutorService workers = Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("kk-batch-", 0).factory())) {
+                    for (int i = 0; i < parallelism; i++) {
+                        workers.execute(() -> workLoop(template, feed, progress, stop, failure));
+                    }
+                }
+            }
+
+            progress.finish();
+            if (failure.get() != null) {
+                throw new KKException("批量执行中断: " + failure.get().getMessage(), failure.get());
+            }
+
+            BatchReport report = new BatchReport(startOffset, progress.watermark, progress.executed,
+                    progress.succeeded, progress.failed, System.currentTimeMillis() - begin, stop.get());
+            logCallback.accept("批量执行结束: 执行 " + report.executed() + " 行, 成功 " + report.succeeded()
+                    + ", 失败 " + report.failed() + ", 下次起始行 " + report.nextOffset());
+            return report;
+
+        } catch (IOException e) {
+            throw new KKException("批量执行读写失败: " + e.getMessage(), e);
+        } finally {
+            running.remove(template.getId());
+        }
+    }
+
+    /**
+     * 请求停止：不再取新行，执行中的行完成后返回
+     */
+    public boolean stop(String templateId) {
+        AtomicBoolean stop = running.get(templateId);
+        if (stop == null) return false;
+        stop.set(true);
+        return true;
+    }
+
+    public boolean isRunning(String templateId) {
+        return running.containsKey(templateId);
+    }
+
+    private void workLoop(AutomationTask template, Feed feed, Progress progress,
+                          AtomicBoolean stop, AtomicReference<Exception> failure) {
+        while (!stop.get()) {
+            Feed.Row row;
+            try {
+                row = feed.next();
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+                stop.set(true);
+                return;
+            }
+            if (row == null) return;
+
+            AutomationTask task = template.instantiate(row.values());
+            String line;
+            boolean success;
+            try {
+                TaskResult result = automationExecutor.executeTask(task, msg ->
+                        log.debug("[{} #{}] {}", template.getName(), row.offset(), msg));
+                success = result.isSuccess();
+                line = toLine(row.offset(), task.getId(), success, result.getDuration(), result.getErrorMessage(), result.getData());
+            } catch (Exception e) {
+                success = false;
+                line = toLine(row.offset(), task.getId(), false, 0, e.getMessage(), null);
+            } finally {
+                taskRepository.deleteTask(task.getId());
+            }
+
+            try {
+                progress.complete(row.offset(), line, success);
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+                stop.set(true);
+                return;
+            }
+        }
+    }
+
+    private static String toLine(long offset, String taskId, boolean success, long durationMs, String error, Object data) {
+        Map<String, Object> line = new LinkedHashMap<>();
+        line.put("offset", offset);
+        line.put("taskId", taskId);
+        line.put("success", success);
+        line.put("durationMs", durationMs);
+        line.put("error", error);
+        line.put("data", data);
+        try {
+            return MAPPER.writeValueAsString(line);
+        } catch (JsonProcessingException e) {
+            line.put("data", String.valueOf(data));
+            try {
+                return MAPPER.writeValueAsString(line);
+            } catch (JsonProcessingException ex) {
+                throw new KKException("结果序列化失败", ex);
+            }
+        }
+    }
+
+    private static Long readCheckpoint(Path file) {
+        if (!Files.exists(file)) return null;
+        try {
+            Map<?, ?> saved = MAPPER.readValue(file.toFile(), Map.class);
+            Object next = saved.get("nextOffset");
+            return next instanceof Number n ? n.longValue() : null;
+        } catch (IOException e) {
+            log.warn("读取批量断点失败，从头开始: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 串行化取行，多个工作线程共享
+     */
+    private static final class Feed {
+        private final RowReader reader;
+        private final long end;
+        private long nextOffset;
+
+        private record Row(long offset, Map<String, String> values) {
+        }
+
+        private Feed(RowReader reader, long startOffset, long limit) {
+            this.reader = reader;
+            this.nextOffset = startOffset;
+            this.end = limit > 0 ? startOffset + limit : Long.MAX_VALUE;
+        }
+
+        private synchronized Row next() throws IOException {
+            if (nextOffset >= end) return null;
+            Map<String, String> values = reader.next();
+            return values == null ? null : new Row(nextOffset++, values);
+        }
+    }
+
+    /**
+     * 结果写出与断点推进：断点只推进到连续完成的行，乱序完成的行先记在 done 中
+     */
+    private final class Progress {
+        private final BufferedWriter writer;
+        private final Path checkpointFile;
+        private final Consumer<String> logCallback;
+        private final Set<Long> done = new HashSet<>();
+        private long watermark;
+        private long executed;
+        private long succeeded;
+        private long failed;
+        private int sinceCheckpoint;
+
+        private Progress(long startOffset, BufferedWriter writer, Path checkpointFile, Consumer<String> logCallback) {
+            this.watermark = startOffset;
+            this.writer = writer;
+            this.checkpointFile = checkpointFile;
+            this.logCallback = logCallback;
+        }
+
+        private synchronized void complete(long offset, String line, boolean success) throws IOException {
+            writer.write(line);
+            writer.newLine();
+
+            executed++;
+            if (success) succeeded++;
+            else failed++;
+
+            if (offset == watermark) {
+                watermark++;
+                while (done.remove(watermark)) {
+                    watermark++;
+                }
+            } else {
+                done.add(offset);
+            }
+
+            if (++sinceCheckpoint >= checkpointEvery) {
+                sinceCheckpoint = 0;
+                writer.flush();
+                saveCheckpoint();
+            }
+            if (progressEvery > 0 && executed % progressEvery == 0) {
+                logCallback.accept("批量进度: 已执行 " + executed + " 行 (成功 " + succeeded + ", 失败 " + failed + ")");
+            }
+        }
+
+        private synchronized void finish() throws IOException {
+            writer.flush();
+            saveCheckpoint();
+        }
+
+        /**
+         * 先写临时文件再原子替换，进程中途退出也不会留下半个断点
+         */
+        private void saveCheckpoint() throws IOException {
+            Map<String, Object> state = new LinkedHashMap<>();
+            state.put("nextOffset", watermark);
+            state.put("executed", executed);
+            Path tmp = checkpointFile.resolveSibling(checkpointFile.getFileName() + ".tmp");
+            MAPPER.writeValue(tmp.toFile(), state);
+            Files.move(tmp, checkpointFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+}
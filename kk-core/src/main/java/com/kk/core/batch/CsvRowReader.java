@@ -0,0 +1,112 @@
+package com.kk.core.batch;
+
+import com.kk.common.exception.KKException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CSV 流式读取（RFC 4180）
+ *
+ * 说明：
+ * - 首行为表头，作为变量名
+ * - 支持双引号包裹、"" 转义，以及引号内的换行
+ * - 字段少于表头时缺失列为空串，多出的列忽略
+ */
+public class CsvRowReader implements RowReader {
+
+    private final BufferedReader reader;
+    private final char delimiter;
+    private final List<String> header;
+    private final StringBuilder field = new StringBuilder();
+
+    public CsvRowReader(BufferedReader reader, char delimiter) throws IOException {
+        this.reader = reader;
+        this.delimiter = delimiter;
+
+        // 跳过 UTF-8 BOM
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+
+        List<String> names = readRecord();
+        if (names == null) {
+            throw new KKException("CSV 文件为空，缺少表头");
+        }
+        this.header = names.stream().map(String::trim).toList();
+    }
+
+    public List<String> getHeader() {
+        return header;
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        List<String> values;
+        do {
+            values = readRecord();
+            if (values == null) return null;
+            // 跳过空行
+        } while (values.size() == 1 && values.get(0).isEmpty());
+
+        Map<String, String> row = new HashMap<>(header.size() * 2);
+        for (int i = 0; i < header.size(); i++) {
+            row.put(header.get(i), i < values.size() ? values.get(i) : "");
+        }
+        return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * 读取一条记录（可能跨多个物理行），文件结束返回 null
+     */
+    private List<String> readRecord() throws IOException {
+        int c = reader.read();
+        if (c < 0) return null;
+
+        List<String> values = new ArrayList<>();
+        boolean quoted = false;
+        field.setLength(0);
+        while (c >= 0) {
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    int next = reader.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        if (next >= 0) reader.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == delimiter) {
+                values.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c == '\r') {
+                reader.mark(1);
+                if (reader.read() != '\n') reader.reset();
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = reader.read();
+        }
+        values.add(field.toString());
+        return values;
+    }
+}
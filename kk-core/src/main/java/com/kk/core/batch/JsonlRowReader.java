@@ -0,0 +1,68 @@
+package com.kk.core.batch;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kk.common.exception.KKException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * JSONL 流式读取：每行一个 JSON 对象
+ *
+ * 说明：
+ * - 文本值原样作为变量值，其余类型（数字、布尔、嵌套对象/数组）转为 JSON 文本
+ * - 空行跳过；非对象行视为格式错误
+ */
+public class JsonlRowReader implements RowReader {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final BufferedReader reader;
+    private long lineNumber;
+
+    public JsonlRowReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    @Override
+    public Map<String, String> next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if (line == null) return null;
+            lineNumber++;
+        } while (line.isBlank());
+
+        JsonNode node = MAPPER.readTree(line);
+        if (!node.isObject()) {
+            throw new KKException("JSONL 第 " + lineNumber + " 行不是 JSON 对象");
+        }
+
+        Map<String, String> row = new HashMap<>(node.size() * 2);
+        node.fields().forEachRemaining(e -> {
+            JsonNode value = e.getValue();
+            row.put(e.getKey(), value.isTextual() ? value.asText() : value.isNull() ? "" : value.toString());
+        });
+        return row;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        // 跳过时不解析 JSON
+        long skipped = 0;
+        String line;
+        while (skipped < n && (line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.isBlank()) skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.kk.core.batch;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 批量输入的流式读取器：一次只读一行（记录），不把整个文件载入内存
+ */
+public interface RowReader extends Closeable {
+
+    /**
+     * 读取下一行，文件结束返回 null
+     */
+    Map<String, String> next() throws IOException;
+
+    /**
+     * 跳过 n 行（用于断点续跑），返回实际跳过的行数
+     */
+    default long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && next() != null) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * 按格式打开输入文件；AUTO 时按扩展名判断（.csv 为 CSV，其余按 JSONL）
+     */
+    static RowReader open(Path input, BatchOptions.InputFormat format, char csvDelimiter) throws IOException {
+        BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.UTF_8);
+        BatchOptions.InputFormat resolved = format;
+        if (resolved == null || resolved == BatchOptions.InputFormat.AUTO) {
+            String name = input.getFileName().toString().toLowerCase(Locale.ROOT);
+            resolved = name.endsWith(".csv") ? BatchOptions.InputFormat.CSV : BatchOptions.InputFormat.JSONL;
+        }
+        return resolved == BatchOptions.InputFormat.CSV
+                ? new CsvRowReader(reader, csvDelimiter)
+                : new JsonlRowReader(reader);
+    }
+}
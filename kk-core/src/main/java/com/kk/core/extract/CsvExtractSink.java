@@ -0,0 +1,57 @@
+package com.kk.core.extract;
+
+import com.kk.core.service.ExtractSpec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * CSV 输出（RFC 4180）：首行为字段名，含逗号、引号或换行的值用双引号包裹，元素缺失写空串；文件已存在时覆盖
+ */
+class CsvExtractSink implements ExtractSink {
+
+    private final BufferedWriter writer;
+    private final int columns;
+
+    CsvExtractSink(ExtractSpec spec, Path path) throws IOException {
+        this.columns = spec.fields().size();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+        writeRecord(spec.fieldNames());
+    }
+
+    @Override
+    public void write(List<List<String>> rows) throws IOException {
+        for (List<String> row : rows) {
+            writeRecord(row);
+        }
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+
+    private void writeRecord(List<String> values) throws IOException {
+        for (int i = 0; i < columns; i++) {
+            if (i > 0) writer.write(',');
+            String value = i < values.size() ? values.get(i) : null;
+            if (value != null) writer.write(escape(value));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String escape(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
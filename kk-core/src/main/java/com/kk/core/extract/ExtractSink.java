@@ -0,0 +1,25 @@
+package com.kk.core.extract;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * EXTRACT 步骤的输出：按块接收行，不要求一次持有全部数据
+ *
+ * 由执行该步骤的线程独占使用；close 在步骤结束（成功或失败）时调用。
+ */
+public interface ExtractSink extends Closeable {
+
+    /**
+     * 写入一块行，各行字段值与 ExtractSpec.fields 顺序一致，元素缺失时为 null
+     */
+    void write(List<List<String>> rows) throws IOException;
+
+    /**
+     * 写入 TaskResult.data 的内容，文件类输出返回 null
+     */
+    default Object result() {
+        return null;
+    }
+}
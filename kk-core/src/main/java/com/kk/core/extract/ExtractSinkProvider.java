@@ -0,0 +1,22 @@
+package com.kk.core.extract;
+
+import com.kk.core.service.ExtractSpec;
+
+import java.io.IOException;
+
+/**
+ * 自定义 EXTRACT 输出：注册为 Spring Bean 即可通过步骤参数 sink=name 使用，同名时覆盖内置输出
+ */
+public interface ExtractSinkProvider {
+
+    /**
+     * 输出名（小写），对应步骤参数 sink
+     */
+    String name();
+
+    /**
+     * @param spec   提取参数
+     * @param target 输出路径（占位符已替换），result 类输出可为 null
+     */
+    ExtractSink open(ExtractSpec spec, String target) throws IOException;
+}
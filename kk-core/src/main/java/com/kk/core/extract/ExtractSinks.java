@@ -0,0 +1,66 @@
+package com.kk.core.extract;
+
+import com.kk.common.exception.KKException;
+import com.kk.core.service.ExtractSpec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EXTRACT 输出注册表：内置 jsonl / csv / result，另加容器中的 {@link ExtractSinkProvider}
+ */
+@Component
+public class ExtractSinks {
+
+    private final Map<String, ExtractSinkProvider> providers = new LinkedHashMap<>();
+
+    public ExtractSinks(ObjectProvider<ExtractSinkProvider> custom) {
+        register(provider(ExtractSpec.SINK_JSONL, (spec, target) -> new JsonlExtractSink(spec, Paths.get(target))));
+        register(provider(ExtractSpec.SINK_CSV, (spec, target) -> new CsvExtractSink(spec, Paths.get(target))));
+        register(provider(ExtractSpec.SINK_RESULT, (spec, target) -> new ResultExtractSink(spec)));
+        custom.orderedStream().forEach(this::register);
+    }
+
+    public boolean supports(String name) {
+        return providers.containsKey(name);
+    }
+
+    public Set<String> names() {
+        return providers.keySet();
+    }
+
+    public ExtractSink open(ExtractSpec spec, String target) throws IOException {
+        ExtractSinkProvider provider = providers.get(spec.sink());
+        if (provider == null) {
+            throw new KKException("未知的提取输出: " + spec.sink() + "，可选: " + String.join(" / ", names()));
+        }
+        return provider.open(spec, target);
+    }
+
+    private void register(ExtractSinkProvider provider) {
+        providers.put(provider.name(), provider);
+    }
+
+    private interface Opener {
+        ExtractSink open(ExtractSpec spec, String target) throws IOException;
+    }
+
+    private static ExtractSinkProvider provider(String name, Opener opener) {
+        return new ExtractSinkProvider() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public ExtractSink open(ExtractSpec spec, String target) throws IOException {
+                return opener.open(spec, target);
+            }
+        };
+    }
+}
@@ -0,0 +1,51 @@
+package com.kk.core.extract;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kk.core.service.ExtractSpec;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 每行一个 JSON 对象，键为字段名（保持声明顺序）；文件已存在时覆盖
+ */
+class JsonlExtractSink implements ExtractSink {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<String> names;
+    private final BufferedWriter writer;
+
+    JsonlExtractSink(ExtractSpec spec, Path path) throws IOException {
+        this.names = spec.fieldNames();
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void write(List<List<String>> rows) throws IOException {
+        for (List<String> row : rows) {
+            Map<String, String> record = new LinkedHashMap<>(names.size() * 2);
+            for (int i = 0; i < names.size(); i++) {
+                record.put(names.get(i), i < row.size() ? row.get(i) : null);
+            }
+            writer.write(MAPPER.writeValueAsString(record));
+            writer.newLine();
+        }
+        // 按块刷盘：任务中途失败时已提取的行仍然可用
+        writer.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
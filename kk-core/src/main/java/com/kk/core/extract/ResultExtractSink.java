@@ -0,0 +1,41 @@
+package com.kk.core.extract;
+
+import com.kk.core.service.ExtractSpec;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 收集到内存，作为 TaskResult.data 返回；行数由执行器按 kk.automation.extract.resultMaxRows 限制
+ */
+class ResultExtractSink implements ExtractSink {
+
+    private final List<String> names;
+    private final List<Map<String, String>> rows = new ArrayList<>();
+
+    ResultExtractSink(ExtractSpec spec) {
+        this.names = spec.fieldNames();
+    }
+
+    @Override
+    public void write(List<List<String>> chunk) {
+        for (List<String> row : chunk) {
+            Map<String, String> record = new LinkedHashMap<>(names.size() * 2);
+            for (int i = 0; i < names.size(); i++) {
+                record.put(names.get(i), i < row.size() ? row.get(i) : null);
+            }
+            rows.add(record);
+        }
+    }
+
+    @Override
+    public Object result() {
+        return rows;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,124 @@
+package com.kk.core.log;
+
+import com.kk.common.model.LogEvent;
+import com.kk.common.model.LogSummary;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 单次任务执行的结构化日志
+ *
+ * 说明：
+ * - 内存中只保留最近 capacity 条事件（环形缓冲），完整历史交给 {@link RunLogSink} 异步写入 JSONL 文件
+ * - 事件只保存模板与参数，仅在回调或取出最近日志时拼接文本
+ * - 同一执行内的事件由执行线程写入，方法加锁只为允许其他线程读取摘要
+ */
+public class ExecutionLog {
+
+    private final int capacity;
+    private final RunLogSink sink;
+    private final RunLogSink.RunFile file;
+    private final Consumer<String> callback;
+    private final Deque<LogEvent> ring;
+
+    private long total;
+    private long warnings;
+    private long errors;
+    private long evicted;
+    private String lastError;
+
+    /**
+     * @param sink     文件写入；为 null 或未启用时只保留内存中的最近事件
+     * @param callback 每条事件的文本回调（界面展示等），可为 null
+     */
+    public ExecutionLog(String taskId, int capacity, RunLogSink sink, Consumer<String> callback) {
+        this.capacity = Math.max(1, capacity);
+        this.sink = sink;
+        this.file = sink == null ? null : sink.open(taskId);
+        this.callback = callback;
+        this.ring = new ArrayDeque<>(Math.min(this.capacity, 256));
+    }
+
+    public void info(int step, String code, String message, Object... args) {
+        add(LogEvent.Level.INFO, step, code, message, args);
+    }
+
+    public void warn(int step, String code, String message, Object... args) {
+        add(LogEvent.Level.WARN, step, code, message, args);
+    }
+
+    public void error(int step, String code, String message, Object... args) {
+        add(LogEvent.Level.ERROR, step, code, message, args);
+    }
+
+    private void add(LogEvent.Level level, int step, String code, String message, Object[] args) {
+        LogEvent event = new LogEvent()
+                .setTimestamp(System.currentTimeMillis())
+                .setStep(step)
+                .setLevel(level)
+                .setCode(code)
+                .setMessage(message)
+                .setArgs(args.length == 0 ? List.of() : Arrays.asList(args));
+
+        synchronized (this) {
+            total++;
+            if (level == LogEvent.Level.WARN) warnings++;
+            if (level == LogEvent.Level.ERROR) {
+                errors++;
+                lastError = event.render();
+            }
+            if (ring.size() >= capacity) {
+                ring.pollFirst();
+                evicted++;
+            }
+            ring.offerLast(event);
+        }
+
+        if (file != null) {
+            sink.append(file, event);
+        }
+        if (callback != null) {
+            callback.accept(event.render());
+        }
+    }
+
+    /**
+     * 最近的事件文本
+     */
+    public synchronized List<String> recent() {
+        List<String> lines = new ArrayList<>(ring.size());
+        ring.forEach(event -> lines.add(event.render()));
+        return lines;
+    }
+
+    public synchronized LogSummary summary() {
+        return new LogSummary()
+                .setTotal(total)
+                .setWarnings(warnings)
+                .setErrors(errors)
+                .setEvicted(evicted)
+                .setFileDropped(file == null ? 0 : file.getDropped())
+                .setLastError(lastError);
+    }
+
+    /**
+     * 日志文件路径；未启用文件日志时为 null
+     */
+    public String getFile() {
+        return file == null ? null : file.getPath().toString();
+    }
+
+    /**
+     * 执行结束：已投递的事件写完后关闭文件
+     */
+    public void close() {
+        if (file != null) {
+            sink.close(file);
+        }
+    }
+}
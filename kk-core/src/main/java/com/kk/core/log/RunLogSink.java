@@ -0,0 +1,245 @@
+package com.kk.core.log;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kk.common.model.LogEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 执行日志 JSONL 文件后台写入
+ *
+ * 说明：
+ * - 每次任务执行一个文件（kk.automation.log.dir 下），每行一个 LogEvent
+ * - 任务线程只向有界队列投递事件，从不等待磁盘；队列满时丢弃并计入该次执行的 fileDropped
+ * - 单个后台线程批量取出事件写入；每批写完后关闭已结束且事件已全部写入的执行文件，
+ *   不依赖队列清空（持续高负载下队列可能一直不空），队列清空时再统一 flush 其余文件
+ */
+@Slf4j
+@Component
+public class RunLogSink {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final DateTimeFormatter FILE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final int DRAIN_BATCH = 512;
+
+    /**
+     * 是否为每次执行写入完整的 JSONL 日志文件
+     */
+    @Value("${kk.automation.log.file:true}")
+    private boolean enabled;
+
+    @Value("${kk.automation.log.dir:logs/runs}")
+    private String dir;
+
+    /**
+     * 待写入事件队列上限（所有执行共享）
+     */
+    @Value("${kk.automation.log.queueCapacity:10000}")
+    private int queueCapacity;
+
+    private BlockingQueue<Entry> queue;
+    private Thread writer;
+    private volatile boolean shutdown;
+
+    /**
+     * 一次执行的日志文件句柄
+     */
+    public static final class RunFile {
+        private final Path path;
+        private final AtomicLong dropped = new AtomicLong();
+        /**
+         * 已入队、尚未写入的事件数
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+        private volatile boolean closed;
+        /**
+         * 写线程已关闭文件（仅写线程访问）；之后迟到的事件丢弃，不重新打开以免覆盖
+         */
+        private boolean finished;
+
+        private RunFile(Path path) {
+            this.path = path;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getDropped() {
+            return dropped.get();
+        }
+    }
+
+    private record Entry(RunFile file, LogEvent event) {
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) return;
+
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        writer = Thread.ofPlatform()
+                .name("kk-run-log-writer")
+                .daemon(true)
+                .start(this::writeLoop);
+        log.info("执行日志文件写入已启动 (dir: {}, queueCapacity: {})", dir, queueCapacity);
+    }
+
+    /**
+     * 为一次执行创建日志文件句柄；未启用时返回 null
+     */
+    public RunFile open(String taskId) {
+        if (!enabled || shutdown) return null;
+        String name = LocalDateTime.now().format(FILE_TIME) + "-" + taskId + ".jsonl";
+        return new RunFile(Paths.get(dir, name));
+    }
+
+    /**
+     * 投递事件，不阻塞；队列已满时丢弃
+     */
+    public void append(RunFile file, LogEvent event) {
+        if (file == null || file.closed) return;
+        // 先计数再入队，写线程看到 pending 为 0 时不会有该文件的事件仍在途
+        file.pending.incrementAndGet();
+        if (!queue.offer(new Entry(file, event))) {
+            file.pending.decrementAndGet();
+            file.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 标记执行结束：已投递的事件写完后关闭文件
+     */
+    public void close(RunFile file) {
+        if (file == null) return;
+        file.closed = true;
+        // 唤醒写线程；队列已满时写线程本就在工作，投递失败无妨
+        queue.offer(new Entry(file, null));
+    }
+
+    private void writeLoop() {
+        Map<RunFile, BufferedWriter> open = new HashMap<>();
+        List<Entry> batch = new ArrayList<>(DRAIN_BATCH);
+        while (true) {
+            try {
+                Entry first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (shutdown) break;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, DRAIN_BATCH - 1);
+            } catch (InterruptedException e) {
+                queue.drainTo(batch);
+                shutdown = true;
+            }
+
+            for (Entry entry : batch) {
+                if (entry.event() != null) {
+                    write(open, entry);
+                    entry.file().pending.decrementAndGet();
+                }
+            }
+            batch.clear();
+
+            closeFinished(open);
+            if (queue.isEmpty()) {
+                flushAll(open);
+            }
+            if (shutdown && queue.isEmpty()) break;
+        }
+        open.values().forEach(RunLogSink::closeQuietly);
+    }
+
+    private void write(Map<RunFile, BufferedWriter> open, Entry entry) {
+        RunFile file = entry.file();
+        if (file.finished) {
+            file.dropped.incrementAndGet();
+            return;
+        }
+        try {
+            BufferedWriter out = open.get(file);
+            if (out == null) {
+                Path parent = file.path.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+                out = Files.newBufferedWriter(file.path, StandardCharsets.UTF_8);
+                open.put(file, out);
+            }
+            out.write(MAPPER.writeValueAsString(entry.event()));
+            out.newLine();
+        } catch (IOException e) {
+            if (file.dropped.getAndIncrement() == 0) {
+                log.warn("写入执行日志失败 {}: {}", file.path, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 关闭已结束且没有在途事件的执行文件
+     */
+    private static void closeFinished(Map<RunFile, BufferedWriter> open) {
+        Iterator<Map.Entry<RunFile, BufferedWriter>> it = open.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<RunFile, BufferedWriter> e = it.next();
+            RunFile file = e.getKey();
+            if (file.closed && file.pending.get() == 0) {
+                closeQuietly(e.getValue());
+                file.finished = true;
+                it.remove();
+            }
+        }
+    }
+
+    private static void flushAll(Map<RunFile, BufferedWriter> open) {
+        open.forEach((file, out) -> {
+            try {
+                out.flush();
+            } catch (IOException ex) {
+                log.debug("刷新执行日志失败 {}: {}", file.path, ex.getMessage());
+            }
+        });
+    }
+
+    private static void closeQuietly(BufferedWriter out) {
+        try {
+            out.close();
+        } catch (IOException ignored) {
+            // 文件句柄已失效
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (writer == null) return;
+        shutdown = true;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
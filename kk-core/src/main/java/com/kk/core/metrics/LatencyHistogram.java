@@ -0,0 +1,148 @@
+package com.kk.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * HDR 风格的延迟直方图（纳秒）
+ *
+ * 说明：
+ * - 对数分段、段内线性分桶：任意量级下相对误差不超过 10^-significantDigits
+ * - 桶数组在构造时一次分配，记录时只做一次原子自增，可被多个执行线程并发写入
+ * - 超出 highestTrackableNanos 的值按上限记录；最小分辨率为 1 微秒
+ */
+public class LatencyHistogram {
+
+    /**
+     * 最小可区分值 1 微秒：2^9 = 512ns 为单位
+     */
+    private static final int UNIT_MAGNITUDE = 9;
+
+    private final long highestTrackableNanos;
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final AtomicLongArray counts;
+
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalNanos = new AtomicLong();
+    private final AtomicLong minNanos = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    /**
+     * @param highestTrackableNanos 可记录的最大值
+     * @param significantDigits     有效数字位数（1-3）
+     */
+    public LatencyHistogram(long highestTrackableNanos, int significantDigits) {
+        if (significantDigits < 1 || significantDigits > 3) {
+            throw new IllegalArgumentException("significantDigits 取值范围为 1-3: " + significantDigits);
+        }
+        long unit = 1L << UNIT_MAGNITUDE;
+        this.highestTrackableNanos = Math.max(highestTrackableNanos, unit * 2);
+
+        long largestSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = 64 - Long.numberOfLeadingZeros(largestSingleUnitResolution - 1);
+        this.subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        int subBucketCount = 1 << subBucketCountMagnitude;
+        this.subBucketHalfCount = subBucketCount / 2;
+        this.subBucketMask = ((long) subBucketCount - 1) << UNIT_MAGNITUDE;
+        this.leadingZeroCountBase = 64 - UNIT_MAGNITUDE - subBucketHalfCountMagnitude - 1;
+
+        int bucketCount = 1;
+        long smallestUntrackable = (long) subBucketCount << UNIT_MAGNITUDE;
+        while (smallestUntrackable <= this.highestTrackableNanos) {
+            if (smallestUntrackable > Long.MAX_VALUE / 2) {
+                bucketCount++;
+                break;
+            }
+            smallestUntrackable <<= 1;
+            bucketCount++;
+        }
+        this.counts = new AtomicLongArray((bucketCount + 1) * subBucketHalfCount);
+    }
+
+    /**
+     * 记录一个耗时值
+     */
+    public void record(long nanos) {
+        long value = Math.min(Math.max(0, nanos), highestTrackableNanos);
+        counts.incrementAndGet(countsIndex(value));
+        totalCount.incrementAndGet();
+        totalNanos.addAndGet(value);
+        minNanos.accumulateAndGet(value, Math::min);
+        maxNanos.accumulateAndGet(value, Math::max);
+    }
+
+    public long getTotalCount() {
+        return totalCount.get();
+    }
+
+    public long getMinNanos() {
+        return totalCount.get() == 0 ? 0 : minNanos.get();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    public double getMeanNanos() {
+        long count = totalCount.get();
+        return count == 0 ? 0 : (double) totalNanos.get() / count;
+    }
+
+    /**
+     * 百分位值：返回所在桶的上界，且不超过已记录的最大值
+     *
+     * @param percentile 0-100
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        if (count == 0) return 0;
+
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long) Math.ceil(p / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestEquivalentValue(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+
+    /**
+     * 常用指标快照
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(getTotalCount(), getMinNanos(), getMeanNanos(),
+                getValueAtPercentile(50), getValueAtPercentile(95), getValueAtPercentile(99), getMaxNanos());
+    }
+
+    /**
+     * 直方图快照（纳秒）
+     */
+    public record Snapshot(long count, long min, double mean, long p50, long p95, long p99, long max) {
+    }
+
+    private int countsIndex(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> (bucketIndex + UNIT_MAGNITUDE));
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    private long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        long lowest = (long) subBucketIndex << (bucketIndex + UNIT_MAGNITUDE);
+        return lowest + (1L << (bucketIndex + UNIT_MAGNITUDE)) - 1;
+    }
+}
@@ -0,0 +1,135 @@
+package com.kk.core.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 选择器解析统计 - 跨任务、跨执行按选择器聚合
+ *
+ * 说明：
+ * - 每次等待元素出现记录一次：耗时直方图、分片重试次数、失败（超时）次数、匹配元素数
+ * - 匹配数大于 1 的选择器计入 ambiguous：操作的是第一个匹配，页面结构变化时容易失效
+ * - 选择器数量超过 maxKeys 后，新选择器统一归入 OVERFLOW_SELECTOR
+ */
+@Slf4j
+@Component
+public class SelectorStatsRegistry {
+
+    public static final String OVERFLOW_SELECTOR = "(other)";
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.MINUTES.toNanos(10);
+
+    @Value("${kk.metrics.selectors.significantDigits:2}")
+    private int significantDigits;
+
+    @Value("${kk.metrics.selectors.maxKeys:2000}")
+    private int maxKeys;
+
+    private final Map<String, SelectorHistogram> stats = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次选择器解析
+     *
+     * @param retries    分片等待中超时重试的片数
+     * @param success    是否在超时内解析成功
+     * @param matchCount 匹配元素数，未知为 -1
+     */
+    public void record(String selector, long nanos, int retries, boolean success, int matchCount) {
+        if (selector == null) return;
+
+        String key = selector;
+        SelectorHistogram h = stats.get(key);
+        if (h == null) {
+            if (stats.size() >= maxKeys) {
+                key = OVERFLOW_SELECTOR;
+            }
+            h = stats.computeIfAbsent(key, k -> new SelectorHistogram(significantDigits));
+        }
+        h.resolve.record(nanos);
+        h.retries.add(Math.max(0, retries));
+        if (!success) h.failures.increment();
+        if (matchCount >= 0) {
+            h.lastMatchCount.set(matchCount);
+            if (matchCount > 1) h.ambiguous.increment();
+        }
+    }
+
+    /**
+     * 当前所有选择器的统计快照，按 p95 解析耗时降序
+     */
+    public List<SelectorStats> snapshot() {
+        List<SelectorStats> result = new ArrayList<>();
+        stats.forEach((selector, h) -> result.add(new SelectorStats(selector, h.resolve.snapshot(),
+                h.retries.sum(), h.failures.sum(), h.ambiguous.sum(), h.lastMatchCount.get())));
+        result.sort(Comparator.comparingLong((SelectorStats s) -> s.resolve().p95()).reversed());
+        return result;
+    }
+
+    /**
+     * 最慢的 n 个选择器
+     */
+    public List<SelectorStats> slowest(int n) {
+        return snapshot().stream().limit(Math.max(0, n)).toList();
+    }
+
+    /**
+     * 最慢选择器文本报表（毫秒），便于日志输出或界面展示
+     */
+    public String report(int n) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-40s %8s %10s %10s %10s %8s %8s %8s%n",
+                "选择器", "次数", "p50(ms)", "p95(ms)", "max(ms)", "重试", "失败", "匹配数"));
+        for (SelectorStats s : slowest(n)) {
+            LatencyHistogram.Snapshot r = s.resolve();
+            sb.append(String.format(Locale.ROOT, "%-40s %8d %10.1f %10.1f %10.1f %8d %8d %8s%n",
+                    abbreviate(s.selector()), r.count(), toMillis(r.p50()), toMillis(r.p95()), toMillis(r.max()),
+                    s.retries(), s.failures(), s.lastMatchCount() < 0 ? "-" : String.valueOf(s.lastMatchCount())));
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        stats.clear();
+    }
+
+    private static String abbreviate(String selector) {
+        return selector.length() <= 40 ? selector : selector.substring(0, 37) + "...";
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * 单个选择器的统计快照（纳秒）
+     *
+     * @param ambiguous      匹配到多个元素的次数
+     * @param lastMatchCount 最近一次记录的匹配元素数，未知为 -1
+     */
+    public record SelectorStats(String selector, LatencyHistogram.Snapshot resolve,
+                                long retries, long failures, long ambiguous, int lastMatchCount) {
+    }
+
+    private static final class SelectorHistogram {
+        private final LatencyHistogram resolve;
+        private final LongAdder retries = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+        private final LongAdder ambiguous = new LongAdder();
+        private final AtomicInteger lastMatchCount = new AtomicInteger(-1);
+
+        private SelectorHistogram(int significantDigits) {
+            this.resolve = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, significantDigits);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.kk.core.metrics;
+
+import com.kk.common.model.StepTiming;
+import com.kk.common.model.TaskStep;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步骤延迟统计 - 按 任务名 + 步骤类型 聚合的直方图
+ *
+ * 说明：
+ * - 每个键分别统计 总耗时 / 排队 / 动作 / 就绪等待 四个直方图，可直接看出时间花在哪一段
+ * - 键数量超过 maxKeys 后，新任务名统一归入 OVERFLOW_TASK，防止任务名无限增长撑爆内存
+ */
+@Slf4j
+@Component
+public class StepLatencyRegistry {
+
+    public static final String OVERFLOW_TASK = "(other)";
+
+    /**
+     * 单次步骤可记录的最大耗时，超出按上限计
+     */
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    @Value("${kk.metrics.stepLatency.significantDigits:2}")
+    private int significantDigits;
+
+    @Value("${kk.metrics.stepLatency.maxKeys:500}")
+    private int maxKeys;
+
+    private final Map<Key, StepHistograms> histograms = new ConcurrentHashMap<>();
+
+    /**
+     * 记录一次步骤耗时
+     */
+    public void record(String taskName, StepTiming timing) {
+        if (timing == null || timing.getType() == null) return;
+
+        Key key = new Key(taskName == null ? "" : taskName, timing.getType());
+        StepHistograms h = histograms.get(key);
+        if (h == null) {
+            if (histograms.size() >= maxKeys) {
+                key = new Key(OVERFLOW_TASK, timing.getType());
+            }
+            h = histograms.computeIfAbsent(key, k -> new StepHistograms(significantDigits));
+        }
+        h.total.record(timing.getTotalNanos());
+        h.queue.record(timing.getQueueNanos());
+        h.action.record(timing.getActionNanos());
+        h.postWait.record(timing.getPostWaitNanos());
+    }
+
+    /**
+     * 记录一个任务的全部步骤
+     */
+    public void recordAll(String taskName, List<StepTiming> timings) {
+        if (timings == null) return;
+        timings.forEach(timing -> record(taskName, timing));
+    }
+
+    /**
+     * 当前所有键的统计快照，按任务名、步骤类型排序
+     */
+    public List<StepLatencyStats> snapshot() {
+        List<StepLatencyStats> stats = new ArrayList<>();
+        histograms.forEach((key, h) -> stats.add(new StepLatencyStats(key.taskName(), key.type(),
+                h.total.snapshot(), h.queue.snapshot(), h.action.snapshot(), h.postWait.snapshot())));
+        stats.sort(Comparator.comparing(StepLatencyStats::taskName).thenComparing(StepLatencyStats::type));
+        return stats;
+    }
+
+    /**
+     * 指定任务的统计快照
+     */
+    public List<StepLatencyStats> snapshot(String taskName) {
+        return snapshot().stream().filter(s -> s.taskName().equals(taskName)).toList();
+    }
+
+    /**
+     * 文本报表（毫秒），便于日志输出或界面展示
+     */
+    public String report() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-24s %-10s %8s %10s %10s %10s %10s%n",
+                "任务", "步骤类型", "次数", "p50(ms)", "p95(ms)", "p99(ms)", "max(ms)"));
+        for (StepLatencyStats s : snapshot()) {
+            LatencyHistogram.Snapshot t = s.total();
+            sb.append(String.format(Locale.ROOT, "%-24s %-10s %8d %10.1f %10.1f %10.1f %10.1f%n",
+                    s.taskName(), s.type(), t.count(),
+                    toMillis(t.p50()), toMillis(t.p95()), toMillis(t.p99()), toMillis(t.max())));
+        }
+        return sb.toString();
+    }
+
+    public void reset() {
+        histograms.clear();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    /**
+     * 单个键的统计快照（纳秒）
+     */
+    public record StepLatencyStats(String taskName, TaskStep.StepType type,
+                                   LatencyHistogram.Snapshot total,
+                                   LatencyHistogram.Snapshot queue,
+                                   LatencyHistogram.Snapshot action,
+                                   LatencyHistogram.Snapshot postWait) {
+    }
+
+    private record Key(String taskName, TaskStep.StepType type) {
+    }
+
+    private static final class StepHistograms {
+        private final LatencyHistogram total;
+        private final LatencyHistogram queue;
+        private final LatencyHistogram action;
+        private final LatencyHistogram postWait;
+
+        private StepHistograms(int significantDigits) {
+            this.total = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, significantDigits);
+            this.queue = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, significantDigits);
+            this.action = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, significantDigits);
+            this.postWait = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, significantDigits);
+        }
+    }
+}
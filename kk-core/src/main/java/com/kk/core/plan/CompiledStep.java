@@ -0,0 +1,46 @@
+package com.kk.core.plan;
+
+import com.kk.common.model.TaskStep;
+import com.kk.core.service.DownloadSpec;
+import com.kk.core.service.ExtractSpec;
+import com.kk.core.service.ScreenshotSpec;
+
+/**
+ * 编译后的步骤：参数已解析、已校验
+ *
+ * @param index      步骤序号（0 起）
+ * @param source     原始步骤（节奏控制、日志使用，执行期间只读）
+ * @param type       步骤类型
+ * @param selector   选择器
+ * @param value      值（URL、填充内容、脚本、截图路径等）
+ * @param templated  selector / value 含 ${name} 占位符，需在执行时按任务变量替换
+ * @param timeoutMs  WAIT 超时；值含占位符时为 -1，执行时再解析
+ * @param navigationWait NAVIGATE 的导航完成条件（已合并执行配置档），其他类型为 null
+ * @param screenshot SCREENSHOT 的截图参数（已合并执行配置档），其他类型为 null
+ * @param extract    EXTRACT 的提取参数，其他类型为 null
+ * @param download   DOWNLOAD 的下载参数（未合并全局默认值），其他类型为 null
+ * @param fuseRun    从本步开始可在一次页面内脚本中合并执行的步骤数；1 表示单独执行
+ */
+public record CompiledStep(
+        int index,
+        TaskStep source,
+        TaskStep.StepType type,
+        String selector,
+        String value,
+        boolean templated,
+        int timeoutMs,
+        TaskStep.NavigationWait navigationWait,
+        ScreenshotSpec screenshot,
+        ExtractSpec extract,
+        DownloadSpec download,
+        int fuseRun
+) {
+
+    public CompiledStep withFuseRun(int run) {
+        return new CompiledStep(index, source, type, selector, value, templated, timeoutMs, navigationWait, screenshot, extract, download, run);
+    }
+
+    public String description() {
+        return source.getDescription();
+    }
+}
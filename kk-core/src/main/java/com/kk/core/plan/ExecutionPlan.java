@@ -0,0 +1,24 @@
+package com.kk.core.plan;
+
+import java.util.List;
+
+/**
+ * 任务执行计划 - 编译后的不可变步骤序列
+ *
+ * 同一步骤内容 + 同一执行配置档只编译一次，由 {@link PlanCompiler} 缓存并在多次执行间共享。
+ *
+ * @param hash    步骤内容哈希（SHA-256）
+ * @param profile 编译时使用的执行配置档名称
+ * @param steps   编译后的步骤
+ * @param graph   依赖图；线性任务（未声明依赖，或依赖恰好是列表顺序）为 null
+ */
+public record ExecutionPlan(String hash, String profile, List<CompiledStep> steps, TaskGraph graph) {
+
+    public ExecutionPlan {
+        steps = List.copyOf(steps);
+    }
+
+    public int size() {
+        return steps.size();
+    }
+}
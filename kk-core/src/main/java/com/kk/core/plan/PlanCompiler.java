@@ -0,0 +1,508 @@
+package com.kk.core.plan;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.kk.common.exception.KKException;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.ExecutionProfile;
+import com.kk.common.model.TaskStep;
+import com.kk.core.extract.ExtractSinks;
+import com.kk.core.service.DownloadSpec;
+import com.kk.core.service.ExtractSpec;
+import com.kk.core.service.ScreenshotSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * 任务编译器 - AutomationTask → ExecutionPlan
+ *
+ * 说明：
+ * - 在借出浏览器之前完成步骤类型分派、参数解析与校验，错误任务不会占用会话
+ * - 计划按 步骤内容哈希 + 执行配置档 缓存（LRU），重复执行与批量执行直接复用
+ * - 含 ${name} 占位符的字段只做非空校验，其余校验推迟到执行时
+ * - 计划持有步骤的副本，之后修改任务步骤不会影响已缓存的计划
+ * - 合并优化：连续的 FILL（以及显式声明 synthetic=true 的 CLICK，只能作为一组的最后一步）
+ *   标记为一组，执行时在一次页面内脚本中完成；需要真实输入事件的步骤可用 fuse=false 排除
+ * - 步骤声明了 dependsOn 时编译为依赖图（见 {@link TaskGraph}），校验 ID 唯一、依赖存在且无环；
+ *   依赖图任务不做合并优化
+ * - SCROLL / HOVER 执行器尚未实现，编译通过但记录警告，执行时跳过（与引入编译前的行为一致）
+ */
+@Slf4j
+@Component
+public class PlanCompiler {
+
+    /**
+     * 缓存的执行计划上限
+     */
+    @Value("${kk.automation.planCache.maxEntries:256}")
+    private int maxEntries;
+
+    /**
+     * 是否启用连续 DOM 步骤合并执行
+     */
+    @Value("${kk.automation.fuseSteps:true}")
+    private boolean fuseSteps;
+
+    /**
+     * Playwright 特有的选择器语法，无法交给 document.querySelector
+     */
+    private static final List<String> PLAYWRIGHT_SELECTOR_MARKERS = List.of(
+            ">>", "text=", "css=", "xpath=", "id=", "role=", "data-testid=", "internal:",
+            ":has-text(", ":text(", ":text-is(", ":text-matches(", ":visible", ":nth-match(",
+            ":right-of(", ":left-of(", ":above(", ":below(", ":near(");
+
+    private final ExtractSinks extractSinks;
+    private final LinkedHashMap<String, ExecutionPlan> cache = new LinkedHashMap<>(64, 0.75f, true);
+    private long hits;
+    private long misses;
+
+    public PlanCompiler(ExtractSinks extractSinks) {
+        this.extractSinks = extractSinks;
+    }
+
+    /**
+     * 编译任务；步骤不合法时抛出 KKException，消息中包含步骤序号
+     */
+    public ExecutionPlan compile(AutomationTask task, ExecutionProfile profile) {
+        List<TaskStep> steps = task.getSteps() == null ? List.of() : task.getSteps();
+        String hash = hash(steps);
+        String key = hash + "|" + profile.getName();
+
+        synchronized (this) {
+            ExecutionPlan cached = cache.get(key);
+            if (cached != null) {
+                hits++;
+                return cached;
+            }
+            misses++;
+        }
+
+        List<CompiledStep> compiled = new ArrayList<>(steps.size());
+        for (int i = 0; i < steps.size(); i++) {
+            compiled.add(compileStep(i, steps.get(i), profile));
+        }
+        TaskGraph graph = buildGraph(compiled);
+        if (fuseSteps && graph == null) {
+            markFusedRuns(compiled);
+        }
+        ExecutionPlan plan = new ExecutionPlan(hash, profile.getName(), compiled, graph);
+
+        synchronized (this) {
+            cache.put(key, plan);
+            while (cache.size() > Math.max(1, maxEntries)) {
+                cache.remove(cache.keySet().iterator().next());
+            }
+        }
+        return plan;
+    }
+
+    public synchronized PlanCacheStats getStats() {
+        return new PlanCacheStats(cache.size(), hits, misses);
+    }
+
+    /**
+     * 计划缓存统计
+     */
+    public record PlanCacheStats(int entries, long hits, long misses) {
+    }
+
+    private CompiledStep compileStep(int index, TaskStep step, ExecutionProfile profile) {
+        if (step == null || step.getType() == null) {
+            throw invalid(index, step, "缺少步骤类型");
+        }
+
+        TaskStep source = copyOf(step);
+        String selector = source.getSelector();
+        String value = source.getValue();
+        boolean templated = isTemplated(selector) || isTemplated(value);
+        int timeoutMs = 0;
+        TaskStep.NavigationWait navigationWait = null;
+        ScreenshotSpec screenshot = null;
+        ExtractSpec extract = null;
+        DownloadSpec download = null;
+
+        switch (source.getType()) {
+            case NAVIGATE -> {
+                validateUrl(index, source, value);
+                navigationWait = source.getWaitUntil() != null ? source.getWaitUntil()
+                        : profile.getNavigationWait() != null ? profile.getNavigationWait()
+                        : TaskStep.NavigationWait.LOAD;
+                if (navigationWait == TaskStep.NavigationWait.SELECTOR) {
+                    validateSelector(index, source, selector);
+                }
+            }
+            case CLICK -> validateSelector(index, source, selector);
+            case FILL -> {
+                validateSelector(index, source, selector);
+                if (value == null) value = "";
+            }
+            case WAIT -> {
+                validateSelector(index, source, selector);
+                timeoutMs = isTemplated(value) ? -1 : parseTimeout(index, source, value);
+            }
+            case SCREENSHOT -> {
+                requireValue(index, source, value, "截图路径");
+                try {
+                    screenshot = ScreenshotSpec.of(profile, source.getParams());
+                } catch (KKException e) {
+                    throw invalid(index, source, e.getMessage());
+                }
+            }
+            case SCRIPT -> requireValue(index, source, value, "脚本");
+            case EXTRACT -> {
+                validateSelector(index, source, selector);
+                try {
+                    extract = ExtractSpec.of(selector, value, source.getParams());
+                } catch (KKException e) {
+                    throw invalid(index, source, e.getMessage());
+                }
+                if (!extractSinks.supports(extract.sink())) {
+                    throw invalid(index, source, "未知的提取输出: " + extract.sink()
+                            + "，可选: " + String.join(" / ", extractSinks.names()));
+                }
+                // 字段在行元素上用 querySelector 解析，只支持标准 CSS
+                for (ExtractSpec.Field field : extract.fields()) {
+                    if (field.selector() != null && !isPlainCss(field.selector())) {
+                        throw invalid(index, source, "提取字段 " + field.name() + " 的选择器须为标准 CSS: " + field.selector());
+                    }
+                }
+            }
+            case DOWNLOAD -> {
+                validateSelector(index, source, selector);
+                requireValue(index, source, value, "下载路径");
+                try {
+                    download = DownloadSpec.of(source.getParams());
+                } catch (KKException e) {
+                    throw invalid(index, source, e.getMessage());
+                }
+            }
+            case SCROLL, HOVER -> log.warn("第 {} 步 ({}): 执行器暂不支持 {}，执行时跳过",
+                    index + 1, source.getDescription(), source.getType());
+            default -> throw invalid(index, source, "执行器暂不支持该步骤类型: " + source.getType());
+        }
+
+        if (source.getDelay() < 0 || source.getThrottle() < 0) {
+            throw invalid(index, source, "delay / throttle 不能为负数");
+        }
+        validateReadiness(index, source);
+        return new CompiledStep(index, source, source.getType(), selector, value, templated, timeoutMs, navigationWait,
+                screenshot, extract, download, 1);
+    }
+
+    /**
+     * 按 dependsOn 编译依赖图；未声明依赖或依赖恰好是列表顺序时返回 null（按线性执行）
+     */
+    static TaskGraph buildGraph(List<CompiledStep> steps) {
+        int n = steps.size();
+        if (steps.stream().allMatch(s -> s.source().getDependsOn().isEmpty())) {
+            return null;
+        }
+
+        Map<String, Integer> ids = new HashMap<>();
+        for (CompiledStep step : steps) {
+            String id = step.source().getId();
+            if (id != null && !id.isBlank() && ids.putIfAbsent(id.trim(), step.index()) != null) {
+                throw invalid(step.index(), step.source(), "步骤 ID 重复: " + id);
+            }
+        }
+
+        List<List<Integer>> dependencies = new ArrayList<>(n);
+        List<List<Integer>> dependents = new ArrayList<>(n);
+        boolean linear = true;
+        for (CompiledStep step : steps) {
+            Set<Integer> deps = new LinkedHashSet<>();
+            for (String dep : step.source().getDependsOn()) {
+                Integer target = dep == null ? null : ids.get(dep.trim());
+                if (target == null) {
+                    throw invalid(step.index(), step.source(), "依赖的步骤不存在: " + dep);
+                }
+                if (target == step.index()) {
+                    throw invalid(step.index(), step.source(), "步骤不能依赖自身");
+                }
+                deps.add(target);
+            }
+            dependencies.add(new ArrayList<>(deps));
+            dependents.add(new ArrayList<>());
+            linear &= step.index() == 0 ? deps.isEmpty() : deps.equals(Set.of(step.index() - 1));
+        }
+        if (linear) {
+            return null;
+        }
+        // 未声明依赖的步骤会在独立的空白页面上与其他分支并行执行；只允许首步和导航步骤开启独立分支，
+        // 避免漏连线的步骤被悄悄并行
+        for (CompiledStep step : steps) {
+            if (step.index() > 0 && dependencies.get(step.index()).isEmpty()
+                    && step.type() != TaskStep.StepType.NAVIGATE) {
+                throw invalid(step.index(), step.source(), "步骤未声明依赖（依赖图任务中只有导航步骤可以开启独立分支）");
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            for (int dep : dependencies.get(i)) {
+                dependents.get(dep).add(i);
+            }
+        }
+
+        // 拓扑排序（Kahn），同时就绪时按步骤序号
+        int[] indegree = new int[n];
+        PriorityQueue<Integer> ready = new PriorityQueue<>();
+        for (int i = 0; i < n; i++) {
+            indegree[i] = dependencies.get(i).size();
+            if (indegree[i] == 0) ready.add(i);
+        }
+        List<Integer> order = new ArrayList<>(n);
+        while (!ready.isEmpty()) {
+            int i = ready.poll();
+            order.add(i);
+            for (int next : dependents.get(i)) {
+                if (--indegree[next] == 0) ready.add(next);
+            }
+        }
+        if (order.size() < n) {
+            int first = 0;
+            while (indegree[first] == 0) first++;
+            throw invalid(first, steps.get(first).source(), "步骤依赖存在环");
+        }
+
+        // 分配分支：沿用某个依赖所在分支（该依赖须是分支当前末尾），否则开新分支
+        Integer[] lanes = new Integer[n];
+        Integer[] forkFrom = new Integer[n];
+        List<Integer> laneEnds = new ArrayList<>();
+        for (int i : order) {
+            List<Integer> deps = dependencies.get(i);
+            int lane = -1;
+            for (int dep : deps) {
+                if (laneEnds.get(lanes[dep]) == dep) {
+                    lane = lanes[dep];
+                    break;
+                }
+            }
+            forkFrom[i] = -1;
+            if (lane < 0) {
+                lane = laneEnds.size();
+                laneEnds.add(i);
+                if (!deps.isEmpty()) forkFrom[i] = deps.get(0);
+            }
+            lanes[i] = lane;
+            laneEnds.set(lane, i);
+        }
+        return new TaskGraph(dependencies, dependents, order, List.of(lanes), List.of(forkFrom), laneEnds);
+    }
+
+    /**
+     * 找出连续可合并的步骤，在每组第一步上记录组长度（至少 2 步才合并）
+     */
+    static void markFusedRuns(List<CompiledStep> steps) {
+        int i = 0;
+        while (i < steps.size()) {
+            int end = i;
+            while (end < steps.size() && isFusible(steps.get(end), end == i)) {
+                end++;
+                // 合成点击可能触发跳转，只能作为一组的最后一步
+                if (steps.get(end - 1).type() == TaskStep.StepType.CLICK) break;
+            }
+            int run = end - i;
+            if (run >= 2) {
+                steps.set(i, steps.get(i).withFuseRun(run));
+                i = end;
+            } else {
+                i++;
+            }
+        }
+    }
+
+    /**
+     * 组内除第一步外不能有节流；FILL 不能显式声明就绪等待（其 AUTO 即为不等待）
+     */
+    private static boolean isFusible(CompiledStep step, boolean first) {
+        TaskStep source = step.source();
+        if ("false".equalsIgnoreCase(source.param("fuse"))) return false;
+        if (!first && source.getThrottle() > 0) return false;
+        if (isTemplated(step.selector()) || !isPlainCss(step.selector())) return false;
+
+        TaskStep.Readiness readiness = source.getReadiness() == null ? TaskStep.Readiness.AUTO : source.getReadiness();
+        return switch (step.type()) {
+            case FILL -> readiness == TaskStep.Readiness.AUTO || readiness == TaskStep.Readiness.NONE;
+            case CLICK -> "true".equalsIgnoreCase(source.param("synthetic"));
+            default -> false;
+        };
+    }
+
+    static boolean isPlainCss(String selector) {
+        String s = selector.trim();
+        if (s.startsWith("/") || s.startsWith("(") || s.startsWith("..")) return false;
+        for (String marker : PLAYWRIGHT_SELECTOR_MARKERS) {
+            if (s.contains(marker)) return false;
+        }
+        return true;
+    }
+
+    private static void validateUrl(int index, TaskStep step, String url) {
+        requireValue(index, step, url, "URL");
+        if (isTemplated(url)) return;
+
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null) {
+                throw invalid(index, step, "URL 缺少协议（如 https://）: " + url);
+            }
+        } catch (URISyntaxException e) {
+            throw invalid(index, step, "URL 格式错误: " + url);
+        }
+    }
+
+    /**
+     * 选择器基本语法检查：非空，括号与引号成对
+     */
+    private static void validateSelector(int index, TaskStep step, String selector) {
+        requireValue(index, step, selector, "选择器");
+        if (isTemplated(selector)) return;
+
+        Deque<Character> open = new ArrayDeque<>();
+        char quote = 0;
+        for (int i = 0; i < selector.length(); i++) {
+            char c = selector.charAt(i);
+            if (c == '\\') {
+                i++;
+                continue;
+            }
+            if (quote != 0) {
+                if (c == quote) quote = 0;
+                continue;
+            }
+            switch (c) {
+                case '"', '\'' -> quote = c;
+                case '(', '[', '{' -> open.push(c);
+                case ')', ']', '}' -> {
+                    char expected = c == ')' ? '(' : c == ']' ? '[' : '{';
+                    if (open.isEmpty() || open.pop() != expected) {
+                        throw invalid(index, step, "选择器括号不匹配: " + selector);
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        if (quote != 0 || !open.isEmpty()) {
+            throw invalid(index, step, "选择器引号或括号未闭合: " + selector);
+        }
+    }
+
+    private static int parseTimeout(int index, TaskStep step, String value) {
+        try {
+            int timeout = Integer.parseInt(value == null ? "" : value.trim());
+            if (timeout <= 0) {
+                throw invalid(index, step, "等待超时必须大于 0: " + value);
+            }
+            return timeout;
+        } catch (NumberFormatException e) {
+            throw invalid(index, step, "等待超时不是整数: " + value);
+        }
+    }
+
+    /**
+     * 需要参数的就绪条件必须带 readinessTarget，否则运行时每步都会等满 delay 再超时
+     */
+    private static void validateReadiness(int index, TaskStep step) {
+        if (step.getReadiness() == null) return;
+        String target = step.getReadinessTarget();
+        switch (step.getReadiness()) {
+            case SELECTOR_VISIBLE -> {
+                requireValue(index, step, target, "就绪选择器（readinessTarget）");
+                validateSelector(index, step, target);
+            }
+            case SELECTOR_STABLE -> {
+                requireValue(index, step, target, "就绪选择器（readinessTarget）");
+                validateSelector(index, step, target);
+                // 稳定检测在页面内用 querySelector 取元素
+                if (!isPlainCss(target)) {
+                    throw invalid(index, step, "SELECTOR_STABLE 的 readinessTarget 须为标准 CSS: " + target);
+                }
+            }
+            case PREDICATE -> requireValue(index, step, target, "就绪谓词（readinessTarget）");
+            default -> {
+            }
+        }
+    }
+
+    private static void requireValue(int index, TaskStep step, String value, String what) {
+        if (value == null || value.isBlank()) {
+            throw invalid(index, step, "缺少" + what);
+        }
+    }
+
+    private static boolean isTemplated(String text) {
+        return text != null && text.contains("${");
+    }
+
+    private static KKException invalid(int index, TaskStep step, String reason) {
+        String desc = step == null || step.getDescription() == null ? "" : " (" + step.getDescription() + ")";
+        return new KKException("第 " + (index + 1) + " 步" + desc + " 无效: " + reason);
+    }
+
+    private static TaskStep copyOf(TaskStep step) {
+        return new TaskStep()
+                .setId(step.getId())
+                .setDependsOn(step.getDependsOn() == null ? new ArrayList<>() : new ArrayList<>(step.getDependsOn()))
+                .setType(step.getType())
+                .setSelector(step.getSelector())
+                .setValue(step.getValue())
+                .setDescription(step.getDescription())
+                .setDelay(step.getDelay())
+                .setReadiness(step.getReadiness())
+                .setReadinessTarget(step.getReadinessTarget())
+                .setWaitUntil(step.getWaitUntil())
+                .setThrottle(step.getThrottle())
+                .setParams(step.getParams() == null ? new HashMap<>() : new HashMap<>(step.getParams()));
+    }
+
+    /**
+     * 步骤内容哈希：各字段带长度前缀拼接，避免不同内容拼出相同字符串
+     */
+    private static String hash(List<TaskStep> steps) {
+        StringBuilder sb = new StringBuilder(steps.size() * 64);
+        for (TaskStep step : steps) {
+            if (step == null) {
+                sb.append("null;");
+                continue;
+            }
+            field(sb, step.getId());
+            field(sb, step.getDependsOn() == null || step.getDependsOn().isEmpty() ? null : step.getDependsOn());
+            field(sb, step.getType());
+            field(sb, step.getSelector());
+            field(sb, step.getValue());
+            field(sb, step.getDescription());
+            field(sb, step.getDelay());
+            field(sb, step.getReadiness());
+            field(sb, step.getReadinessTarget());
+            field(sb, step.getWaitUntil());
+            field(sb, step.getThrottle());
+            Map<String, String> params = step.getParams() == null ? Map.of() : new TreeMap<>(step.getParams());
+            field(sb, params);
+            sb.append(';');
+        }
+        return DigestUtil.sha256Hex(sb.toString());
+    }
+
+    private static void field(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append('~');
+            return;
+        }
+        String text = value.toString();
+        sb.append(text.length()).append(':').append(text);
+    }
+}
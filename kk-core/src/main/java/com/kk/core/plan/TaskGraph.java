@@ -0,0 +1,57 @@
+package com.kk.core.plan;
+
+import java.util.List;
+
+/**
+ * 依赖图：按 TaskStep.dependsOn 编译出的执行拓扑与页面分配
+ *
+ * 说明：
+ * - 同一分支（lane）的步骤在同一页面上依次执行，不同分支在同一上下文的不同页面上并行
+ * - 分支 0 使用任务会话的主页面；其他分支在第一步执行前打开新页面，最后一步完成后关闭
+ * - 节点沿用其某个依赖所在的分支（该依赖须是该分支当前的最后一步），否则开新分支；
+ *   从某节点分出的新分支，首步不是 NAVIGATE 时先打开该节点完成时的页面地址
+ *
+ * @param dependencies 各步骤依赖的步骤序号
+ * @param dependents   各步骤的后继步骤序号
+ * @param order        拓扑序（同层按步骤序号）
+ * @param lanes        各步骤所在分支
+ * @param forkFrom     分支首步的来源步骤序号，非分支首步或不继承页面时为 -1
+ * @param laneEnds     各分支的最后一步
+ */
+public record TaskGraph(
+        List<List<Integer>> dependencies,
+        List<List<Integer>> dependents,
+        List<Integer> order,
+        List<Integer> lanes,
+        List<Integer> forkFrom,
+        List<Integer> laneEnds
+) {
+
+    public TaskGraph {
+        dependencies = dependencies.stream().map(List::copyOf).toList();
+        dependents = dependents.stream().map(List::copyOf).toList();
+        order = List.copyOf(order);
+        lanes = List.copyOf(lanes);
+        forkFrom = List.copyOf(forkFrom);
+        laneEnds = List.copyOf(laneEnds);
+    }
+
+    public int laneCount() {
+        return laneEnds.size();
+    }
+
+    public int lane(int step) {
+        return lanes.get(step);
+    }
+
+    /**
+     * 其他分支是否会从该步骤分出（需要在该步完成时记下页面地址）
+     */
+    public boolean isForkSource(int step) {
+        return forkFrom.contains(step);
+    }
+
+    public boolean isLaneEnd(int step) {
+        return laneEnds.get(lanes.get(step)) == step;
+    }
+}
@@ -9,6 +9,11 @@ public interface  BrowserService {
      */
     void launchBrowser(boolean headless);
 
+    /**
+     * 打开独立会话（任务并发执行时每个任务一个会话）
+     */
+    BrowserSession openSession(SessionOptions options);
+
     /**
      * 导航到URL
      */
@@ -44,6 +49,11 @@ public interface  BrowserService {
      */
     void waitForSelector(String selector, int timeout);
 
+    /**
+     * 归还当前浏览器上下文（浏览器进程保留，供后续任务复用）
+     */
+    void releaseBrowser();
+
     /**
      * 关闭浏览器
      */
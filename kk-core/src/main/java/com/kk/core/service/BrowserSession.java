@@ -0,0 +1,164 @@
+package com.kk.core.service;
+
+import com.kk.common.constant.Constants;
+import com.kk.common.model.DownloadRecord;
+import com.kk.common.model.NetworkStats;
+import com.kk.common.model.SelectorTiming;
+import com.kk.common.model.TaskStep;
+
+import java.util.List;
+
+/**
+ * 浏览器会话接口 - 单个任务独占的页面/上下文句柄
+ *
+ * 不同任务的会话互不影响；关闭会话只归还本任务的上下文，不影响同一浏览器上的其他任务。
+ */
+public interface BrowserSession extends AutoCloseable {
+
+    /**
+     * 导航到URL，等待 load
+     */
+    default void navigateTo(String url) {
+        navigateTo(url, TaskStep.NavigationWait.LOAD, null, Constants.DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * 导航到URL；之前 prefetch 过同一 URL 时直接切换到预加载的页面
+     *
+     * @param wait      导航完成条件
+     * @param selector  wait 为 SELECTOR 时等待可见的元素
+     * @param timeoutMs 导航与等待的总上限
+     */
+    void navigateTo(String url, TaskStep.NavigationWait wait, String selector, long timeoutMs);
+
+    /**
+     * 在同一上下文的隐藏页面中开始加载 URL，不等待加载完成；之后 navigateTo 同一 URL 时换用该页面，
+     * 导航到其他 URL 或会话关闭时丢弃。同一时刻只保留一个预加载页面，再次调用替换之前的
+     */
+    void prefetch(String url);
+
+    /**
+     * 点击元素
+     */
+    void click(String selector);
+
+    /**
+     * 填充表单
+     */
+    void fill(String selector, String value);
+
+    /**
+     * 获取文本
+     */
+    String getText(String selector);
+
+    /**
+     * 截图
+     */
+    void screenshot(String path);
+
+    /**
+     * 截图并返回图片字节（由浏览器完成编码），写盘交给调用方
+     */
+    byte[] captureScreenshot(ScreenshotSpec spec);
+
+    /**
+     * 执行JavaScript
+     */
+    Object evaluateScript(String script);
+
+    /**
+     * 等待元素
+     */
+    void waitForSelector(String selector, int timeout);
+
+    /**
+     * 在一次页面内脚本调用中依次执行多个 DOM 操作，遇到无法执行的操作即停止
+     *
+     * 执行前等待第一个操作的元素出现；返回成功执行的数量及停止原因，调用方对剩余操作逐个回退执行。
+     */
+    DomAction.Result executeFused(List<DomAction> actions);
+
+    /**
+     * 在一次页面内调用中按行选择器取出第 offset 行起最多 limit 行的字段值，不等待元素出现
+     *
+     * 每块重新匹配行，块与块之间页面发生变化时以最新 DOM 为准。
+     *
+     * @param rowSelector 行选择器（支持 Playwright 选择器语法）
+     * @param fields      字段（行内标准 CSS 选择器 + 取值方式）
+     */
+    ExtractSpec.Chunk extractRows(String rowSelector, List<ExtractSpec.Field> fields, int offset, int limit);
+
+    /**
+     * 点击元素触发下载，按块读出写入目标路径（先写 .part，完成后改名），同时计算校验和，不整体载入内存
+     *
+     * 超过大小或时间上限时中止并删除已写入的部分；返回的记录不含步骤序号。
+     *
+     * @param target 目标文件，或以分隔符结尾 / 已存在的目录（文件名取浏览器建议的文件名）
+     * @param spec   已补齐全局默认值的下载参数
+     */
+    DownloadRecord download(String selector, String target, DownloadSpec spec);
+
+    /**
+     * 等待就绪条件满足；超时返回 false（不抛异常）
+     *
+     * @param readiness 就绪条件（不含 AUTO）
+     * @param target    选择器或 JS 谓词，视条件而定
+     * @param timeoutMs 等待上限
+     */
+    boolean awaitReadiness(TaskStep.Readiness readiness, String target, long timeoutMs);
+
+    /**
+     * 本会话各选择器的解析耗时汇总，按首次使用顺序排列
+     */
+    List<SelectorTiming> selectorTimings();
+
+    /**
+     * 本会话的网络统计（会话关闭后仍可读取）
+     */
+    NetworkStats networkStats();
+
+    /**
+     * 当前页面 URL（不采集快照与计数）
+     */
+    String currentUrl();
+
+    /**
+     * 页面轻量快照：URL、请求计数（仅 SessionOptions.trace 开启时统计）与截断后的 DOM
+     *
+     * @param maxDomChars DOM 最多保留的字符数，0 表示不采集 DOM
+     */
+    PageTrace traceSnapshot(int maxDomChars);
+
+    /**
+     * 在同一上下文中打开新页面（共享 Cookie 与存储），供依赖图的并行分支使用
+     *
+     * 子会话只关闭自己的页面，上下文仍由本会话归还；须在本会话关闭之前关闭。
+     *
+     * @param cancellation 子会话使用的取消令牌
+     */
+    BrowserSession openPage(CancellationToken cancellation);
+
+    /**
+     * 记录断点：当前 URL 与 storageState
+     *
+     * @param nextStep 恢复后继续执行的步骤序号
+     */
+    SessionCheckpoint checkpoint(int nextStep);
+
+    /**
+     * 浏览器是否已断开或页面已崩溃（主动关闭的会话不算）
+     */
+    boolean isCrashed();
+
+    /**
+     * 会话是否仍可用
+     */
+    boolean isOpen();
+
+    /**
+     * 关闭会话并归还上下文（可重复调用）
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,75 @@
+package com.kk.core.service;
+
+import com.kk.common.exception.TaskCancelledException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个任务的协作式取消令牌
+ *
+ * 说明：
+ * - cancel() 只置位并唤醒 sleep()，不强行中断线程；执行线程在步骤之间、分片等待的每一片之间、
+ *   节流休眠中检查令牌，发现取消即抛出 TaskCancelledException
+ * - 记录取消时刻，执行线程真正退出时据此计算停止延迟
+ * - 可重复调用 cancel()，只有第一次生效
+ */
+public class CancellationToken {
+
+    /**
+     * 永不取消的令牌，供不需要取消的调用方使用
+     */
+    public static final CancellationToken NONE = new CancellationToken();
+
+    private final CountDownLatch latch = new CountDownLatch(1);
+    private volatile long cancelledAtNanos;
+    private volatile String reason;
+
+    /**
+     * 请求取消，返回是否为首次请求
+     */
+    public boolean cancel(String reason) {
+        if (this == NONE) return false;
+        synchronized (this) {
+            if (isCancelled()) return false;
+            this.reason = reason;
+            this.cancelledAtNanos = System.nanoTime();
+            latch.countDown();
+            return true;
+        }
+    }
+
+    public boolean isCancelled() {
+        return latch.getCount() == 0;
+    }
+
+    public String getReason() {
+        return reason;
+    }
+
+    /**
+     * 取消请求发出至今的毫秒数；未取消时返回 -1
+     */
+    public long millisSinceCancel() {
+        return isCancelled() ? TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - cancelledAtNanos) : -1;
+    }
+
+    /**
+     * 已取消则抛出 TaskCancelledException
+     */
+    public void throwIfCancelled() {
+        if (isCancelled()) {
+            throw new TaskCancelledException(reason == null ? "任务已被停止" : reason);
+        }
+    }
+
+    /**
+     * 可被取消打断的休眠：取消时立即返回并抛出 TaskCancelledException
+     */
+    public void sleep(long millis) throws InterruptedException {
+        if (millis > 0) {
+            latch.await(millis, TimeUnit.MILLISECONDS);
+        }
+        throwIfCancelled();
+    }
+}
@@ -0,0 +1,27 @@
+package com.kk.core.service;
+
+/**
+ * 可在页面内合并执行的 DOM 操作
+ *
+ * @param kind     操作类型
+ * @param selector 标准 CSS 选择器（document.querySelector 可解析）
+ * @param value    FILL 的填充值
+ */
+public record DomAction(Kind kind, String selector, String value) {
+
+    public enum Kind {
+        /** 设置 value 并派发 input / change 事件 */
+        FILL,
+        /** 调用 element.click()，不产生真实鼠标事件 */
+        CLICK
+    }
+
+    /**
+     * 合并执行结果
+     *
+     * @param completed 成功执行的操作数，等于操作总数表示全部完成
+     * @param error     第 completed 个操作未能执行的原因（not-found / not-visible / not-editable / not-fillable）
+     */
+    public record Result(int completed, String error) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.kk.core.service;
+
+import com.kk.common.exception.KKException;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * DOWNLOAD 步骤参数：点击 selector 触发下载，边读边写入 value 指定的路径并计算校验和
+ *
+ * 步骤参数：
+ * - checksum：sha256 / sha1 / md5 / none，省略时使用全局默认值
+ * - maxBytes：文件大小上限（字节），超出即中止并删除已写入的部分，0 表示使用全局默认值
+ * - timeoutMs：从点击到写盘完成的总上限（毫秒），0 表示使用全局默认值
+ *
+ * 输出路径以 / 或 \ 结尾、或为已存在的目录时，文件名取浏览器建议的文件名。
+ *
+ * @param algorithm MessageDigest 算法名，"none" 表示不计算，null 表示使用默认值
+ * @param maxBytes  大小上限，0 表示默认值
+ * @param timeoutMs 时间上限，0 表示默认值
+ */
+public record DownloadSpec(String algorithm, long maxBytes, long timeoutMs) {
+
+    public static final String NO_CHECKSUM = "none";
+
+    public static DownloadSpec of(Map<String, String> params) {
+        String checksum = params == null ? null : params.get("checksum");
+        String algorithm = checksum == null || checksum.isBlank() ? null : algorithm(checksum);
+        return new DownloadSpec(algorithm,
+                parseLong("maxBytes", params == null ? null : params.get("maxBytes")),
+                parseLong("timeoutMs", params == null ? null : params.get("timeoutMs")));
+    }
+
+    /**
+     * 以全局默认值补齐未指定的参数
+     */
+    public DownloadSpec withDefaults(String defaultAlgorithm, long defaultMaxBytes, long defaultTimeoutMs) {
+        return new DownloadSpec(
+                algorithm != null ? algorithm : algorithm(defaultAlgorithm),
+                maxBytes > 0 ? maxBytes : defaultMaxBytes,
+                timeoutMs > 0 ? timeoutMs : defaultTimeoutMs);
+    }
+
+    /**
+     * 新建摘要，不计算校验和时返回 null
+     */
+    public MessageDigest newDigest() {
+        if (algorithm == null || NO_CHECKSUM.equals(algorithm)) return null;
+        try {
+            return MessageDigest.getInstance(algorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new KKException("不支持的校验算法: " + algorithm);
+        }
+    }
+
+    private static String algorithm(String checksum) {
+        return switch (checksum.trim().toLowerCase(Locale.ROOT).replace("-", "")) {
+            case "sha256" -> "SHA-256";
+            case "sha1" -> "SHA-1";
+            case "md5" -> "MD5";
+            case "none", "" -> NO_CHECKSUM;
+            default -> throw new KKException("下载参数 checksum 只支持 sha256 / sha1 / md5 / none: " + checksum);
+        };
+    }
+
+    private static long parseLong(String name, String value) {
+        if (value == null || value.isBlank()) return 0;
+        try {
+            long number = Long.parseLong(value.trim());
+            if (number < 0) {
+                throw new KKException("下载参数 " + name + " 不能为负数: " + value);
+            }
+            return number;
+        } catch (NumberFormatException e) {
+            throw new KKException("下载参数 " + name + " 不是整数: " + value);
+        }
+    }
+}
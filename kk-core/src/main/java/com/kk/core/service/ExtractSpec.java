@@ -0,0 +1,134 @@
+package com.kk.core.service;
+
+import com.kk.common.exception.KKException;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * EXTRACT 步骤参数：行选择器 + 字段映射，按块在页面内一次取出
+ *
+ * 步骤参数：
+ * - fields：字段映射，分号分隔，格式 name=selector@attr；selector 为行内标准 CSS 选择器（为空表示行本身），
+ *   attr 省略时取 textContent，html 取 innerHTML，value 取表单值，其余取同名属性；
+ *   示例："title=td.title; link=a@href; price=td.price@data-value; id=@data-id"
+ * - sink：jsonl / csv / result（写入 TaskResult.data）；省略时有输出路径按扩展名判断（.csv 为 CSV，其余 JSONL），
+ *   无输出路径为 result
+ * - chunkSize：每次页面内调用取出的行数，0 表示使用全局默认值
+ * - maxRows：最多提取的行数，0 表示不限制（result 仍受全局上限约束）
+ *
+ * @param rowSelector 行选择器（支持 Playwright 选择器语法），来自步骤 selector
+ * @param fields      字段，按声明顺序（即 CSV 列顺序）
+ * @param sink        输出方式（小写）
+ * @param target      输出路径（来自步骤 value，可含占位符），result 时可为空
+ * @param chunkSize   每块行数，0 表示默认值
+ * @param maxRows     行数上限，0 表示不限制
+ */
+public record ExtractSpec(String rowSelector, List<Field> fields, String sink, String target,
+                          int chunkSize, int maxRows) {
+
+    public static final String SINK_JSONL = "jsonl";
+    public static final String SINK_CSV = "csv";
+    public static final String SINK_RESULT = "result";
+
+    /**
+     * 属性名：字母开头，可含数字、-、_、:（如 data-id、xlink:href）
+     */
+    private static final Pattern ATTRIBUTE = Pattern.compile("[A-Za-z][\\w:-]*");
+
+    /**
+     * @param name      输出字段名
+     * @param selector  行内 CSS 选择器，null 表示行本身
+     * @param attribute 取值方式：null 为 textContent，html / value 为对应属性，其余为 getAttribute
+     */
+    public record Field(String name, String selector, String attribute) {
+    }
+
+    /**
+     * 一块提取结果
+     *
+     * @param total 页面上匹配的总行数
+     * @param rows  本块各行的字段值（与 fields 顺序一致，元素缺失时为 null）
+     */
+    public record Chunk(int total, List<List<String>> rows) {
+    }
+
+    public List<String> fieldNames() {
+        return fields.stream().map(Field::name).toList();
+    }
+
+    public static ExtractSpec of(String rowSelector, String target, Map<String, String> params) {
+        String raw = params == null ? null : params.get("fields");
+        if (raw == null || raw.isBlank()) {
+            throw new KKException("提取参数 fields 不能为空");
+        }
+
+        List<Field> fields = new ArrayList<>();
+        Set<String> names = new HashSet<>();
+        for (String part : raw.split(";")) {
+            if (part.isBlank()) continue;
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new KKException("提取字段格式应为 name=selector@attr: " + part.trim());
+            }
+            String name = part.substring(0, eq).trim();
+            if (name.isEmpty() || !names.add(name)) {
+                throw new KKException("提取字段名为空或重复: " + part.trim());
+            }
+            fields.add(parseField(name, part.substring(eq + 1).trim()));
+        }
+        if (fields.isEmpty()) {
+            throw new KKException("提取参数 fields 不能为空");
+        }
+
+        String sink = params.get("sink");
+        if (sink == null || sink.isBlank()) {
+            if (target == null || target.isBlank()) {
+                sink = SINK_RESULT;
+            } else {
+                sink = target.trim().toLowerCase(Locale.ROOT).endsWith(".csv") ? SINK_CSV : SINK_JSONL;
+            }
+        }
+        sink = sink.trim().toLowerCase(Locale.ROOT);
+        if (!SINK_RESULT.equals(sink) && (target == null || target.isBlank())) {
+            throw new KKException("提取输出 " + sink + " 缺少输出路径");
+        }
+
+        return new ExtractSpec(rowSelector, List.copyOf(fields), sink, target,
+                parseCount("chunkSize", params.get("chunkSize")),
+                parseCount("maxRows", params.get("maxRows")));
+    }
+
+    /**
+     * 最后一个 @ 之后是合法属性名时视为取值方式，否则整体作为选择器（兼容 [title="a@b"] 之类的属性选择器）
+     */
+    private static Field parseField(String name, String mapping) {
+        String selector = mapping;
+        String attribute = null;
+        int at = mapping.lastIndexOf('@');
+        if (at >= 0 && ATTRIBUTE.matcher(mapping.substring(at + 1).trim()).matches()) {
+            selector = mapping.substring(0, at).trim();
+            attribute = mapping.substring(at + 1).trim();
+            if ("text".equalsIgnoreCase(attribute)) attribute = null;
+        }
+        return new Field(name, selector.isEmpty() ? null : selector, attribute);
+    }
+
+    private static int parseCount(String name, String value) {
+        if (value == null || value.isBlank()) return 0;
+        try {
+            int count = Integer.parseInt(value.trim());
+            if (count < 0) {
+                throw new KKException("提取参数 " + name + " 不能为负数: " + value);
+            }
+            return count;
+        } catch (NumberFormatException e) {
+            throw new KKException("提取参数 " + name + " 不是整数: " + value);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.kk.core.service;
+
+/**
+ * 页面轻量快照 - 失败追踪使用
+ *
+ * @param url               当前页面地址
+ * @param dom               页面 HTML（超过上限截断；未采集为 null）
+ * @param requests          会话开始以来完成的请求数
+ * @param failedRequests    会话开始以来失败的请求数
+ * @param lastFailedRequest 最近一个失败请求（方法 URL: 原因），没有则为 null
+ */
+public record PageTrace(String url, String dom, long requests, long failedRequests, String lastFailedRequest) {
+}
@@ -0,0 +1,33 @@
+package com.kk.core.service;
+
+import java.util.Map;
+
+/**
+ * 调度指标快照
+ *
+ * @param queueDepth     当前排队任务数
+ * @param running        当前执行中的任务数
+ * @param maxConcurrent  全局并发上限
+ * @param capacity       队列容量
+ * @param submitted      累计提交数
+ * @param rejected       累计拒绝数
+ * @param completed      累计完成数（含失败）
+ * @param avgWaitMs      平均排队耗时（毫秒）
+ * @param maxWaitMs      最大排队耗时（毫秒）
+ * @param queueDepths    各队列排队数
+ * @param queueRunning   各队列执行中任务数
+ */
+public record SchedulerMetrics(
+        int queueDepth,
+        int running,
+        int maxConcurrent,
+        int capacity,
+        long submitted,
+        long rejected,
+        long completed,
+        double avgWaitMs,
+        double maxWaitMs,
+        Map<String, Integer> queueDepths,
+        Map<String, Integer> queueRunning
+) {
+}
@@ -0,0 +1,89 @@
+package com.kk.core.service;
+
+import com.kk.common.exception.KKException;
+import com.kk.common.model.ExecutionProfile;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.Map;
+
+/**
+ * 截图参数：以执行配置档为默认值，步骤参数逐项覆盖
+ *
+ * 步骤参数：
+ * - type：png / jpeg
+ * - quality：JPEG 质量 0-100
+ * - fullPage：true / false
+ * - clip：裁剪区域 "x,y,width,height"（CSS 像素）
+ * - scale：css（按 CSS 像素，高分屏下图片更小）/ device（按设备像素）
+ */
+@Data
+@Accessors(chain = true)
+public class ScreenshotSpec {
+    private boolean fullPage;
+    private boolean jpeg;
+    private int quality = 80;
+    private double[] clip;
+    private boolean cssScale;
+
+    public static ScreenshotSpec of(ExecutionProfile profile, Map<String, String> params) {
+        ScreenshotSpec spec = new ScreenshotSpec()
+                .setFullPage(profile.isScreenshotFullPage())
+                .setJpeg("jpeg".equalsIgnoreCase(profile.getScreenshotType()))
+                .setQuality(profile.getScreenshotQuality());
+        if (params == null || params.isEmpty()) {
+            return spec;
+        }
+
+        String type = params.get("type");
+        if (type != null) {
+            spec.setJpeg("jpeg".equalsIgnoreCase(type) || "jpg".equalsIgnoreCase(type));
+        }
+        String quality = params.get("quality");
+        if (quality != null) {
+            spec.setQuality(Math.min(100, Math.max(0, parseInt("quality", quality))));
+        }
+        String fullPage = params.get("fullPage");
+        if (fullPage != null) {
+            spec.setFullPage(Boolean.parseBoolean(fullPage));
+        }
+        String clip = params.get("clip");
+        if (clip != null && !clip.isBlank()) {
+            spec.setClip(parseClip(clip));
+            // 裁剪区域与整页截图互斥
+            spec.setFullPage(false);
+        }
+        String scale = params.get("scale");
+        if (scale != null) {
+            spec.setCssScale("css".equalsIgnoreCase(scale));
+        }
+        return spec;
+    }
+
+    private static int parseInt(String name, String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new KKException("截图参数 " + name + " 不是整数: " + value);
+        }
+    }
+
+    private static double[] parseClip(String clip) {
+        String[] parts = clip.split(",");
+        if (parts.length != 4) {
+            throw new KKException("截图参数 clip 格式应为 x,y,width,height: " + clip);
+        }
+        double[] rect = new double[4];
+        try {
+            for (int i = 0; i < 4; i++) {
+                rect[i] = Double.parseDouble(parts[i].trim());
+            }
+        } catch (NumberFormatException e) {
+            throw new KKException("截图参数 clip 格式应为 x,y,width,height: " + clip);
+        }
+        if (rect[2] <= 0 || rect[3] <= 0) {
+            throw new KKException("截图参数 clip 的宽高必须大于 0: " + clip);
+        }
+        return rect;
+    }
+}
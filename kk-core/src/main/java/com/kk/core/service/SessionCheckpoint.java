@@ -0,0 +1,21 @@
+package com.kk.core.service;
+
+/**
+ * 会话断点 - 浏览器崩溃后据此重建会话并从 nextStep 继续
+ *
+ * 只保存 URL 与 storageState（Cookie + localStorage），不含页面内的 DOM 状态；
+ * 断点之后的步骤在恢复后会重新执行。
+ *
+ * @param nextStep     恢复后从第几步（0 起）继续
+ * @param url          断点时页面地址
+ * @param storageState Playwright storageState JSON
+ */
+public record SessionCheckpoint(int nextStep, String url, String storageState) {
+
+    /**
+     * 页面状态未变化时只推进步骤序号
+     */
+    public SessionCheckpoint advanceTo(int step) {
+        return new SessionCheckpoint(step, url, storageState);
+    }
+}
@@ -0,0 +1,53 @@
+package com.kk.core.service;
+
+import com.kk.common.model.BlockRules;
+import com.kk.common.model.ExecutionProfile;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+/**
+ * 浏览器会话参数
+ */
+@Data
+@Accessors(chain = true)
+public class SessionOptions {
+    /**
+     * 所属任务 ID（诊断使用，可为空）
+     */
+    private String taskId;
+    private boolean headless;
+    /**
+     * 执行配置档：决定慢动作、视口、截图格式与 Chromium 启动参数
+     */
+    private ExecutionProfile profile = ExecutionProfile.defaults();
+    /**
+     * 网络拦截规则，为空或无规则时不安装路由（保留浏览器 HTTP 缓存）
+     */
+    private BlockRules blockRules;
+    /**
+     * 恢复会话时要还原的 storageState JSON；设置后使用一次性上下文，不进入上下文池
+     */
+    private String storageState;
+    /**
+     * 任务的取消令牌：每次驱动调用前、分片等待的每一片之间检查，取消后抛出 TaskCancelledException
+     */
+    private CancellationToken cancellation = CancellationToken.NONE;
+    /**
+     * 失败追踪：开启后会话统计完成/失败的请求数，供 traceSnapshot 使用
+     */
+    private boolean trace;
+
+    /**
+     * 完整复制（恢复会话等场景在副本上只改个别字段，新增字段时须同步补充）
+     */
+    public SessionOptions copy() {
+        return new SessionOptions()
+                .setTaskId(taskId)
+                .setHeadless(headless)
+                .setProfile(profile)
+                .setBlockRules(blockRules)
+                .setStorageState(storageState)
+                .setCancellation(cancellation)
+                .setTrace(trace);
+    }
+}
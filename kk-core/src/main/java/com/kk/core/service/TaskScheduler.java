@@ -0,0 +1,40 @@
+package com.kk.core.service;
+
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * 任务调度器接口 - 有界优先级队列 + 按队列限流
+ */
+public interface TaskScheduler {
+
+    /**
+     * 提交任务；队列已满时按拒绝策略处理（被拒绝的任务以异常完成）
+     */
+    CompletableFuture<TaskResult> submit(AutomationTask task, Consumer<String> logCallback);
+
+    /**
+     * 取消尚在排队的任务；任务已开始执行则返回 false
+     */
+    boolean cancel(String taskId);
+
+    /**
+     * 获取调度指标
+     */
+    SchedulerMetrics getMetrics();
+
+    /**
+     * 队列已满时的拒绝策略
+     */
+    enum RejectionPolicy {
+        /** 直接拒绝 */
+        ABORT,
+        /** 阻塞提交线程，超时仍无空位则拒绝 */
+        BLOCK,
+        /** 挤掉队列中优先级最低的任务（新任务优先级须更高） */
+        DISCARD_LOWEST
+    }
+}
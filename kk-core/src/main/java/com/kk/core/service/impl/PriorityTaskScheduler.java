@@ -0,0 +1,316 @@
+package com.kk.core.service.impl;
+
+import com.kk.common.exception.KKException;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+import com.kk.core.service.AutomationExecutor;
+import com.kk.core.service.SchedulerMetrics;
+import com.kk.core.service.TaskScheduler;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 有界优先级任务调度器
+ *
+ * 说明：
+ * - 排队顺序：优先级高者优先，同优先级先到先得
+ * - 全局并发上限 maxConcurrent，另可按队列名设置并发上限（queueLimits）
+ * - 队列满时按 rejectionPolicy 处理，形成背压；任何策略都不在提交线程（可能是 JavaFX 线程）上执行任务
+ * - 派发线程与执行线程均为虚拟线程，阻塞的 Playwright 调用不会占用公共 ForkJoin 池
+ */
+@Slf4j
+@Service
+public class PriorityTaskScheduler implements TaskScheduler {
+
+    private static final Comparator<Entry> ORDER = Comparator
+            .comparingInt((Entry e) -> -e.task.getPriority())
+            .thenComparingLong(e -> e.seq);
+
+    /**
+     * 排队容量（不含执行中的任务）
+     */
+    @Value("${kk.scheduler.capacity:1000}")
+    private int capacity;
+
+    /**
+     * 全局并发上限，默认与执行器的并发名额一致
+     */
+    @Value("${kk.scheduler.maxConcurrent:${kk.automation.maxConcurrentTasks:4}}")
+    private int maxConcurrent;
+
+    /**
+     * 按队列限流，格式：queue=limit，逗号/换行分隔；未列出的队列只受全局上限约束
+     */
+    @Value("${kk.scheduler.queueLimits:}")
+    private String queueLimits;
+
+    @Value("${kk.scheduler.rejectionPolicy:ABORT}")
+    private RejectionPolicy rejectionPolicy;
+
+    /**
+     * BLOCK 策略下提交线程最长等待时间（毫秒）
+     */
+    @Value("${kk.scheduler.blockTimeoutMs:5000}")
+    private long blockTimeoutMs;
+
+    private final AutomationExecutor automationExecutor;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final TreeSet<Entry> pending = new TreeSet<>(ORDER);
+    private final Map<String, Integer> limits = new HashMap<>();
+    private final Map<String, Integer> queueRunning = new HashMap<>();
+    private int running;
+    private long seq;
+
+    private long submitted;
+    private long rejected;
+    private long completed;
+    private long waitNanosTotal;
+    private long waitNanosMax;
+    private long dispatched;
+
+    private ExecutorService workers;
+    private Thread dispatcher;
+    private volatile boolean shutdown;
+
+    public PriorityTaskScheduler(@Lazy AutomationExecutor automationExecutor) {
+        this.automationExecutor = automationExecutor;
+    }
+
+    @PostConstruct
+    public void start() {
+        parseQueueLimits();
+        workers = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("kk-task-", 0).factory());
+        dispatcher = Thread.ofVirtual().name("kk-scheduler").start(this::dispatchLoop);
+        log.info("任务调度器已启动 (capacity: {}, maxConcurrent: {}, queueLimits: {}, policy: {})",
+                capacity, maxConcurrent, limits, rejectionPolicy);
+    }
+
+    @Override
+    public CompletableFuture<TaskResult> submit(AutomationTask task, Consumer<String> logCallback) {
+        Entry entry = new Entry(task, logCallback);
+
+        lock.lock();
+        try {
+            entry.seq = seq++;
+            submitted++;
+
+            if (pending.size() >= capacity && !makeRoom(entry)) {
+                rejected++;
+                entry.future.completeExceptionally(new KKException("任务队列已满，拒绝任务: " + task.getName()));
+                return entry.future;
+            }
+            entry.enqueuedNanos = System.nanoTime();
+            pending.add(entry);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        return entry.future;
+    }
+
+    @Override
+    public boolean cancel(String taskId) {
+        lock.lock();
+        try {
+            Iterator<Entry> it = pending.iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                if (entry.task.getId().equals(taskId)) {
+                    it.remove();
+                    entry.task.setStatus(AutomationTask.TaskStatus.STOPPED);
+                    entry.future.cancel(false);
+                    changed.signalAll();
+                    return true;
+                }
+            }
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public SchedulerMetrics getMetrics() {
+        lock.lock();
+        try {
+            Map<String, Integer> depths = new HashMap<>();
+            pending.forEach(e -> depths.merge(queueOf(e.task), 1, Integer::sum));
+            double avgWaitMs = dispatched == 0 ? 0 : waitNanosTotal / 1_000_000.0 / dispatched;
+            return new SchedulerMetrics(pending.size(), running, maxConcurrent, capacity,
+                    submitted, rejected, completed,
+                    avgWaitMs, waitNanosMax / 1_000_000.0,
+                    depths, new HashMap<>(queueRunning));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 队列已满时按策略腾出空位；调用方须持有锁
+     */
+    private boolean makeRoom(Entry entry) {
+        switch (rejectionPolicy) {
+            case BLOCK -> {
+                long remaining = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+                try {
+                    while (pending.size() >= capacity) {
+                        if (remaining <= 0) return false;
+                        remaining = changed.awaitNanos(remaining);
+                    }
+                    return true;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            case DISCARD_LOWEST -> {
+                Entry lowest = pending.last();
+                if (lowest.task.getPriority() >= entry.task.getPriority()) return false;
+                pending.remove(lowest);
+                rejected++;
+                lowest.future.completeExceptionally(new KKException("任务被更高优先级任务挤出队列: " + lowest.task.getName()));
+                return true;
+            }
+            default -> {
+                return false;
+            }
+        }
+    }
+
+    private void dispatchLoop() {
+        while (!shutdown) {
+            Entry next;
+            lock.lock();
+            try {
+                while ((next = pollEligible()) == null) {
+                    changed.await();
+                    if (shutdown) return;
+                }
+                running++;
+                queueRunning.merge(queueOf(next.task), 1, Integer::sum);
+
+                long waitNanos = System.nanoTime() - next.enqueuedNanos;
+                waitNanosTotal += waitNanos;
+                waitNanosMax = Math.max(waitNanosMax, waitNanos);
+                dispatched++;
+                // 唤醒 BLOCK 策略下等待空位的提交线程
+                changed.signalAll();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            Entry entry = next;
+            workers.execute(() -> {
+                try {
+                    complete(entry);
+                } finally {
+                    onFinished(entry);
+                }
+            });
+        }
+    }
+
+    /**
+     * 取出第一个所在队列仍有并发名额的任务；调用方须持有锁
+     */
+    private Entry pollEligible() {
+        if (running >= maxConcurrent) return null;
+
+        Iterator<Entry> it = pending.iterator();
+        while (it.hasNext()) {
+            Entry entry = it.next();
+            String queue = queueOf(entry.task);
+            Integer limit = limits.get(queue);
+            if (limit == null || queueRunning.getOrDefault(queue, 0) < limit) {
+                it.remove();
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void complete(Entry entry) {
+        try {
+            entry.future.complete(automationExecutor.executeTask(entry.task, entry.logCallback));
+        } catch (Exception e) {
+            log.error("任务执行失败", e);
+            entry.future.completeExceptionally(e);
+        }
+    }
+
+    private void onFinished(Entry entry) {
+        lock.lock();
+        try {
+            running--;
+            queueRunning.merge(queueOf(entry.task), -1, Integer::sum);
+            completed++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void parseQueueLimits() {
+        if (queueLimits == null || queueLimits.isBlank()) return;
+
+        for (String part : queueLimits.split("[,\\n]")) {
+            String[] kv = part.trim().split("=");
+            if (kv.length != 2) continue;
+            try {
+                limits.put(kv[0].trim(), Math.max(1, Integer.parseInt(kv[1].trim())));
+            } catch (NumberFormatException e) {
+                log.warn("忽略无效的队列限流配置: {}", part);
+            }
+        }
+    }
+
+    private static String queueOf(AutomationTask task) {
+        return task.getQueue() == null ? "default" : task.getQueue();
+    }
+
+    @PreDestroy
+    public void stop() {
+        shutdown = true;
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    private static final class Entry {
+        private final AutomationTask task;
+        private final Consumer<String> logCallback;
+        private final CompletableFuture<TaskResult> future = new CompletableFuture<>();
+        private long seq;
+        private long enqueuedNanos;
+
+        private Entry(AutomationTask task, Consumer<String> logCallback) {
+            this.task = task;
+            this.logCallback = logCallback;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.kk.core.trace;
+
+import com.kk.common.model.TaskStep;
+
+/**
+ * 失败追踪中的单步记录
+ *
+ * @param step              步骤序号（0 起）
+ * @param type              步骤类型
+ * @param description       步骤描述
+ * @param timestamp         记录时间（epoch 毫秒）
+ * @param durationMs        步骤总耗时（排队 + 动作 + 就绪等待）
+ * @param success           是否成功
+ * @param error             失败原因
+ * @param url               步骤结束时的页面地址
+ * @param requests          本步骤期间完成的请求数
+ * @param failedRequests    本步骤期间失败的请求数
+ * @param lastFailedRequest 会话内最近一个失败请求
+ * @param dom               步骤结束时的 DOM（截断；未开启逐步 DOM 快照时为 null）
+ */
+public record TraceEntry(int step, TaskStep.StepType type, String description, long timestamp, double durationMs,
+                         boolean success, String error, String url, long requests, long failedRequests,
+                         String lastFailedRequest, String dom) {
+}
@@ -0,0 +1,146 @@
+package com.kk.core.trace;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.kk.common.model.StepTiming;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.PageTrace;
+import com.kk.core.service.ScreenshotSpec;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 失败追踪 - 单次执行的滚动追踪
+ *
+ * 说明：
+ * - 内存中只保留最近 capacity 步的轻量记录（动作、耗时、URL、请求计数，可选截断后的 DOM）
+ * - 只有任务失败或总耗时超过阈值时才写盘：trace.json + 失败时刻的 page.html / screenshot.png
+ * - 采集本身的耗时累计为 overheadNanos，随 TaskResult 返回，便于评估常开的代价
+ * - 采集失败（页面已崩溃、会话已关闭）不影响任务，只在记录中留空
+ */
+@Slf4j
+public class TraceRecorder {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final DateTimeFormatter DIR_TIME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final int capacity;
+    private final int domChars;
+    private final Deque<TraceEntry> ring;
+
+    private long lastRequests;
+    private long lastFailedRequests;
+    private long overheadNanos;
+    private long recorded;
+
+    /**
+     * @param capacity 保留的最近步数
+     * @param domChars 逐步 DOM 快照的字符上限，0 表示只在写盘时采集一次
+     */
+    public TraceRecorder(int capacity, int domChars) {
+        this.capacity = Math.max(1, capacity);
+        this.domChars = Math.max(0, domChars);
+        this.ring = new ArrayDeque<>(this.capacity);
+    }
+
+    /**
+     * 记录一步；error 为 null 表示成功
+     */
+    public void record(BrowserSession session, StepTiming timing, String error) {
+        long begin = System.nanoTime();
+        PageTrace page = snapshot(session, domChars);
+        long requests = page == null ? lastRequests : page.requests();
+        long failed = page == null ? lastFailedRequests : page.failedRequests();
+
+        TraceEntry entry = new TraceEntry(timing.getIndex(), timing.getType(), timing.getDescription(),
+                System.currentTimeMillis(), timing.getTotalNanos() / 1_000_000.0, error == null, error,
+                page == null ? null : page.url(),
+                Math.max(0, requests - lastRequests), Math.max(0, failed - lastFailedRequests),
+                page == null ? null : page.lastFailedRequest(),
+                page == null ? null : page.dom());
+        lastRequests = requests;
+        lastFailedRequests = failed;
+
+        if (ring.size() >= capacity) {
+            ring.pollFirst();
+        }
+        ring.offerLast(entry);
+        recorded++;
+        overheadNanos += System.nanoTime() - begin;
+    }
+
+    /**
+     * 会话即将被替换（崩溃恢复）时调用：新会话的请求计数从 0 开始
+     */
+    public void resetCounters() {
+        lastRequests = 0;
+        lastFailedRequests = 0;
+    }
+
+    public long getOverheadNanos() {
+        return overheadNanos;
+    }
+
+    /**
+     * 写盘：在 dir 下创建 时间-任务ID 目录，写入追踪记录及当前页面的 HTML 与截图，返回目录路径
+     *
+     * @param session     当前会话，已关闭或崩溃时只写追踪记录
+     * @param maxDomChars 最终 DOM 快照的字符上限
+     */
+    public Path persist(Path dir, String taskId, String taskName, String reason,
+                        BrowserSession session, int maxDomChars) throws IOException {
+        Path target = dir.resolve(LocalDateTime.now().format(DIR_TIME) + "-" + taskId);
+        Files.createDirectories(target);
+
+        PageTrace page = session != null && session.isOpen() && !session.isCrashed()
+                ? snapshot(session, Math.max(0, maxDomChars))
+                : null;
+        if (page != null && page.dom() != null) {
+            Files.writeString(target.resolve("page.html"), page.dom(), StandardCharsets.UTF_8);
+        }
+        if (page != null) {
+            try {
+                Files.write(target.resolve("screenshot.png"), session.captureScreenshot(new ScreenshotSpec()));
+            } catch (RuntimeException e) {
+                log.debug("失败追踪截图失败: {}", e.getMessage());
+            }
+        }
+
+        Map<String, Object> trace = new LinkedHashMap<>();
+        trace.put("taskId", taskId);
+        trace.put("taskName", taskName);
+        trace.put("reason", reason);
+        trace.put("createdAt", LocalDateTime.now().toString());
+        trace.put("url", page == null ? null : page.url());
+        trace.put("recordedSteps", recorded);
+        trace.put("overheadMs", overheadNanos / 1_000_000.0);
+        trace.put("steps", new ArrayList<>(ring));
+        MAPPER.writeValue(target.resolve("trace.json").toFile(), trace);
+        return target;
+    }
+
+    public List<TraceEntry> entries() {
+        return List.copyOf(ring);
+    }
+
+    private static PageTrace snapshot(BrowserSession session, int maxDomChars) {
+        if (session == null) return null;
+        try {
+            return session.traceSnapshot(maxDomChars);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.kk.core.batch;
+
+import com.kk.common.exception.KKException;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvRowReaderTest {
+
+    @Test
+    void readsHeaderAndRows() throws IOException {
+        CsvRowReader reader = reader("name, age\nalice,30\nbob,41\n", ',');
+
+        assertEquals(List.of("name", "age"), reader.getHeader());
+        assertEquals(Map.of("name", "alice", "age", "30"), reader.next());
+        assertEquals(Map.of("name", "bob", "age", "41"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void handlesQuotedDelimitersEscapedQuotesAndNewlines() throws IOException {
+        CsvRowReader reader = reader("a,b,c\n\"x,y\",\"say \"\"hi\"\"\",\"line1\nline2\"\n", ',');
+
+        Map<String, String> row = reader.next();
+        assertEquals("x,y", row.get("a"));
+        assertEquals("say \"hi\"", row.get("b"));
+        assertEquals("line1\nline2", row.get("c"));
+        assertNull(reader.next());
+    }
+
+    @Test
+    void quoteInsideUnquotedFieldIsLiteral() throws IOException {
+        CsvRowReader reader = reader("a,b\n5\" disk,\"\"\n", ',');
+
+        Map<String, String> row = reader.next();
+        assertEquals("5\" disk", row.get("a"));
+        assertEquals("", row.get("b"));
+    }
+
+    @Test
+    void handlesCrlfBomAndBlankLines() throws IOException {
+        CsvRowReader reader = reader("\uFEFFa;b\r\n1;2\r\n\r\n3;4", ';');
+
+        assertEquals(List.of("a", "b"), reader.getHeader());
+        assertEquals(Map.of("a", "1", "b", "2"), reader.next());
+        assertEquals(Map.of("a", "3", "b", "4"), reader.next());
+        assertNull(reader.next());
+    }
+
+    @Test
+    void padsMissingColumnsAndIgnoresExtraOnes() throws IOException {
+        CsvRowReader reader = reader("a,b\n1\n1,2,3\n", ',');
+
+        assertEquals(Map.of("a", "1", "b", ""), reader.next());
+        assertEquals(Map.of("a", "1", "b", "2"), reader.next());
+    }
+
+    @Test
+    void rejectsEmptyFile() {
+        assertThrows(KKException.class, () -> reader("", ','));
+    }
+
+    private static CsvRowReader reader(String csv, char delimiter) throws IOException {
+        return new CsvRowReader(new BufferedReader(new StringReader(csv)), delimiter);
+    }
+}
@@ -0,0 +1,84 @@
+package com.kk.core.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    private static final long HIGHEST = TimeUnit.MINUTES.toNanos(10);
+
+    @Test
+    void emptyHistogramReportsZero() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST, 2);
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.min());
+        assertEquals(0, snapshot.p50());
+        assertEquals(0, snapshot.p99());
+        assertEquals(0, snapshot.max());
+    }
+
+    @Test
+    void percentilesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST, 2);
+        // 1ms ~ 1000ms 均匀分布
+        for (int ms = 1; ms <= 1000; ms++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(ms));
+        }
+
+        assertEquals(1000, histogram.getTotalCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), histogram.getMinNanos());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1000), histogram.getMaxNanos());
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(500), histogram.getValueAtPercentile(50), 0.01);
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(950), histogram.getValueAtPercentile(95), 0.01);
+        assertWithin(TimeUnit.MILLISECONDS.toNanos(990), histogram.getValueAtPercentile(99), 0.01);
+        assertEquals(histogram.getMaxNanos(), histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void percentileNeverExceedsRecordedMax() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST, 1);
+        long value = TimeUnit.MILLISECONDS.toNanos(123);
+        histogram.record(value);
+
+        assertEquals(value, histogram.getValueAtPercentile(50));
+        assertEquals(value, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void valuesAreClampedToTrackableRange() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST, 2);
+        histogram.record(-5);
+        histogram.record(HIGHEST * 4);
+
+        assertEquals(0, histogram.getMinNanos());
+        assertEquals(HIGHEST, histogram.getMaxNanos());
+        assertEquals(HIGHEST, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    void meanUsesRecordedValues() {
+        LatencyHistogram histogram = new LatencyHistogram(HIGHEST, 3);
+        histogram.record(1_000_000);
+        histogram.record(3_000_000);
+
+        assertEquals(2_000_000.0, histogram.getMeanNanos());
+    }
+
+    @Test
+    void rejectsUnsupportedPrecision() {
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(HIGHEST, 0));
+        assertThrows(IllegalArgumentException.class, () -> new LatencyHistogram(HIGHEST, 4));
+    }
+
+    private static void assertWithin(long expected, long actual, double relativeError) {
+        double error = Math.abs(actual - expected) / (double) expected;
+        assertTrue(error <= relativeError, "期望约 " + expected + "，实际 " + actual);
+    }
+}
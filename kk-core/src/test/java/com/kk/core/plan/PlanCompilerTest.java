@@ -0,0 +1,175 @@
+package com.kk.core.plan;
+
+import com.kk.common.exception.KKException;
+import com.kk.common.model.TaskStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlanCompilerTest {
+
+    @Test
+    void fusesFillsEndingWithSyntheticClick() {
+        List<CompiledStep> steps = compiled(
+                TaskStep.fill("#user", "alice", "用户名"),
+                TaskStep.fill("#pass", "secret", "密码"),
+                syntheticClick("#login"));
+
+        PlanCompiler.markFusedRuns(steps);
+
+        assertEquals(List.of(3, 1, 1), runs(steps));
+    }
+
+    @Test
+    void syntheticClickClosesRun() {
+        List<CompiledStep> steps = compiled(
+                TaskStep.fill("#q", "kk", "搜索词"),
+                syntheticClick("#go"),
+                TaskStep.fill("#a", "1", "a"),
+                TaskStep.fill("#b", "2", "b"));
+
+        PlanCompiler.markFusedRuns(steps);
+
+        assertEquals(List.of(2, 1, 2, 1), runs(steps));
+    }
+
+    @Test
+    void singleStepsAndRealClicksAreNotFused() {
+        List<CompiledStep> steps = compiled(
+                TaskStep.fill("#q", "kk", "搜索词"),
+                TaskStep.click("#go", "搜索"),
+                TaskStep.fill("#a", "1", "a"));
+
+        PlanCompiler.markFusedRuns(steps);
+
+        assertEquals(List.of(1, 1, 1), runs(steps));
+    }
+
+    @Test
+    void throttleOnlyAllowedOnFirstStepOfRun() {
+        List<CompiledStep> steps = compiled(
+                TaskStep.fill("#a", "1", "a"),
+                TaskStep.fill("#b", "2", "b").setThrottle(100),
+                TaskStep.fill("#c", "3", "c"));
+
+        PlanCompiler.markFusedRuns(steps);
+
+        assertEquals(List.of(1, 2, 1), runs(steps));
+    }
+
+    @Test
+    void optOutTemplatesPlaywrightSelectorsAndExplicitReadinessBreakRuns() {
+        List<TaskStep> breakers = List.of(
+                TaskStep.fill("#b", "2", "b").param("fuse", "false"),
+                TaskStep.fill("#${field}", "2", "b"),
+                TaskStep.fill("text=用户名", "2", "b"),
+                TaskStep.fill("#b", "2", "b").readyWhen(TaskStep.Readiness.SELECTOR_VISIBLE, "#b"));
+        for (TaskStep breaker : breakers) {
+            List<CompiledStep> steps = compiled(TaskStep.fill("#a", "1", "a"), breaker);
+
+            PlanCompiler.markFusedRuns(steps);
+
+            assertEquals(List.of(1, 1), runs(steps), "不应合并: " + breaker.getSelector());
+        }
+    }
+
+    @Test
+    void fillWithoutReadinessWaitIsFusible() {
+        List<CompiledStep> steps = compiled(
+                TaskStep.fill("#a", "1", "a"),
+                TaskStep.fill("#b", "2", "b").setReadiness(TaskStep.Readiness.NONE));
+
+        PlanCompiler.markFusedRuns(steps);
+
+        assertEquals(List.of(2, 1), runs(steps));
+    }
+
+    @Test
+    void recognisesPlainCss() {
+        assertTrue(PlanCompiler.isPlainCss("#main .item > a[href^='/detail']"));
+        assertTrue(PlanCompiler.isPlainCss(" form input:not([type=hidden]) "));
+        assertTrue(PlanCompiler.isPlainCss("ul li:nth-child(2n+1)"));
+    }
+
+    @Test
+    void rejectsPlaywrightSelectorSyntax() {
+        for (String selector : List.of("text=登录", "//div[@id='a']", "(//a)[1]", "..", "div >> span",
+                "button:has-text(\"OK\")", "a:visible", "xpath=//a", "internal:role=button",
+                "css=div", "li:nth-match(a, 2)", "input:right-of(label)")) {
+            assertFalse(PlanCompiler.isPlainCss(selector), selector);
+        }
+    }
+
+    @Test
+    void listTaskHasNoGraph() {
+        assertNull(PlanCompiler.buildGraph(compiled(
+                TaskStep.navigate("https://example.com"),
+                TaskStep.click("#a", "a"),
+                TaskStep.click("#b", "b"))));
+    }
+
+    @Test
+    void forkedBranchesRunOnSeparateLanes() {
+        TaskGraph graph = PlanCompiler.buildGraph(compiled(
+                TaskStep.navigate("https://example.com").setId("s0"),
+                TaskStep.click("#a", "a").setId("a").after("s0"),
+                TaskStep.click("#b", "b").setId("b").after("s0"),
+                TaskStep.screenshot("done.png").after("a", "b")));
+
+        assertNotNull(graph);
+        assertEquals(2, graph.laneCount());
+        assertEquals(List.of(1, 2), graph.dependencies().get(3));
+    }
+
+    @Test
+    void rejectsUndeclaredStepInGraphTask() {
+        // 画布载入依赖图后，列表编辑新加的步骤没有依赖
+        List<CompiledStep> steps = compiled(
+                TaskStep.navigate("https://example.com").setId("s0"),
+                TaskStep.click("#a", "a").setId("a").after("s0"),
+                TaskStep.click("#b", "b").setId("b").after("s0"),
+                TaskStep.fill("#c", "1", "新步骤"));
+
+        KKException e = assertThrows(KKException.class, () -> PlanCompiler.buildGraph(steps));
+        assertTrue(e.getMessage().contains("步骤未声明依赖"), e.getMessage());
+        assertTrue(e.getMessage().contains("第 4 步"), e.getMessage());
+    }
+
+    @Test
+    void navigationMayStartIndependentBranch() {
+        TaskGraph graph = PlanCompiler.buildGraph(compiled(
+                TaskStep.navigate("https://a.example.com").setId("s0"),
+                TaskStep.click("#a", "a").after("s0"),
+                TaskStep.navigate("https://b.example.com").setId("s2"),
+                TaskStep.click("#b", "b").after("s2")));
+
+        assertNotNull(graph);
+        assertEquals(2, graph.laneCount());
+    }
+
+    private static TaskStep syntheticClick(String selector) {
+        return TaskStep.click(selector, "点击").param("synthetic", "true");
+    }
+
+    private static List<CompiledStep> compiled(TaskStep... steps) {
+        List<CompiledStep> compiled = new ArrayList<>();
+        for (int i = 0; i < steps.length; i++) {
+            TaskStep step = steps[i];
+            compiled.add(new CompiledStep(i, step, step.getType(), step.getSelector(), step.getValue(),
+                    false, 0, null, null, null, null, 1));
+        }
+        return compiled;
+    }
+
+    private static List<Integer> runs(List<CompiledStep> steps) {
+        return steps.stream().map(CompiledStep::fuseRun).toList();
+    }
+}
@@ -0,0 +1,83 @@
+package com.kk.core.service;
+
+import com.kk.common.exception.TaskCancelledException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CancellationTokenTest {
+
+    @Test
+    void newTokenIsNotCancelled() {
+        CancellationToken token = new CancellationToken();
+
+        assertFalse(token.isCancelled());
+        assertEquals(-1, token.millisSinceCancel());
+        assertDoesNotThrow(token::throwIfCancelled);
+    }
+
+    @Test
+    void onlyFirstCancelTakesEffect() {
+        CancellationToken token = new CancellationToken();
+
+        assertTrue(token.cancel("用户停止"));
+        assertFalse(token.cancel("超时"));
+        assertTrue(token.isCancelled());
+        assertEquals("用户停止", token.getReason());
+        assertTrue(token.millisSinceCancel() >= 0);
+
+        TaskCancelledException e = assertThrows(TaskCancelledException.class, token::throwIfCancelled);
+        assertEquals("用户停止", e.getMessage());
+    }
+
+    @Test
+    void missingReasonUsesDefaultMessage() {
+        CancellationToken token = new CancellationToken();
+        token.cancel(null);
+
+        TaskCancelledException e = assertThrows(TaskCancelledException.class, token::throwIfCancelled);
+        assertEquals("任务已被停止", e.getMessage());
+    }
+
+    @Test
+    void noneCannotBeCancelled() {
+        assertFalse(CancellationToken.NONE.cancel("停止"));
+        assertFalse(CancellationToken.NONE.isCancelled());
+    }
+
+    @Test
+    void sleepReturnsNormallyWhenNotCancelled() {
+        CancellationToken token = new CancellationToken();
+
+        assertDoesNotThrow(() -> token.sleep(1));
+        assertDoesNotThrow(() -> token.sleep(0));
+    }
+
+    @Test
+    void cancelWakesSleeper() throws Exception {
+        CancellationToken token = new CancellationToken();
+        CompletableFuture<Long> sleeper = CompletableFuture.supplyAsync(() -> {
+            long start = System.nanoTime();
+            try {
+                token.sleep(TimeUnit.SECONDS.toMillis(30));
+            } catch (TaskCancelledException e) {
+                return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return -1L;
+        });
+
+        Thread.sleep(50);
+        token.cancel("停止");
+        long sleptMs = sleeper.get(5, TimeUnit.SECONDS);
+        assertTrue(sleptMs >= 0 && sleptMs < 5000, "取消后应立即结束休眠，实际 " + sleptMs + "ms");
+    }
+}
@@ -0,0 +1,61 @@
+package com.kk.core.service;
+
+import com.kk.common.exception.KKException;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DownloadSpecTest {
+
+    @Test
+    void missingParamsMeanDefaults() {
+        DownloadSpec spec = DownloadSpec.of(null);
+
+        assertNull(spec.algorithm());
+        assertEquals(0, spec.maxBytes());
+        assertEquals(0, spec.timeoutMs());
+        assertEquals(spec, DownloadSpec.of(Map.of()));
+    }
+
+    @Test
+    void parsesChecksumAliasesAndLimits() {
+        DownloadSpec spec = DownloadSpec.of(Map.of("checksum", " SHA-256 ", "maxBytes", "1048576", "timeoutMs", " 30000 "));
+
+        assertEquals("SHA-256", spec.algorithm());
+        assertEquals(1048576, spec.maxBytes());
+        assertEquals(30000, spec.timeoutMs());
+        assertEquals("SHA-1", DownloadSpec.of(Map.of("checksum", "sha1")).algorithm());
+        assertEquals("MD5", DownloadSpec.of(Map.of("checksum", "MD5")).algorithm());
+        assertEquals(DownloadSpec.NO_CHECKSUM, DownloadSpec.of(Map.of("checksum", "none")).algorithm());
+    }
+
+    @Test
+    void rejectsInvalidParams() {
+        assertThrows(KKException.class, () -> DownloadSpec.of(Map.of("checksum", "crc32")));
+        assertThrows(KKException.class, () -> DownloadSpec.of(Map.of("maxBytes", "-1")));
+        assertThrows(KKException.class, () -> DownloadSpec.of(Map.of("timeoutMs", "10s")));
+    }
+
+    @Test
+    void defaultsOnlyFillUnsetValues() {
+        DownloadSpec defaults = DownloadSpec.of(Map.of()).withDefaults("md5", 100, 200);
+        assertEquals(new DownloadSpec("MD5", 100, 200), defaults);
+
+        DownloadSpec explicit = DownloadSpec.of(Map.of("checksum", "none", "maxBytes", "5", "timeoutMs", "6"))
+                .withDefaults("sha256", 100, 200);
+        assertEquals(new DownloadSpec(DownloadSpec.NO_CHECKSUM, 5, 6), explicit);
+    }
+
+    @Test
+    void digestFollowsAlgorithm() {
+        assertNull(new DownloadSpec(DownloadSpec.NO_CHECKSUM, 0, 0).newDigest());
+        assertNull(new DownloadSpec(null, 0, 0).newDigest());
+        assertNotNull(new DownloadSpec("SHA-256", 0, 0).newDigest());
+        assertThrows(KKException.class, () -> new DownloadSpec("SHA-999", 0, 0).newDigest());
+    }
+}
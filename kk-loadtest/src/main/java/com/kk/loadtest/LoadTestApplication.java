@@ -0,0 +1,35 @@
+package com.kk.loadtest;
+
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * 压测入口：装配真实的调度器/执行器 + 假浏览器，跑完一轮后打印报告并退出
+ *
+ * 示例：
+ * java -jar kk-loadtest.jar --kk.loadtest.rate=50 --kk.loadtest.tasks=2000 --kk.loadtest.seed=7
+ *      --kk.automation.maxConcurrentTasks=8 --kk.loadtest.report=target/loadtest.json
+ *
+ * 退出码：0 全部完成，1 超时未完成，2 参数或运行错误
+ */
+@SpringBootApplication(scanBasePackages = {"com.kk.core", "com.kk.playwright", "com.kk.loadtest"})
+public class LoadTestApplication {
+
+    public static void main(String[] args) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(LoadTestApplication.class)
+                .run(args);
+        int code;
+        try {
+            LoadTestReport report = context.getBean(LoadTestRunner.class).run();
+            System.out.println(report.render());
+            code = report.timedOut() ? 1 : 0;
+        } catch (Exception e) {
+            System.err.println("压测失败: " + e.getMessage());
+            code = 2;
+        }
+        int exitCode = code;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
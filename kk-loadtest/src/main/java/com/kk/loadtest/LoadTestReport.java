@@ -0,0 +1,74 @@
+package com.kk.loadtest;
+
+import com.kk.core.metrics.LatencyHistogram;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 压测报告（耗时单位：纳秒）
+ *
+ * @param mode               驱动方式（scheduler / executor）
+ * @param seed               随机数种子
+ * @param targetRate         目标提交速率（任务/秒）
+ * @param tasks              统计的任务数（不含预热）
+ * @param warmupTasks        预热任务数
+ * @param succeeded          成功数
+ * @param failed             失败数（含模拟失败与停止）
+ * @param rejected           被调度器拒绝的任务数
+ * @param timedOut           是否在超时前未全部完成
+ * @param elapsedNanos       统计阶段第一次计划提交到最后一个任务完成的耗时
+ * @param throughput         完成吞吐（任务/秒）
+ * @param achievedRate       实际提交速率（任务/秒）
+ * @param maxSubmitLagNanos  实际提交时刻落后计划时刻的最大值（提交线程跟不上目标速率时增大）
+ * @param queueDelay         计划提交 → 打开会话（调度排队 + 执行名额等待）
+ * @param latency            计划提交 → 结果返回（端到端）
+ * @param browser            假浏览器模拟耗时总和
+ * @param overhead           端到端 - 排队 - 浏览器，即编排本身的开销
+ */
+public record LoadTestReport(
+        String mode,
+        long seed,
+        double targetRate,
+        int tasks,
+        int warmupTasks,
+        long succeeded,
+        long failed,
+        long rejected,
+        boolean timedOut,
+        long elapsedNanos,
+        double throughput,
+        double achievedRate,
+        long maxSubmitLagNanos,
+        LatencyHistogram.Snapshot queueDelay,
+        LatencyHistogram.Snapshot latency,
+        LatencyHistogram.Snapshot browser,
+        LatencyHistogram.Snapshot overhead
+) {
+
+    public String render() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format(Locale.ROOT, "模式: %s  种子: %d  目标速率: %.1f/s  任务: %d (预热 %d)%n",
+                mode, seed, targetRate, tasks, warmupTasks));
+        sb.append(String.format(Locale.ROOT, "成功: %d  失败: %d  拒绝: %d%s%n",
+                succeeded, failed, rejected, timedOut ? "  [超时，未全部完成]" : ""));
+        sb.append(String.format(Locale.ROOT, "耗时: %.2fs  吞吐: %.2f/s  实际提交: %.2f/s  最大提交滞后: %.2fms%n",
+                elapsedNanos / 1e9, throughput, achievedRate, ms(maxSubmitLagNanos)));
+        sb.append(String.format(Locale.ROOT, "%-10s %10s %10s %10s %10s %10s %10s%n",
+                "(ms)", "count", "mean", "p50", "p95", "p99", "max"));
+        row(sb, "排队", queueDelay);
+        row(sb, "端到端", latency);
+        row(sb, "浏览器", browser);
+        row(sb, "编排开销", overhead);
+        return sb.toString();
+    }
+
+    private static void row(StringBuilder sb, String name, LatencyHistogram.Snapshot s) {
+        sb.append(String.format(Locale.ROOT, "%-10s %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n",
+                name, s.count(), s.mean() / 1e6, ms(s.p50()), ms(s.p95()), ms(s.p99()), ms(s.max())));
+    }
+
+    private static double ms(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
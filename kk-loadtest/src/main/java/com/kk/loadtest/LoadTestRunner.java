@@ -0,0 +1,259 @@
+package com.kk.loadtest;
+
+import cn.hutool.json.JSONObject;
+import com.kk.common.exception.KKException;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+import com.kk.common.model.TaskStep;
+import com.kk.core.metrics.LatencyHistogram;
+import com.kk.core.service.AutomationExecutor;
+import com.kk.core.service.TaskScheduler;
+import com.kk.loadtest.fake.FakeBrowserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * 压测驱动：按目标速率开环提交任务，统计吞吐、排队与延迟分位
+ *
+ * 说明：
+ * - 开环提交：第 i 个任务的计划提交时刻固定为 start + i / rate，延迟从计划时刻算起，
+ *   系统变慢不会反过来压低提交速率（避免协调遗漏）
+ * - scheduler 模式经 TaskScheduler（排队、限流、拒绝策略），executor 模式直接在虚拟线程上调用执行器
+ * - 所有任务由同一模板 instantiate 生成（变量 seq 区分），与批量执行一样命中计划缓存
+ * - 前 warmupTasks 个任务只用于预热 JIT 与上下文，不计入统计
+ */
+@Slf4j
+@Component
+public class LoadTestRunner {
+
+    private static final long HIGHEST_TRACKABLE_NANOS = TimeUnit.HOURS.toNanos(1);
+    private static final Consumer<String> NO_LOG = line -> { };
+
+    /**
+     * 驱动方式：scheduler / executor
+     */
+    @Value("${kk.loadtest.mode:scheduler}")
+    private String mode;
+
+    /**
+     * 目标提交速率（任务/秒）
+     */
+    @Value("${kk.loadtest.rate:20}")
+    private double rate;
+
+    /**
+     * 统计的任务数（不含预热）
+     */
+    @Value("${kk.loadtest.tasks:1000}")
+    private int tasks;
+
+    @Value("${kk.loadtest.warmupTasks:50}")
+    private int warmupTasks;
+
+    /**
+     * 每个任务的步骤类型序列（逗号分隔），支持 NAVIGATE / CLICK / FILL / WAIT / SCRIPT
+     */
+    @Value("${kk.loadtest.steps:NAVIGATE,FILL,FILL,CLICK,WAIT}")
+    private String steps;
+
+    /**
+     * 全部任务完成的等待上限（秒）
+     */
+    @Value("${kk.loadtest.timeoutSeconds:600}")
+    private long timeoutSeconds;
+
+    /**
+     * 报告输出路径（JSON），为空时只打印到控制台
+     */
+    @Value("${kk.loadtest.report:}")
+    private String reportPath;
+
+    @Value("${kk.loadtest.seed:42}")
+    private long seed;
+
+    private final FakeBrowserService browserService;
+    private final AutomationExecutor executor;
+    private final TaskScheduler scheduler;
+
+    public LoadTestRunner(FakeBrowserService browserService, AutomationExecutor executor, TaskScheduler scheduler) {
+        this.browserService = browserService;
+        this.executor = executor;
+        this.scheduler = scheduler;
+    }
+
+    public LoadTestReport run() throws InterruptedException {
+        if (rate <= 0 || tasks <= 0 || warmupTasks < 0) {
+            throw new KKException("压测参数无效：rate、tasks 必须大于 0，warmupTasks 不能为负数");
+        }
+        boolean viaScheduler = switch (mode.trim().toLowerCase()) {
+            case "scheduler" -> true;
+            case "executor" -> false;
+            default -> throw new KKException("未知的压测模式: " + mode + "（scheduler / executor）");
+        };
+
+        AutomationTask template = buildTemplate();
+        int total = warmupTasks + tasks;
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+
+        LatencyHistogram queueDelay = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, 2);
+        LatencyHistogram latency = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, 2);
+        LatencyHistogram browser = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, 2);
+        LatencyHistogram overhead = new LatencyHistogram(HIGHEST_TRACKABLE_NANOS, 2);
+        AtomicLong succeeded = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        AtomicLong lastCompletion = new AtomicLong();
+        CountDownLatch done = new CountDownLatch(total);
+        long maxLag = 0;
+        long lastSubmit = 0;
+
+        log.info("开始压测：模式 {}，速率 {}/s，任务 {}（预热 {}），步骤 {}", mode, rate, tasks, warmupTasks, steps);
+        try (ExecutorService direct = Executors.newVirtualThreadPerTaskExecutor()) {
+            long start = System.nanoTime();
+            for (int i = 0; i < total; i++) {
+                long intended = start + i * intervalNanos;
+                long wait;
+                while ((wait = intended - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                boolean measured = i >= warmupTasks;
+                long submitted = System.nanoTime();
+                if (measured) {
+                    maxLag = Math.max(maxLag, submitted - intended);
+                    lastSubmit = submitted;
+                }
+
+                AutomationTask task = template.instantiate(Map.of("seq", String.valueOf(i)));
+                browserService.bind(task.getId(), i);
+                CompletableFuture<TaskResult> future = viaScheduler
+                        ? scheduler.submit(task, NO_LOG)
+                        : CompletableFuture.supplyAsync(() -> executor.executeTask(task, NO_LOG), direct);
+
+                future.whenComplete((result, ex) -> {
+                    long now = System.nanoTime();
+                    FakeBrowserService.TaskStats stats = browserService.takeStats(task.getId());
+                    if (measured) {
+                        if (ex != null) {
+                            rejected.incrementAndGet();
+                        } else {
+                            (result.isSuccess() ? succeeded : failed).incrementAndGet();
+                            long e2e = now - intended;
+                            long queued = stats == null ? e2e : Math.max(0, stats.getOpenedAtNanos() - intended);
+                            long simulated = stats == null ? 0 : stats.getSimulatedNanos();
+                            latency.record(e2e);
+                            queueDelay.record(queued);
+                            browser.record(simulated);
+                            overhead.record(Math.max(0, e2e - queued - simulated));
+                        }
+                        lastCompletion.accumulateAndGet(now, Math::max);
+                    }
+                    done.countDown();
+                });
+            }
+
+            boolean finished = done.await(timeoutSeconds, TimeUnit.SECONDS);
+            long measuredStart = start + warmupTasks * intervalNanos;
+            long end = finished ? lastCompletion.get() : System.nanoTime();
+            long elapsed = Math.max(1, end - measuredStart);
+            long completed = succeeded.get() + failed.get();
+            double achieved = tasks > 1 && lastSubmit > measuredStart
+                    ? (tasks - 1) * 1e9 / (lastSubmit - measuredStart)
+                    : rate;
+
+            LoadTestReport report = new LoadTestReport(mode, seed, rate, tasks, warmupTasks,
+                    succeeded.get(), failed.get(), rejected.get(), !finished, elapsed,
+                    completed * 1e9 / elapsed, achieved, maxLag,
+                    queueDelay.snapshot(), latency.snapshot(), browser.snapshot(), overhead.snapshot());
+            if (!finished) {
+                log.warn("压测在 {} 秒内未全部完成，剩余 {} 个任务", timeoutSeconds, done.getCount());
+                direct.shutdownNow();
+            }
+            writeReport(report);
+            return report;
+        }
+    }
+
+    private AutomationTask buildTemplate() {
+        AutomationTask template = new AutomationTask("loadtest").setHeadless(true);
+        String[] types = steps.split(",");
+        for (int i = 0; i < types.length; i++) {
+            TaskStep.StepType type;
+            try {
+                type = TaskStep.StepType.valueOf(types[i].trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new KKException("未知的步骤类型: " + types[i]);
+            }
+            TaskStep step = new TaskStep().setType(type).setDescription("loadtest-" + i);
+            switch (type) {
+                case NAVIGATE -> step.setValue("https://loadtest.invalid/page/${seq}");
+                case CLICK -> step.setSelector("#button-" + i);
+                case FILL -> step.setSelector("#field-" + i).setValue("value-${seq}");
+                case WAIT -> step.setSelector("#ready-" + i).setValue("5000");
+                case SCRIPT -> step.setValue("1");
+                default -> throw new KKException("压测不支持该步骤类型: " + type);
+            }
+            template.addStep(step);
+        }
+        return template;
+    }
+
+    private void writeReport(LoadTestReport report) {
+        if (reportPath == null || reportPath.isBlank()) return;
+
+        JSONObject json = new JSONObject()
+                .set("mode", report.mode())
+                .set("seed", report.seed())
+                .set("targetRate", report.targetRate())
+                .set("tasks", report.tasks())
+                .set("warmupTasks", report.warmupTasks())
+                .set("succeeded", report.succeeded())
+                .set("failed", report.failed())
+                .set("rejected", report.rejected())
+                .set("timedOut", report.timedOut())
+                .set("elapsedMs", report.elapsedNanos() / 1e6)
+                .set("throughput", report.throughput())
+                .set("achievedRate", report.achievedRate())
+                .set("maxSubmitLagMs", report.maxSubmitLagNanos() / 1e6)
+                .set("queueDelayMs", toJson(report.queueDelay()))
+                .set("latencyMs", toJson(report.latency()))
+                .set("browserMs", toJson(report.browser()))
+                .set("overheadMs", toJson(report.overhead()));
+        Path path = Paths.get(reportPath);
+        try {
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, json.toStringPretty(), StandardCharsets.UTF_8);
+            log.info("压测报告已写入: {}", path.toAbsolutePath());
+        } catch (IOException e) {
+            log.warn("写入压测报告失败: {}", e.getMessage());
+        }
+    }
+
+    private static JSONObject toJson(LatencyHistogram.Snapshot s) {
+        return new JSONObject()
+                .set("count", s.count())
+                .set("mean", s.mean() / 1e6)
+                .set("p50", s.p50() / 1e6)
+                .set("p95", s.p95() / 1e6)
+                .set("p99", s.p99() / 1e6)
+                .set("max", s.max() / 1e6);
+    }
+}
@@ -0,0 +1,219 @@
+package com.kk.loadtest.fake;
+
+import com.kk.common.exception.KKException;
+import com.kk.core.service.BrowserService;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.SessionOptions;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 进程内假浏览器服务 - 压测时替换 PlaywrightBrowserService
+ *
+ * 说明：
+ * - 每个操作按配置的分布睡眠一段时间，并按失败率抛出 KKException，不启动任何浏览器进程
+ * - 会话的随机数种子 = 全局种子 + 任务序号（由压测驱动通过 bind 登记），
+ *   同一种子下每个任务的耗时与失败序列与线程调度无关，可重复对比
+ * - 记录每个任务打开会话的时刻与模拟耗时总和，压测报告据此把排队、浏览器、编排三部分拆开
+ */
+@Slf4j
+@Primary
+@Service
+public class FakeBrowserService implements BrowserService {
+
+    public enum Op { OPEN, NAVIGATE, CLICK, FILL, WAIT, SCRIPT, SCREENSHOT, TEXT, DOWNLOAD }
+
+    @Value("${kk.loadtest.seed:42}")
+    private long seed;
+
+    @Value("${kk.loadtest.fake.open:fixed:5}")
+    private String openLatency;
+
+    @Value("${kk.loadtest.fake.navigate:lognormal:150,0.6}")
+    private String navigateLatency;
+
+    @Value("${kk.loadtest.fake.click:lognormal:15,0.5}")
+    private String clickLatency;
+
+    @Value("${kk.loadtest.fake.fill:lognormal:10,0.5}")
+    private String fillLatency;
+
+    @Value("${kk.loadtest.fake.wait:exp:30}")
+    private String waitLatency;
+
+    @Value("${kk.loadtest.fake.script:fixed:5}")
+    private String scriptLatency;
+
+    @Value("${kk.loadtest.fake.screenshot:lognormal:60,0.4}")
+    private String screenshotLatency;
+
+    @Value("${kk.loadtest.fake.text:fixed:2}")
+    private String textLatency;
+
+    @Value("${kk.loadtest.fake.download:lognormal:800,0.8}")
+    private String downloadLatency;
+
+    /**
+     * 各操作失败率，格式：op=rate，逗号分隔，如 navigate=0.01,click=0.002
+     */
+    @Value("${kk.loadtest.fake.failures:}")
+    private String failures;
+
+    private final Map<Op, LatencyDistribution> latencies = new EnumMap<>(Op.class);
+    private final Map<Op, Double> failureRates = new EnumMap<>(Op.class);
+
+    private final Map<String, Long> sequences = new ConcurrentHashMap<>();
+    private final Map<String, TaskStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong unbound = new AtomicLong();
+
+    /**
+     * 单个任务的模拟统计
+     */
+    public static final class TaskStats {
+        private final long openedAtNanos = System.nanoTime();
+        private final LongAdder simulatedNanos = new LongAdder();
+
+        public long getOpenedAtNanos() {
+            return openedAtNanos;
+        }
+
+        public long getSimulatedNanos() {
+            return simulatedNanos.sum();
+        }
+
+        void add(long nanos) {
+            simulatedNanos.add(nanos);
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        latencies.put(Op.OPEN, LatencyDistribution.parse(openLatency));
+        latencies.put(Op.NAVIGATE, LatencyDistribution.parse(navigateLatency));
+        latencies.put(Op.CLICK, LatencyDistribution.parse(clickLatency));
+        latencies.put(Op.FILL, LatencyDistribution.parse(fillLatency));
+        latencies.put(Op.WAIT, LatencyDistribution.parse(waitLatency));
+        latencies.put(Op.SCRIPT, LatencyDistribution.parse(scriptLatency));
+        latencies.put(Op.SCREENSHOT, LatencyDistribution.parse(screenshotLatency));
+        latencies.put(Op.TEXT, LatencyDistribution.parse(textLatency));
+        latencies.put(Op.DOWNLOAD, LatencyDistribution.parse(downloadLatency));
+
+        for (String item : failures.split(",")) {
+            if (item.isBlank()) continue;
+            String[] kv = item.split("=");
+            try {
+                Op op = Op.valueOf(kv[0].trim().toUpperCase());
+                double rate = Double.parseDouble(kv[1].trim());
+                if (rate < 0 || rate > 1) throw new NumberFormatException();
+                failureRates.put(op, rate);
+            } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+                throw new KKException("失败率配置错误: " + item);
+            }
+        }
+        log.info("假浏览器已就绪，种子: {}，耗时分布: {}，失败率: {}", seed, latencies, failureRates);
+    }
+
+    /**
+     * 登记任务序号，决定该任务会话的随机数种子
+     */
+    public void bind(String taskId, long sequence) {
+        sequences.put(taskId, sequence);
+    }
+
+    /**
+     * 取出并移除任务的模拟统计；任务未打开过会话时返回 null
+     */
+    public TaskStats takeStats(String taskId) {
+        sequences.remove(taskId);
+        return stats.remove(taskId);
+    }
+
+    @Override
+    public BrowserSession openSession(SessionOptions options) {
+        String taskId = options.getTaskId();
+        long sequence = taskId == null ? -1 - unbound.getAndIncrement()
+                : sequences.computeIfAbsent(taskId, k -> -1 - unbound.getAndIncrement());
+        TaskStats taskStats = taskId == null ? new TaskStats() : stats.computeIfAbsent(taskId, k -> new TaskStats());
+
+        FakeBrowserSession session = new FakeBrowserSession(this, new Random(seed * 1_000_003L + sequence),
+                options.getCancellation(), taskStats);
+        session.simulate(Op.OPEN);
+        return session;
+    }
+
+    LatencyDistribution latency(Op op) {
+        return latencies.get(op);
+    }
+
+    double failureRate(Op op) {
+        return failureRates.getOrDefault(op, 0.0);
+    }
+
+    // -------------------- 旧版单页接口：压测只走 openSession --------------------
+
+    @Override
+    public void launchBrowser(boolean headless) {
+    }
+
+    @Override
+    public void navigateTo(String url) {
+        throw unsupported();
+    }
+
+    @Override
+    public void click(String selector) {
+        throw unsupported();
+    }
+
+    @Override
+    public void fill(String selector, String value) {
+        throw unsupported();
+    }
+
+    @Override
+    public String getText(String selector) {
+        throw unsupported();
+    }
+
+    @Override
+    public void screenshot(String path) {
+        throw unsupported();
+    }
+
+    @Override
+    public Object evaluateScript(String script) {
+        throw unsupported();
+    }
+
+    @Override
+    public void waitForSelector(String selector, int timeout) {
+        throw unsupported();
+    }
+
+    @Override
+    public void releaseBrowser() {
+    }
+
+    @Override
+    public void closeBrowser() {
+    }
+
+    @Override
+    public boolean isActive() {
+        return true;
+    }
+
+    private static KKException unsupported() {
+        return new KKException("假浏览器只支持 openSession 会话接口");
+    }
+}
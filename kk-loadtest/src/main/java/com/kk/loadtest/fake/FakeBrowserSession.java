@@ -0,0 +1,231 @@
+package com.kk.loadtest.fake;
+
+import com.kk.common.exception.KKException;
+import com.kk.common.model.DownloadRecord;
+import com.kk.common.model.NetworkStats;
+import com.kk.common.model.SelectorTiming;
+import com.kk.common.model.TaskStep;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.CancellationToken;
+import com.kk.core.service.DomAction;
+import com.kk.core.service.DownloadSpec;
+import com.kk.core.service.ExtractSpec;
+import com.kk.core.service.PageTrace;
+import com.kk.core.service.ScreenshotSpec;
+import com.kk.core.service.SessionCheckpoint;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 假浏览器会话：每个操作按分布睡眠，按失败率抛出异常
+ *
+ * 由执行器的单个任务线程独占使用，随机数不需要同步。
+ */
+class FakeBrowserSession implements BrowserSession {
+
+    private static final byte[] EMPTY_IMAGE = new byte[0];
+
+    private final FakeBrowserService service;
+    private final Random random;
+    private final CancellationToken cancellation;
+    private final FakeBrowserService.TaskStats stats;
+
+    private String url = "about:blank";
+    private String prefetchUrl;
+    private long prefetchNanos;
+    private long prefetchStartNanos;
+    private volatile boolean open = true;
+
+    FakeBrowserSession(FakeBrowserService service, Random random, CancellationToken cancellation,
+                       FakeBrowserService.TaskStats stats) {
+        this.service = service;
+        this.random = random;
+        this.cancellation = cancellation == null ? CancellationToken.NONE : cancellation;
+        this.stats = stats;
+    }
+
+    /**
+     * 导航到预加载过的 URL 时只等待预加载剩余的耗时
+     */
+    @Override
+    public void navigateTo(String url, TaskStep.NavigationWait wait, String selector, long timeoutMs) {
+        String prefetched = prefetchUrl;
+        prefetchUrl = null;
+        if (url.equals(prefetched)) {
+            long remaining = Math.max(0, prefetchNanos - (System.nanoTime() - prefetchStartNanos));
+            stats.add(remaining);
+            try {
+                cancellation.sleep(TimeUnit.NANOSECONDS.toMillis(remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KKException("模拟操作被中断: " + FakeBrowserService.Op.NAVIGATE);
+            }
+        } else {
+            simulate(FakeBrowserService.Op.NAVIGATE);
+        }
+        this.url = url;
+    }
+
+    /**
+     * 预加载不占用任务线程：只抽取一次导航耗时，从此刻开始计时
+     */
+    @Override
+    public void prefetch(String url) {
+        cancellation.throwIfCancelled();
+        prefetchUrl = url;
+        prefetchNanos = service.latency(FakeBrowserService.Op.NAVIGATE).sample(random);
+        prefetchStartNanos = System.nanoTime();
+    }
+
+    @Override
+    public void click(String selector) {
+        simulate(FakeBrowserService.Op.CLICK);
+    }
+
+    @Override
+    public void fill(String selector, String value) {
+        simulate(FakeBrowserService.Op.FILL);
+    }
+
+    @Override
+    public String getText(String selector) {
+        simulate(FakeBrowserService.Op.TEXT);
+        return selector;
+    }
+
+    @Override
+    public void screenshot(String path) {
+        simulate(FakeBrowserService.Op.SCREENSHOT);
+    }
+
+    @Override
+    public byte[] captureScreenshot(ScreenshotSpec spec) {
+        simulate(FakeBrowserService.Op.SCREENSHOT);
+        return EMPTY_IMAGE;
+    }
+
+    @Override
+    public Object evaluateScript(String script) {
+        simulate(FakeBrowserService.Op.SCRIPT);
+        return null;
+    }
+
+    @Override
+    public void waitForSelector(String selector, int timeout) {
+        simulate(FakeBrowserService.Op.WAIT);
+    }
+
+    /**
+     * 合并执行按各操作耗时之和模拟，遇到模拟失败时按真实实现的约定返回已完成数
+     */
+    @Override
+    public DomAction.Result executeFused(List<DomAction> actions) {
+        for (int i = 0; i < actions.size(); i++) {
+            FakeBrowserService.Op op = actions.get(i).kind() == DomAction.Kind.CLICK
+                    ? FakeBrowserService.Op.CLICK : FakeBrowserService.Op.FILL;
+            try {
+                simulate(op);
+            } catch (KKException e) {
+                return new DomAction.Result(i, "not-found");
+            }
+        }
+        return new DomAction.Result(actions.size(), null);
+    }
+
+    /**
+     * 按一次脚本调用模拟耗时，返回空结果（页面上没有匹配的行）
+     */
+    @Override
+    public ExtractSpec.Chunk extractRows(String rowSelector, List<ExtractSpec.Field> fields, int offset, int limit) {
+        simulate(FakeBrowserService.Op.SCRIPT);
+        return new ExtractSpec.Chunk(0, List.of());
+    }
+
+    /**
+     * 只模拟耗时，不写文件
+     */
+    @Override
+    public DownloadRecord download(String selector, String target, DownloadSpec spec) {
+        long begin = System.nanoTime();
+        simulate(FakeBrowserService.Op.DOWNLOAD);
+        return new DownloadRecord()
+                .setPath(target)
+                .setUrl(url)
+                .setDurationNanos(System.nanoTime() - begin)
+                .setAlgorithm(DownloadSpec.NO_CHECKSUM);
+    }
+
+    @Override
+    public boolean awaitReadiness(TaskStep.Readiness readiness, String target, long timeoutMs) {
+        simulate(FakeBrowserService.Op.WAIT);
+        return true;
+    }
+
+    @Override
+    public List<SelectorTiming> selectorTimings() {
+        return List.of();
+    }
+
+    @Override
+    public NetworkStats networkStats() {
+        return new NetworkStats();
+    }
+
+    @Override
+    public String currentUrl() {
+        return url;
+    }
+
+    @Override
+    public PageTrace traceSnapshot(int maxDomChars) {
+        return new PageTrace(url, null, 0, 0, null);
+    }
+
+    @Override
+    public BrowserSession openPage(CancellationToken cancellation) {
+        return new FakeBrowserSession(service, new Random(random.nextLong()), cancellation, stats);
+    }
+
+    @Override
+    public SessionCheckpoint checkpoint(int nextStep) {
+        return new SessionCheckpoint(nextStep, url, null);
+    }
+
+    @Override
+    public boolean isCrashed() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+    }
+
+    /**
+     * 按分布睡眠（可被停止打断），随后按失败率抛出异常；失败的操作同样计入模拟耗时
+     */
+    void simulate(FakeBrowserService.Op op) {
+        cancellation.throwIfCancelled();
+        long nanos = service.latency(op).sample(random);
+        boolean fail = random.nextDouble() < service.failureRate(op);
+        stats.add(nanos);
+        try {
+            cancellation.sleep(TimeUnit.NANOSECONDS.toMillis(nanos));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KKException("模拟操作被中断: " + op);
+        }
+        LockSupport.parkNanos(nanos % TimeUnit.MILLISECONDS.toNanos(1));
+        if (fail) {
+            throw new KKException("模拟失败: " + op);
+        }
+    }
+}
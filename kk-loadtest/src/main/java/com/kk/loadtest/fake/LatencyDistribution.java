@@ -0,0 +1,91 @@
+package com.kk.loadtest.fake;
+
+import com.kk.common.exception.KKException;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个操作的模拟耗时分布（毫秒配置，纳秒采样）
+ *
+ * 配置格式：
+ * - none / 0：不耗时
+ * - fixed:20：固定 20ms
+ * - uniform:5-50：5 ~ 50ms 均匀分布
+ * - exp:30：均值 30ms 的指数分布
+ * - lognormal:150,0.6：中位数 150ms、σ=0.6 的对数正态分布（长尾，接近真实页面加载）
+ */
+public final class LatencyDistribution {
+
+    private enum Kind { NONE, FIXED, UNIFORM, EXP, LOGNORMAL }
+
+    private final String spec;
+    private final Kind kind;
+    private final double a;
+    private final double b;
+
+    private LatencyDistribution(String spec, Kind kind, double a, double b) {
+        this.spec = spec;
+        this.kind = kind;
+        this.a = a;
+        this.b = b;
+    }
+
+    public static LatencyDistribution parse(String spec) {
+        String s = spec == null ? "" : spec.trim().toLowerCase();
+        if (s.isEmpty() || s.equals("none") || s.equals("0")) {
+            return new LatencyDistribution("none", Kind.NONE, 0, 0);
+        }
+        int colon = s.indexOf(':');
+        if (colon < 0) {
+            throw new KKException("耗时分布缺少类型: " + spec);
+        }
+        String type = s.substring(0, colon);
+        String args = s.substring(colon + 1);
+        try {
+            return switch (type) {
+                case "fixed" -> new LatencyDistribution(s, Kind.FIXED, nonNegative(args, spec), 0);
+                case "uniform" -> {
+                    String[] range = args.split("-");
+                    double lo = nonNegative(range[0], spec);
+                    double hi = nonNegative(range[1], spec);
+                    if (hi < lo) throw new KKException("耗时分布上限小于下限: " + spec);
+                    yield new LatencyDistribution(s, Kind.UNIFORM, lo, hi);
+                }
+                case "exp" -> new LatencyDistribution(s, Kind.EXP, nonNegative(args, spec), 0);
+                case "lognormal" -> {
+                    String[] p = args.split(",");
+                    yield new LatencyDistribution(s, Kind.LOGNORMAL, nonNegative(p[0], spec), nonNegative(p[1], spec));
+                }
+                default -> throw new KKException("未知的耗时分布类型: " + spec);
+            };
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new KKException("耗时分布格式错误: " + spec);
+        }
+    }
+
+    /**
+     * 采样一次耗时（纳秒）
+     */
+    public long sample(Random random) {
+        double ms = switch (kind) {
+            case NONE -> 0;
+            case FIXED -> a;
+            case UNIFORM -> a + random.nextDouble() * (b - a);
+            case EXP -> -a * Math.log(1 - random.nextDouble());
+            case LOGNORMAL -> a * Math.exp(b * random.nextGaussian());
+        };
+        return (long) (ms * TimeUnit.MILLISECONDS.toNanos(1));
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+    private static double nonNegative(String text, String spec) {
+        double v = Double.parseDouble(text.trim());
+        if (v < 0) throw new KKException("耗时分布参数不能为负数: " + spec);
+        return v;
+    }
+}
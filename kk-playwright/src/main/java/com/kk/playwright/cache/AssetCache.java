@@ -0,0 +1,398 @@
+package com.kk.playwright.cache;
+
+import cn.hutool.crypto.digest.DigestUtil;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * 跨任务的静态资源磁盘缓存
+ *
+ * 说明：
+ * - 内容寻址：响应体按 SHA-256 存为 blobs/&lt;hash&gt;，不同 URL 的相同内容只存一份
+ * - 遵循 Cache-Control（no-store / private 不存，max-age / Expires 决定新鲜期，no-cache 每次重新验证）；
+ *   带 Set-Cookie 的响应属于某个会话，同样不存。回源后不可存储的响应单独计数，不算未命中
+ * - 过期条目带 If-None-Match / If-Modified-Since 回源验证，304 时直接用本地副本
+ * - 按总字节数做 LRU 淘汰；索引在关闭时及每 100 次写入时落盘
+ * - 命中通过路由 fulfill 返回，不经过网络；应答前先把副本读入内存，并发写入触发的淘汰删除文件不影响本次应答
+ */
+@Slf4j
+@Component
+public class AssetCache {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int SAVE_EVERY_WRITES = 100;
+
+    public enum Outcome {
+        /** 新鲜命中 */
+        HIT,
+        /** 过期但回源验证未变化（304） */
+        REVALIDATED,
+        /** 未命中，已回源 */
+        MISS,
+        /** 已回源，但响应不可存储（no-store / private / Set-Cookie 等） */
+        NOT_STORABLE,
+        /** 不适用缓存，交由调用方放行 */
+        BYPASS
+    }
+
+    @Value("${kk.playwright.cache.enabled:false}")
+    private boolean enabled;
+
+    @Value("${kk.playwright.cache.dir:./cache/assets}")
+    private String dir;
+
+    /**
+     * 磁盘占用上限（字节），超出后按最近最少使用淘汰
+     */
+    @Value("${kk.playwright.cache.maxBytes:536870912}")
+    private long maxBytes;
+
+    /**
+     * 参与缓存的资源类型（逗号分隔）
+     */
+    @Value("${kk.playwright.cache.resourceTypes:script,stylesheet}")
+    private String resourceTypes;
+
+    private Path root;
+    private Path blobs;
+    private Set<String> cachedTypes;
+
+    private final LinkedHashMap<String, Entry> index = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, Integer> blobRefs = new HashMap<>();
+    private long totalBytes;
+    private int writesSinceSave;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong notStorable = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) return;
+
+        cachedTypes = Arrays.stream(resourceTypes.split(","))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toSet());
+        root = Path.of(dir);
+        blobs = root.resolve("blobs");
+        try {
+            Files.createDirectories(blobs);
+            loadIndex();
+        } catch (IOException e) {
+            log.warn("静态资源缓存初始化失败，已停用: {}", e.getMessage());
+            enabled = false;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 缓存处理结果
+     *
+     * @param outcome 处理方式
+     * @param bytes   由本地副本返回的字节数
+     */
+    public record Served(Outcome outcome, long bytes) {
+    }
+
+    /**
+     * 尝试用缓存处理请求；返回 BYPASS 时调用方需自行放行
+     */
+    public Served serve(Route route) {
+        Request request = route.request();
+        if (!enabled || !"GET".equals(request.method()) || !cachedTypes.contains(request.resourceType())) {
+            return new Served(Outcome.BYPASS, 0);
+        }
+
+        String url = request.url();
+        Entry entry;
+        synchronized (this) {
+            entry = index.get(url);
+        }
+        // 先读出副本：之后即使被淘汰删除，本次应答仍用内存中的内容
+        byte[] body = entry == null ? null : readBlob(entry);
+        if (entry != null && body == null) {
+            remove(url, entry);
+            entry = null;
+        }
+
+        if (entry != null && entry.getExpiresAt() > System.currentTimeMillis()) {
+            fulfillFromCache(route, entry, body);
+            hits.incrementAndGet();
+            return new Served(Outcome.HIT, entry.getSize());
+        }
+
+        Map<String, String> headers = new HashMap<>(request.headers());
+        if (entry != null) {
+            if (entry.getEtag() != null) headers.put("if-none-match", entry.getEtag());
+            if (entry.getLastModified() != null) headers.put("if-modified-since", entry.getLastModified());
+        }
+
+        APIResponse response = route.fetch(new Route.FetchOptions().setHeaders(headers));
+        if (entry != null && response.status() == 304) {
+            long refreshed = expiresAt(response.headers());
+            synchronized (this) {
+                entry.setExpiresAt(refreshed);
+            }
+            fulfillFromCache(route, entry, body);
+            revalidations.incrementAndGet();
+            return new Served(Outcome.REVALIDATED, entry.getSize());
+        }
+
+        Outcome outcome;
+        if (isStorable(response)) {
+            misses.incrementAndGet();
+            store(url, response);
+            outcome = Outcome.MISS;
+        } else {
+            notStorable.incrementAndGet();
+            // 源站改为不可缓存时，旧副本不再使用
+            if (entry != null) remove(url, entry);
+            outcome = Outcome.NOT_STORABLE;
+        }
+        route.fulfill(new Route.FulfillOptions().setResponse(response));
+        return new Served(outcome, 0);
+    }
+
+    public CacheStats getStats() {
+        synchronized (this) {
+            return new CacheStats(hits.get(), revalidations.get(), misses.get(), notStorable.get(),
+                    bytesServed.get(), index.size(), totalBytes);
+        }
+    }
+
+    /**
+     * 缓存统计
+     */
+    public record CacheStats(long hits, long revalidations, long misses, long notStorable, long bytesServed,
+                             int entries, long storedBytes) {
+    }
+
+    private void fulfillFromCache(Route route, Entry entry, byte[] body) {
+        Map<String, String> headers = new HashMap<>(entry.getHeaders());
+        headers.put("x-kk-cache", "HIT");
+        route.fulfill(new Route.FulfillOptions()
+                .setStatus(200)
+                .setHeaders(headers)
+                .setBodyBytes(body));
+        bytesServed.addAndGet(entry.getSize());
+    }
+
+    /**
+     * 读取副本；文件已被淘汰或损坏时返回 null
+     */
+    private byte[] readBlob(Entry entry) {
+        try {
+            return Files.readAllBytes(blobs.resolve(entry.getHash()));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private boolean isStorable(APIResponse response) {
+        if (response.status() != 200) return false;
+
+        Map<String, String> headers = response.headers();
+        String cacheControl = headers.getOrDefault("cache-control", "").toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-store") || cacheControl.contains("private")) return false;
+        // 带会话 Cookie 的响应是给某个用户的，不能跨任务复用
+        if (headers.containsKey("set-cookie")) return false;
+
+        // 按请求头区分内容的响应无法用单一副本服务
+        String vary = headers.getOrDefault("vary", "").trim().toLowerCase(Locale.ROOT);
+        return vary.isEmpty() || vary.equals("accept-encoding");
+    }
+
+    private void store(String url, APIResponse response) {
+        byte[] body = response.body();
+        if (body == null || body.length > maxBytes) return;
+
+        String hash = DigestUtil.sha256Hex(body);
+        Path blob = blobs.resolve(hash);
+        try {
+            if (!Files.exists(blob)) {
+                Path tmp = Files.createTempFile(blobs, hash, ".tmp");
+                Files.write(tmp, body);
+                Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        } catch (IOException e) {
+            log.debug("写入静态资源缓存失败 {}: {}", url, e.getMessage());
+            return;
+        }
+
+        Map<String, String> headers = response.headers();
+        Map<String, String> kept = new HashMap<>();
+        for (String name : List.of("content-type", "cache-control", "etag", "last-modified", "access-control-allow-origin")) {
+            String value = headers.get(name);
+            if (value != null) kept.put(name, value);
+        }
+
+        Entry entry = new Entry();
+        entry.setUrl(url);
+        entry.setHash(hash);
+        entry.setSize(body.length);
+        entry.setEtag(headers.get("etag"));
+        entry.setLastModified(headers.get("last-modified"));
+        entry.setExpiresAt(expiresAt(headers));
+        entry.setHeaders(kept);
+
+        boolean save;
+        synchronized (this) {
+            Entry old = index.put(url, entry);
+            if (old != null) release(old);
+            retain(entry);
+            evictIfNeeded();
+            save = ++writesSinceSave >= SAVE_EVERY_WRITES;
+            if (save) writesSinceSave = 0;
+        }
+        if (save) saveIndex();
+    }
+
+    /**
+     * 只在索引仍指向该条目时移除，避免误删并发写入的新条目
+     */
+    private synchronized void remove(String url, Entry entry) {
+        if (index.get(url) == entry) {
+            index.remove(url);
+            release(entry);
+        }
+    }
+
+    private void retain(Entry entry) {
+        if (blobRefs.merge(entry.getHash(), 1, Integer::sum) == 1) {
+            totalBytes += entry.getSize();
+        }
+    }
+
+    private void release(Entry entry) {
+        Integer refs = blobRefs.computeIfPresent(entry.getHash(), (h, n) -> n > 1 ? n - 1 : null);
+        if (refs == null) {
+            totalBytes -= entry.getSize();
+            try {
+                Files.deleteIfExists(blobs.resolve(entry.getHash()));
+            } catch (IOException e) {
+                log.debug("删除缓存文件失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void evictIfNeeded() {
+        var it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            release(eldest);
+        }
+    }
+
+    /**
+     * 新鲜期截止时间：max-age 优先，其次 Expires；no-cache 或无信息时立即过期（每次回源验证）
+     */
+    private static long expiresAt(Map<String, String> headers) {
+        long now = System.currentTimeMillis();
+        String cacheControl = headers.getOrDefault("cache-control", "").toLowerCase(Locale.ROOT);
+        if (cacheControl.contains("no-cache")) return now;
+
+        for (String directive : cacheControl.split(",")) {
+            String d = directive.trim();
+            if (d.startsWith("max-age=")) {
+                try {
+                    return now + Long.parseLong(d.substring("max-age=".length())) * 1000;
+                } catch (NumberFormatException ignored) {
+                    // 非法值按无新鲜期处理
+                }
+            }
+        }
+
+        String expires = headers.get("expires");
+        if (expires != null) {
+            try {
+                return ZonedDateTime.parse(expires, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                // 非法日期按已过期处理
+            }
+        }
+        return now;
+    }
+
+    private void loadIndex() throws IOException {
+        Path file = root.resolve("index.json");
+        if (!Files.exists(file)) return;
+
+        List<Entry> entries = MAPPER.readValue(file.toFile(), new TypeReference<List<Entry>>() {});
+        synchronized (this) {
+            for (Entry entry : entries) {
+                if (Files.exists(blobs.resolve(entry.getHash()))) {
+                    index.put(entry.getUrl(), entry);
+                    retain(entry);
+                }
+            }
+            evictIfNeeded();
+        }
+        log.info("已加载静态资源缓存索引: {} 条, {} 字节", index.size(), totalBytes);
+    }
+
+    private void saveIndex() {
+        List<Entry> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(index.values());
+        }
+        try {
+            Path tmp = root.resolve("index.json.tmp");
+            MAPPER.writeValue(tmp.toFile(), snapshot);
+            Files.move(tmp, root.resolve("index.json"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("保存静态资源缓存索引失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled) {
+            saveIndex();
+        }
+    }
+
+    @Data
+    public static class Entry {
+        private String url;
+        private String hash;
+        private long size;
+        private String etag;
+        private String lastModified;
+        private long expiresAt;
+        private Map<String, String> headers = new HashMap<>();
+    }
+}
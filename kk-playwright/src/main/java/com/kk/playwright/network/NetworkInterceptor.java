@@ -0,0 +1,187 @@
+package com.kk.playwright.network;
+
+import com.kk.common.model.BlockRules;
+import com.kk.common.model.NetworkStats;
+import com.kk.playwright.cache.AssetCache;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+
+import java.net.URI;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * 会话级网络拦截器 - 通过上下文路由丢弃命中规则的请求，并由静态资源缓存应答可缓存请求
+ *
+ * 注意：安装路由后 Playwright 会停用该上下文的 HTTP 缓存，因此既无规则又未启用缓存时不安装。
+ * 主框架的导航请求永远放行，避免把页面本身拦掉。
+ */
+public class NetworkInterceptor {
+
+    private static final String ALL = "**/*";
+
+    /**
+     * 被拦截请求无从得知真实大小，按资源类型的典型大小估算节省的字节数（仅为估算，见 NetworkStats.estimatedSavedBytes）
+     */
+    private static final Map<String, Long> TYPICAL_BYTES = Map.of(
+            "image", 40_000L,
+            "media", 500_000L,
+            "font", 50_000L,
+            "stylesheet", 20_000L,
+            "script", 30_000L
+    );
+    private static final long TYPICAL_OTHER_BYTES = 5_000L;
+
+    private final Set<String> resourceTypes;
+    private final List<Pattern> urlPatterns;
+    private final List<String> domains;
+
+    private final AssetCache assetCache;
+
+    private final AtomicLong blockedRequests = new AtomicLong();
+    private final AtomicLong estimatedSavedBytes = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong cacheMisses = new AtomicLong();
+    private final AtomicLong cacheNotStorable = new AtomicLong();
+    private final AtomicLong cacheBytesServed = new AtomicLong();
+    private final Consumer<Route> handler = this::handle;
+
+    /**
+     * 是否需要安装路由
+     */
+    public static boolean isNeeded(BlockRules rules, AssetCache assetCache) {
+        return (rules != null && !rules.isEmpty()) || (assetCache != null && assetCache.isEnabled());
+    }
+
+    public NetworkInterceptor(BlockRules rules, AssetCache assetCache) {
+        if (rules == null) rules = new BlockRules();
+        this.assetCache = assetCache != null && assetCache.isEnabled() ? assetCache : null;
+        this.resourceTypes = rules.getResourceTypes().stream()
+                .map(t -> t.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toSet());
+        this.urlPatterns = rules.getUrlGlobs().stream()
+                .map(NetworkInterceptor::globToPattern)
+                .collect(Collectors.toList());
+        this.domains = rules.getDomains().stream()
+                .map(d -> d.toLowerCase(Locale.ROOT))
+                .collect(Collectors.toList());
+    }
+
+    public void install(BrowserContext context) {
+        context.route(ALL, handler);
+    }
+
+    public void uninstall(BrowserContext context) {
+        context.unroute(ALL, handler);
+    }
+
+    public NetworkStats stats() {
+        return new NetworkStats()
+                .setBlockedRequests(blockedRequests.get())
+                .setEstimatedSavedBytes(estimatedSavedBytes.get())
+                .setCacheHits(cacheHits.get())
+                .setCacheMisses(cacheMisses.get())
+                .setCacheNotStorable(cacheNotStorable.get())
+                .setCacheBytesServed(cacheBytesServed.get());
+    }
+
+    private void handle(Route route) {
+        Request request = route.request();
+        if (shouldBlock(request)) {
+            blockedRequests.incrementAndGet();
+            estimatedSavedBytes.addAndGet(TYPICAL_BYTES.getOrDefault(request.resourceType(), TYPICAL_OTHER_BYTES));
+            route.abort("blockedbyclient");
+            return;
+        }
+
+        if (assetCache != null) {
+            AssetCache.Served served = assetCache.serve(route);
+            switch (served.outcome()) {
+                case HIT, REVALIDATED -> {
+                    cacheHits.incrementAndGet();
+                    cacheBytesServed.addAndGet(served.bytes());
+                    return;
+                }
+                case MISS -> {
+                    cacheMisses.incrementAndGet();
+                    return;
+                }
+                case NOT_STORABLE -> {
+                    cacheNotStorable.incrementAndGet();
+                    return;
+                }
+                default -> {
+                    // BYPASS：按原样放行
+                }
+            }
+        }
+        route.resume();
+    }
+
+    private boolean shouldBlock(Request request) {
+        if (request.isNavigationRequest() && request.frame().parentFrame() == null) {
+            return false;
+        }
+        if (resourceTypes.contains(request.resourceType())) {
+            return true;
+        }
+
+        String url = request.url();
+        for (Pattern pattern : urlPatterns) {
+            if (pattern.matcher(url).matches()) {
+                return true;
+            }
+        }
+
+        if (!domains.isEmpty()) {
+            String host = hostOf(url);
+            for (String domain : domains) {
+                if (host.equals(domain) || host.endsWith("." + domain)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+
+    /**
+     * 与 Playwright 一致的通配符语义：** 任意字符，* 除 / 以外的字符，? 单个字符
+     */
+    static Pattern globToPattern(String glob) {
+        StringBuilder regex = new StringBuilder();
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') {
+                if (i + 1 < glob.length() && glob.charAt(i + 1) == '*') {
+                    regex.append(".*");
+                    i++;
+                } else {
+                    regex.append("[^/]*");
+                }
+            } else if (c == '?') {
+                regex.append('.');
+            } else if ("\\.[]{}()+-^$|".indexOf(c) >= 0) {
+                regex.append('\\').append(c);
+            } else {
+                regex.append(c);
+            }
+        }
+        return Pattern.compile(regex.toString());
+    }
+}
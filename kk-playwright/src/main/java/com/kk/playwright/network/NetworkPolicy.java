@@ -0,0 +1,55 @@
+package com.kk.playwright.network;
+
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.BlockRules;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 网络拦截策略 - 任务未配置拦截规则时使用全局默认规则
+ */
+@Component
+public class NetworkPolicy {
+
+    /**
+     * 默认拦截的资源类型（逗号/换行分隔）
+     */
+    @Value("${kk.automation.block.resourceTypes:}")
+    private String defaultResourceTypes;
+
+    /**
+     * 默认拦截的 URL 通配符（逗号/换行分隔）
+     */
+    @Value("${kk.automation.block.urlGlobs:}")
+    private String defaultUrlGlobs;
+
+    /**
+     * 默认拦截的域名（逗号/换行分隔，含子域名）
+     */
+    @Value("${kk.automation.block.domains:}")
+    private String defaultDomains;
+
+    public BlockRules resolve(AutomationTask task) {
+        if (task.getBlockRules() != null) {
+            return task.getBlockRules();
+        }
+        return new BlockRules()
+                .setResourceTypes(new HashSet<>(split(defaultResourceTypes)))
+                .setUrlGlobs(split(defaultUrlGlobs))
+                .setDomains(split(defaultDomains));
+    }
+
+    private static List<String> split(String value) {
+        if (value == null || value.isBlank()) return new ArrayList<>();
+        return Arrays.stream(value.split("[,\\n]"))
+                .map(String::trim)
+                .filter(s -> !s.isEmpty())
+                .collect(Collectors.toList());
+    }
+}
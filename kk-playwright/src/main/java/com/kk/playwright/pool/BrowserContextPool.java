@@ -0,0 +1,206 @@
+package com.kk.playwright.pool;
+
+import cn.hutool.json.JSONArray;
+import cn.hutool.json.JSONUtil;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 浏览器上下文池
+ *
+ * 说明：
+ * - 按 {@link BrowserLaunchKey} 复用 Chromium 进程，按 {@link ContextPoolKey} 复用上下文
+ * - 归还时清理 Cookie / 权限 / 当前 origin 的 Storage，并换一个新标签页（sessionStorage 随标签页丢弃）
+ * - 清理后若仍残留其他 origin 的 localStorage，或使用次数达到 maxUses，则直接销毁重建
+ * - 每个键至少保留 minIdle 个空闲上下文，最多保留 maxIdle 个
+ * - 需要还原 storageState 的会话使用一次性上下文，归还即销毁
+ */
+@Slf4j
+public class BrowserContextPool {
+
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "() => { try { localStorage.clear(); sessionStorage.clear(); } catch (e) {} }";
+
+    private final Playwright playwright;
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxUses;
+
+    private final Map<BrowserLaunchKey, Browser> browsers = new HashMap<>();
+    private final Map<ContextPoolKey, Deque<PooledContext>> idle = new HashMap<>();
+
+    public BrowserContextPool(Playwright playwright, int minIdle, int maxIdle, int maxUses) {
+        this.playwright = playwright;
+        this.minIdle = Math.max(0, minIdle);
+        this.maxIdle = Math.max(this.minIdle, maxIdle);
+        this.maxUses = Math.max(1, maxUses);
+    }
+
+    /**
+     * 借出一个就绪的上下文；池中无可用上下文时新建
+     */
+    public synchronized PooledContext borrow(ContextPoolKey key) {
+        Deque<PooledContext> queue = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+        PooledContext pooled;
+        while ((pooled = queue.pollFirst()) != null) {
+            if (pooled.isUsable()) {
+                pooled.markBorrowed();
+                return pooled;
+            }
+            pooled.destroy();
+        }
+
+        pooled = create(key);
+        pooled.markBorrowed();
+        return pooled;
+    }
+
+    /**
+     * 借出一个还原了 storageState 的一次性上下文（与池中上下文隔离，归还时销毁）
+     */
+    public synchronized PooledContext borrowWithState(ContextPoolKey key, String storageState) {
+        Browser browser = browserFor(key.launch());
+        BrowserContext context = browser.newContext(new Browser.NewContextOptions()
+                .setViewportSize(key.viewportWidth(), key.viewportHeight())
+                .setStorageState(storageState));
+        PooledContext pooled = new PooledContext(key, context, context.newPage());
+        pooled.markDisposable();
+        pooled.markBorrowed();
+        return pooled;
+    }
+
+    /**
+     * 归还上下文：重置后放回池中，无法重置或已达复用上限则销毁，并补足 minIdle
+     */
+    public synchronized void release(PooledContext pooled) {
+        if (pooled == null) return;
+
+        ContextPoolKey key = pooled.getKey();
+        Deque<PooledContext> queue = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+
+        boolean reusable = !pooled.isDisposable()
+                && pooled.getUses() < maxUses
+                && pooled.isUsable()
+                && queue.size() < maxIdle
+                && reset(pooled);
+
+        if (reusable) {
+            // 后进先出：最近用过的上下文缓存最热
+            queue.offerFirst(pooled);
+        } else {
+            pooled.destroy();
+        }
+
+        fill(key);
+    }
+
+    /**
+     * 预热：为指定键补足 minIdle 个空闲上下文
+     */
+    public synchronized void fill(ContextPoolKey key) {
+        Deque<PooledContext> queue = idle.computeIfAbsent(key, k -> new ArrayDeque<>());
+        queue.removeIf(pooled -> {
+            if (pooled.isUsable()) return false;
+            pooled.destroy();
+            return true;
+        });
+        while (queue.size() < minIdle) {
+            try {
+                queue.offerLast(create(key));
+            } catch (PlaywrightException e) {
+                log.warn("预热浏览器上下文失败: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    /**
+     * 预热：启动该键对应的浏览器进程（即使 minIdle 为 0），并补足空闲上下文
+     */
+    public synchronized void warm(ContextPoolKey key) {
+        browserFor(key.launch());
+        fill(key);
+    }
+
+    /**
+     * 当前空闲上下文数量
+     */
+    public synchronized int idleCount(ContextPoolKey key) {
+        Deque<PooledContext> queue = idle.get(key);
+        return queue == null ? 0 : queue.size();
+    }
+
+    /**
+     * 关闭所有空闲上下文与浏览器进程
+     */
+    public synchronized void close() {
+        idle.values().forEach(queue -> queue.forEach(PooledContext::destroy));
+        idle.clear();
+        browsers.values().forEach(browser -> {
+            try {
+                browser.close();
+            } catch (PlaywrightException ignored) {
+                // 浏览器已断开
+            }
+        });
+        browsers.clear();
+    }
+
+    private PooledContext create(ContextPoolKey key) {
+        Browser browser = browserFor(key.launch());
+        BrowserContext context = browser.newContext(new Browser.NewContextOptions()
+                .setViewportSize(key.viewportWidth(), key.viewportHeight()));
+        return new PooledContext(key, context, context.newPage());
+    }
+
+    private Browser browserFor(BrowserLaunchKey launch) {
+        Browser browser = browsers.get(launch);
+        if (browser != null && browser.isConnected()) {
+            return browser;
+        }
+
+        log.info("启动浏览器 (headless: {}, slowMo: {}, args: {})", launch.headless(), launch.slowMo(), launch.args());
+        browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
+                .setHeadless(launch.headless())
+                .setSlowMo(launch.slowMo())
+                .setArgs(launch.args()));
+        browsers.put(launch, browser);
+        return browser;
+    }
+
+    private boolean reset(PooledContext pooled) {
+        BrowserContext context = pooled.getContext();
+        try {
+            for (Page page : context.pages()) {
+                if (!page.isClosed()) {
+                    page.evaluate(CLEAR_STORAGE_SCRIPT);
+                    page.close();
+                }
+            }
+            context.clearCookies();
+            context.clearPermissions();
+
+            // 访问过但当前未打开的 origin 无法逐一清理，残留则放弃复用
+            JSONArray origins = JSONUtil.parseObj(context.storageState()).getJSONArray("origins");
+            if (origins != null && !origins.isEmpty()) {
+                return false;
+            }
+
+            pooled.setPage(context.newPage());
+            return true;
+        } catch (PlaywrightException e) {
+            log.debug("重置浏览器上下文失败，丢弃: {}", e.getMessage());
+            return false;
+        }
+    }
+}
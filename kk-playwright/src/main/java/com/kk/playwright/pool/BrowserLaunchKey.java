@@ -0,0 +1,13 @@
+package com.kk.playwright.pool;
+
+import java.util.List;
+
+/**
+ * 浏览器进程启动参数键 - 参数相同的任务共用同一个 Chromium 进程
+ */
+public record BrowserLaunchKey(boolean headless, double slowMo, List<String> args) {
+
+    public BrowserLaunchKey {
+        args = args == null ? List.of() : List.copyOf(args);
+    }
+}
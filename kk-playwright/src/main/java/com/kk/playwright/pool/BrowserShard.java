@@ -0,0 +1,281 @@
+package com.kk.playwright.pool;
+
+import com.microsoft.playwright.Playwright;
+import com.microsoft.playwright.PlaywrightException;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 浏览器分片：独立的 Playwright 实例（驱动进程）+ 驱动锁 + 上下文池
+ *
+ * 说明：
+ * - Playwright Java 对象不是线程安全的，单个驱动进程会先于 CPU 成为瓶颈；
+ *   多个分片各自持有驱动与 Chromium 进程，互不竞争驱动锁
+ * - 负载 = 活动页面数 + CPU 权重 × 驱动及其 Chromium 子进程占用的核数，由服务选择负载最低的分片
+ * - 累计服务的会话数达到 recycleAfter 后标记为待回收，由服务决定何时进入排空状态（至少保留一个未排空的分片）；
+ *   排空中不再接收新会话，最后一个会话归还时关闭驱动与浏览器，下次借用时重新创建；
+ *   进入排空时已无会话的分片由下一次借用先回收再启动
+ * - borrow / release / warm / close 须在持有 {@link #getDriverLock()} 时调用
+ */
+@Slf4j
+public class BrowserShard {
+
+    /**
+     * 创建驱动时按子进程差集识别驱动进程，多个分片必须串行创建
+     */
+    private static final Object CREATE_LOCK = new Object();
+
+    /**
+     * CPU 采样最小间隔：间隔内重复查询直接返回上次结果
+     */
+    private static final long CPU_SAMPLE_INTERVAL_NANOS = 1_000_000_000L;
+
+    public enum State {
+        /** 驱动未启动（首次使用或回收后） */
+        IDLE,
+        /** 正常接收会话 */
+        ACTIVE,
+        /** 等待现有会话结束后回收 */
+        DRAINING
+    }
+
+    /**
+     * 分片负载
+     *
+     * @param index          分片序号
+     * @param state          分片状态
+     * @param activePages    当前借出的会话（页面）数
+     * @param cpuCores       最近一次采样的 CPU 占用（核数，1.0 表示占满一个核）
+     * @param servedSessions 本轮驱动启动以来服务过的会话数
+     * @param recycles       已回收次数
+     * @param driverPid      驱动进程 PID，未识别时为 -1
+     */
+    public record Load(int index, State state, int activePages, double cpuCores,
+                       long servedSessions, long recycles, long driverPid) {
+
+        public double score(double cpuWeight) {
+            return activePages + cpuWeight * cpuCores;
+        }
+    }
+
+    private final int index;
+    private final int minIdle;
+    private final int maxIdle;
+    private final int maxUses;
+    private final long recycleAfter;
+
+    private final ReentrantLock driverLock = new ReentrantLock();
+    private final AtomicInteger activePages = new AtomicInteger();
+
+    /**
+     * 已选中但尚未借到上下文的会话数：计入负载，避免并发选择时全部落到同一分片
+     */
+    private final AtomicInteger reserved = new AtomicInteger();
+
+    private Playwright playwright;
+    private BrowserContextPool pool;
+    private volatile ProcessHandle driver;
+    private volatile State state = State.IDLE;
+    private volatile long servedSessions;
+    private volatile long recycles;
+
+    private long lastCpuNanos;
+    private long lastSampleNanos;
+    private volatile double cpuCores;
+
+    /**
+     * @param recycleAfter 累计服务多少个会话后回收，0 表示不回收
+     */
+    public BrowserShard(int index, int minIdle, int maxIdle, int maxUses, long recycleAfter) {
+        this.index = index;
+        this.minIdle = minIdle;
+        this.maxIdle = maxIdle;
+        this.maxUses = maxUses;
+        this.recycleAfter = Math.max(0, recycleAfter);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public ReentrantLock getDriverLock() {
+        return driverLock;
+    }
+
+    public boolean isDraining() {
+        return state == State.DRAINING;
+    }
+
+    /**
+     * 选中分片时预占一个名额，随后的 borrow 无论成败都会释放预占
+     */
+    public void reserve() {
+        reserved.incrementAndGet();
+    }
+
+    /**
+     * 借出上下文，驱动未启动时先启动
+     */
+    public PooledContext borrow(ContextPoolKey key, String storageState) {
+        PooledContext pooled;
+        try {
+            if (state == State.DRAINING && activePages.get() == 0) {
+                // 排空时已没有会话，不会再有归还来触发回收
+                recycle();
+            }
+            ensureStarted();
+            pooled = storageState == null
+                    ? pool.borrow(key)
+                    : pool.borrowWithState(key, storageState);
+        } finally {
+            reserved.updateAndGet(n -> Math.max(0, n - 1));
+        }
+        activePages.incrementAndGet();
+        servedSessions++;
+        return pooled;
+    }
+
+    /**
+     * 已达到回收条件但尚未开始排空
+     */
+    public boolean isRecycleDue() {
+        return recycleAfter > 0 && state == State.ACTIVE && servedSessions >= recycleAfter;
+    }
+
+    /**
+     * 进入排空状态，不再被优先选择
+     */
+    public void beginDrain() {
+        if (state == State.ACTIVE) {
+            state = State.DRAINING;
+            log.info("浏览器分片 #{} 已服务 {} 个会话，排空后回收", index, servedSessions);
+        }
+    }
+
+    /**
+     * 归还上下文；排空中的分片在最后一个会话归还后回收
+     */
+    public void release(PooledContext pooled) {
+        try {
+            if (pool != null) {
+                pool.release(pooled);
+            } else if (pooled != null) {
+                pooled.destroy();
+            }
+        } finally {
+            if (activePages.decrementAndGet() == 0 && state == State.DRAINING) {
+                recycle();
+            }
+        }
+    }
+
+    private void recycle() {
+        recycles++;
+        shutdown();
+        log.info("浏览器分片 #{} 已回收 (第 {} 次)", index, recycles);
+    }
+
+    /**
+     * 预热：启动驱动与浏览器，并补足空闲上下文
+     */
+    public void warm(ContextPoolKey key) {
+        ensureStarted();
+        pool.warm(key);
+    }
+
+    /**
+     * 关闭池中的上下文与浏览器进程，保留驱动
+     */
+    public void closeBrowsers() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    /**
+     * 关闭上下文池与驱动进程，下次借用时重新创建
+     */
+    public void shutdown() {
+        closeBrowsers();
+        if (playwright != null) {
+            try {
+                playwright.close();
+            } catch (PlaywrightException e) {
+                log.debug("关闭分片 #{} 驱动失败: {}", index, e.getMessage());
+            }
+        }
+        playwright = null;
+        pool = null;
+        driver = null;
+        servedSessions = 0;
+        resetCpu();
+        state = State.IDLE;
+    }
+
+    /**
+     * 当前负载（不需要持有驱动锁）
+     */
+    public Load load() {
+        ProcessHandle handle = driver;
+        return new Load(index, state, activePages.get() + reserved.get(), sampleCpu(),
+                servedSessions, recycles, handle == null ? -1 : handle.pid());
+    }
+
+    private void ensureStarted() {
+        if (playwright != null) return;
+
+        synchronized (CREATE_LOCK) {
+            Set<Long> before = childPids();
+            log.info("延迟初始化 Playwright 核心 (分片 #{})...", index);
+            playwright = Playwright.create();
+            driver = ProcessHandle.current().children()
+                    .filter(p -> !before.contains(p.pid()))
+                    .findFirst()
+                    .orElse(null);
+        }
+        pool = new BrowserContextPool(playwright, minIdle, maxIdle, maxUses);
+        state = State.ACTIVE;
+    }
+
+    /**
+     * 驱动进程及其子孙进程（Chromium 主进程、渲染进程等）的 CPU 占用核数
+     */
+    private synchronized double sampleCpu() {
+        ProcessHandle handle = driver;
+        if (handle == null) return 0;
+
+        long now = System.nanoTime();
+        if (lastSampleNanos != 0 && now - lastSampleNanos < CPU_SAMPLE_INTERVAL_NANOS) {
+            return cpuCores;
+        }
+
+        long cpu = Stream.concat(Stream.of(handle), handle.descendants())
+                .mapToLong(p -> p.info().totalCpuDuration().map(Duration::toNanos).orElse(0L))
+                .sum();
+        if (lastSampleNanos != 0) {
+            // 退出的子进程会带走其 CPU 时间，差值可能为负
+            cpuCores = Math.max(0, cpu - lastCpuNanos) / (double) (now - lastSampleNanos);
+        }
+        lastCpuNanos = cpu;
+        lastSampleNanos = now;
+        return cpuCores;
+    }
+
+    private synchronized void resetCpu() {
+        cpuCores = 0;
+        lastCpuNanos = 0;
+        lastSampleNanos = 0;
+    }
+
+    private static Set<Long> childPids() {
+        return ProcessHandle.current().children()
+                .map(ProcessHandle::pid)
+                .collect(Collectors.toSet());
+    }
+}
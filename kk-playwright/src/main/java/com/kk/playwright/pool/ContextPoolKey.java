@@ -0,0 +1,18 @@
+package com.kk.playwright.pool;
+
+import com.kk.common.model.ExecutionProfile;
+import com.kk.core.service.SessionOptions;
+
+/**
+ * 上下文池键 - 启动参数 + 上下文参数（视口等）完全一致的上下文才能互相复用
+ */
+public record ContextPoolKey(BrowserLaunchKey launch, int viewportWidth, int viewportHeight) {
+
+    public static ContextPoolKey of(SessionOptions options) {
+        ExecutionProfile profile = options.getProfile();
+        return new ContextPoolKey(
+                new BrowserLaunchKey(options.isHeadless(), profile.getSlowMo(), profile.getChromiumArgs()),
+                profile.getViewportWidth(),
+                profile.getViewportHeight());
+    }
+}
@@ -0,0 +1,79 @@
+package com.kk.playwright.pool;
+
+import com.microsoft.playwright.BrowserContext;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+
+/**
+ * 池化的浏览器上下文 - 持有上下文及其当前主页面
+ */
+public class PooledContext {
+
+    private final ContextPoolKey key;
+    private final BrowserContext context;
+    private Page page;
+    private int uses;
+    private boolean disposable;
+
+    PooledContext(ContextPoolKey key, BrowserContext context, Page page) {
+        this.key = key;
+        this.context = context;
+        this.page = page;
+    }
+
+    public ContextPoolKey getKey() {
+        return key;
+    }
+
+    public BrowserContext getContext() {
+        return context;
+    }
+
+    public Page getPage() {
+        return page;
+    }
+
+    /**
+     * 更新主页面（重置后新建，或会话切换到预加载页面）
+     */
+    public void setPage(Page page) {
+        this.page = page;
+    }
+
+    public int getUses() {
+        return uses;
+    }
+
+    void markBorrowed() {
+        uses++;
+    }
+
+    /**
+     * 一次性上下文（如还原了 storageState）：归还时直接销毁，不再复用
+     */
+    public boolean isDisposable() {
+        return disposable;
+    }
+
+    void markDisposable() {
+        this.disposable = true;
+    }
+
+    /**
+     * 所属浏览器仍连接且主页面未关闭
+     */
+    boolean isUsable() {
+        return context.browser() != null
+                && context.browser().isConnected()
+                && page != null
+                && !page.isClosed();
+    }
+
+    public void destroy() {
+        try {
+            context.close();
+        } catch (PlaywrightException ignored) {
+            // 浏览器已断开时上下文无需再关闭
+        }
+    }
+}
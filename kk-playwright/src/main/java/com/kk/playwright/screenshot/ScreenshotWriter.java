@@ -0,0 +1,250 @@
+package com.kk.playwright.screenshot;
+
+import com.kk.common.exception.KKException;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 截图后台写盘
+ *
+ * 说明：
+ * - 截图步骤只负责从浏览器取回图片字节，写盘交给后台线程，磁盘 I/O 不再占用任务的关键路径
+ * - 队列同时按张数（queueCapacity）和字节数（maxQueuedBytes）限界，防止大图堆积撑爆内存
+ * - 队满时：BLOCK 等待空位，超过 blockTimeoutMs 由提交线程直接写盘（不丢图）；DROP 直接丢弃并计数
+ * - 关闭时先等待队列写完
+ */
+@Slf4j
+@Component
+public class ScreenshotWriter {
+
+    public enum OverflowPolicy {
+        BLOCK, DROP
+    }
+
+    /**
+     * 关闭后截图在步骤内同步写盘
+     */
+    @Value("${kk.screenshot.async:true}")
+    private boolean async;
+
+    @Value("${kk.screenshot.queueCapacity:64}")
+    private int queueCapacity;
+
+    @Value("${kk.screenshot.maxQueuedBytes:268435456}")
+    private long maxQueuedBytes;
+
+    @Value("${kk.screenshot.overflowPolicy:BLOCK}")
+    private OverflowPolicy overflowPolicy;
+
+    @Value("${kk.screenshot.blockTimeoutMs:10000}")
+    private long blockTimeoutMs;
+
+    @Value("${kk.screenshot.writerThreads:1}")
+    private int writerThreads;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition idle = lock.newCondition();
+    private final Deque<Job> queue = new ArrayDeque<>();
+    private final List<Thread> writers = new ArrayList<>();
+    private long queuedBytes;
+    private int inFlight;
+    private boolean shutdown;
+
+    private long written;
+    private long dropped;
+    private long failed;
+    private long bytesWritten;
+
+    @PostConstruct
+    public void start() {
+        if (!async) return;
+
+        for (int i = 0; i < Math.max(1, writerThreads); i++) {
+            Thread writer = Thread.ofPlatform()
+                    .name("kk-screenshot-writer-" + i)
+                    .daemon(true)
+                    .start(this::writeLoop);
+            writers.add(writer);
+        }
+        log.info("截图后台写盘已启动 (queueCapacity: {}, maxQueuedBytes: {}, policy: {})",
+                queueCapacity, maxQueuedBytes, overflowPolicy);
+    }
+
+    /**
+     * 提交截图写盘；返回 false 表示按 DROP 策略被丢弃
+     */
+    public boolean write(Path path, byte[] data) {
+        if (!async) {
+            if (!writeNow(path, data)) {
+                throw new KKException("截图写盘失败: " + path);
+            }
+            return true;
+        }
+
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(blockTimeoutMs);
+            while (!shutdown && isFull(data.length)) {
+                if (overflowPolicy == OverflowPolicy.DROP) {
+                    dropped++;
+                    log.warn("截图写盘队列已满，丢弃: {}", path);
+                    return false;
+                }
+                if (remaining <= 0) break;
+                remaining = notFull.awaitNanos(remaining);
+            }
+
+            if (!shutdown && !isFull(data.length)) {
+                queue.offerLast(new Job(path, data));
+                queuedBytes += data.length;
+                notEmpty.signal();
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+
+        // 等待超时或已关闭：由提交线程直接写盘，保证不丢图
+        if (!writeNow(path, data)) {
+            throw new KKException("截图写盘失败: " + path);
+        }
+        return true;
+    }
+
+    /**
+     * 等待队列中已提交的截图全部写完
+     */
+    public boolean flush(long timeoutMs) {
+        lock.lock();
+        try {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+            while (!queue.isEmpty() || inFlight > 0) {
+                if (remaining <= 0) return false;
+                remaining = idle.awaitNanos(remaining);
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public WriterStats getStats() {
+        lock.lock();
+        try {
+            return new WriterStats(queue.size(), queuedBytes, written, dropped, failed, bytesWritten);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 写盘统计
+     */
+    public record WriterStats(int queued, long queuedBytes, long written, long dropped, long failed, long bytesWritten) {
+    }
+
+    /**
+     * 调用方须持有锁；队列为空时总能放入，避免单张超大图永远无法提交
+     */
+    private boolean isFull(int size) {
+        if (queue.isEmpty()) return false;
+        return queue.size() >= queueCapacity || queuedBytes + size > maxQueuedBytes;
+    }
+
+    private void writeLoop() {
+        while (true) {
+            Job job;
+            lock.lock();
+            try {
+                while (queue.isEmpty()) {
+                    if (shutdown) return;
+                    notEmpty.await();
+                }
+                job = queue.pollFirst();
+                inFlight++;
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            boolean ok = writeNow(job.path(), job.data());
+
+            lock.lock();
+            try {
+                inFlight--;
+                queuedBytes -= job.data().length;
+                if (!ok) failed++;
+                notFull.signalAll();
+                if (queue.isEmpty() && inFlight == 0) {
+                    idle.signalAll();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean writeNow(Path path, byte[] data) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Files.write(path, data);
+            lock.lock();
+            try {
+                written++;
+                bytesWritten += data.length;
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("截图写盘失败 {}: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!async) return;
+
+        if (!flush(TimeUnit.SECONDS.toMillis(30))) {
+            log.warn("截图写盘队列未能在关闭前写完，剩余 {} 张", getStats().queued());
+        }
+        lock.lock();
+        try {
+            shutdown = true;
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        writers.forEach(Thread::interrupt);
+    }
+
+    private record Job(Path path, byte[] data) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.kk.playwright.service;
+
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.ExecutionProfile;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 执行配置档注册表 - 内置 default / turbo，可注册自定义配置档
+ */
+@Slf4j
+@Component
+public class ExecutionProfileRegistry {
+
+    /**
+     * 任务未指定配置档时使用的全局默认配置档
+     */
+    @Value("${kk.automation.profile:default}")
+    private String defaultProfile;
+
+    private final Map<String, ExecutionProfile> profiles = new ConcurrentHashMap<>();
+
+    public ExecutionProfileRegistry() {
+        register(ExecutionProfile.defaults());
+        register(ExecutionProfile.turbo());
+    }
+
+    public void register(ExecutionProfile profile) {
+        profiles.put(profile.getName(), profile);
+    }
+
+    /**
+     * 解析任务的配置档：任务指定 > 全局默认 > 内置 default
+     */
+    public ExecutionProfile resolve(AutomationTask task) {
+        return resolve(task.getProfile());
+    }
+
+    /**
+     * 按名称解析配置档，名称为空时使用全局默认
+     */
+    public ExecutionProfile resolve(String profileName) {
+        String name = profileName == null || profileName.isBlank() ? defaultProfile : profileName;
+        ExecutionProfile profile = profiles.get(name);
+        if (profile == null) {
+            log.warn("未知的执行配置档 {}，使用 default", name);
+            return profiles.get(ExecutionProfile.DEFAULT);
+        }
+        return profile;
+    }
+}
@@ -0,0 +1,77 @@
+package com.kk.playwright.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 主框架导航计数与 NAVIGATION 就绪判断
+ *
+ * 说明：
+ * - 发起（主框架导航请求）与提交（frameNavigated，含 pushState 等同文档 URL 变化）分别计数；
+ *   点击/脚本执行前 mark() 记下基线，之后据此判断操作是否触发了跳转
+ * - Playwright 的点击会等已发起的跳转开始后才返回，操作返回时计数通常已经变化；
+ *   只为异步发起的跳转保留很短的宽限期，不跳转的操作几乎不等待
+ */
+final class NavigationTracker {
+
+    /**
+     * 操作返回后仍未发起跳转时的宽限期，超过即视为不会跳转
+     */
+    static final long GRACE_MS = 100;
+
+    /**
+     * 在超时时间内等待条件成立，返回是否成立；实现方负责在等待期间派发驱动事件
+     */
+    @FunctionalInterface
+    interface Waiter {
+        boolean await(BooleanSupplier condition, long timeoutMs);
+    }
+
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong committed = new AtomicLong();
+    private volatile long startedMark;
+    private volatile long committedMark;
+
+    void onStarted() {
+        started.incrementAndGet();
+    }
+
+    void onCommitted() {
+        committed.incrementAndGet();
+    }
+
+    void mark() {
+        startedMark = started.get();
+        committedMark = committed.get();
+    }
+
+    boolean hasStarted() {
+        return started.get() > startedMark || committed.get() > committedMark;
+    }
+
+    boolean hasCommitted() {
+        return committed.get() > committedMark;
+    }
+
+    /**
+     * 等待 mark() 之后的跳转提交
+     *
+     * @return NONE 表示没有跳转；COMMITTED 表示已提交，调用方再等新页面加载；TIMEOUT 表示已发起但超时未提交
+     */
+    Outcome awaitCommit(long timeoutMs, Waiter waiter) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        if (!hasStarted() && !waiter.await(this::hasStarted, Math.min(timeoutMs, GRACE_MS))) {
+            return Outcome.NONE;
+        }
+        if (hasCommitted()) {
+            return Outcome.COMMITTED;
+        }
+        long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+        return remaining > 0 && waiter.await(this::hasCommitted, remaining) ? Outcome.COMMITTED : Outcome.TIMEOUT;
+    }
+
+    enum Outcome {
+        NONE, COMMITTED, TIMEOUT
+    }
+}
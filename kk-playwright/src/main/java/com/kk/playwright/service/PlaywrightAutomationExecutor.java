@@ -1,138 +1,989 @@
 package com.kk.playwright.service;
 
 
+import com.kk.common.constant.Constants;
 import com.kk.common.exception.KKException;
+import com.kk.common.exception.TaskCancelledException;
 import com.kk.common.model.AutomationTask;
+import com.kk.common.model.DownloadRecord;
+import com.kk.common.model.ExecutionProfile;
+import com.kk.common.model.ExtractSummary;
+import com.kk.common.model.SelectorTiming;
+import com.kk.common.model.StepTiming;
 import com.kk.common.model.TaskResult;
 import com.kk.common.model.TaskStep;
+import com.kk.common.utils.Placeholders;
+import com.kk.core.extract.ExtractSink;
+import com.kk.core.extract.ExtractSinks;
+import com.kk.core.log.ExecutionLog;
+import com.kk.core.log.RunLogSink;
+import com.kk.core.metrics.StepLatencyRegistry;
+import com.kk.core.plan.CompiledStep;
+import com.kk.core.plan.ExecutionPlan;
+import com.kk.core.plan.PlanCompiler;
+import com.kk.core.plan.TaskGraph;
 import com.kk.core.repository.TaskRepository;
 import com.kk.core.service.AutomationExecutor;
 import com.kk.core.service.BrowserService;
-import lombok.RequiredArgsConstructor;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.CancellationToken;
+import com.kk.core.service.DomAction;
+import com.kk.core.service.DownloadSpec;
+import com.kk.core.service.ExtractSpec;
+import com.kk.core.service.SessionCheckpoint;
+import com.kk.core.service.SessionOptions;
+import com.kk.core.trace.TraceRecorder;
+import com.kk.playwright.network.NetworkPolicy;
+import com.kk.playwright.screenshot.ScreenshotWriter;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 @Slf4j
 @Service
 public class PlaywrightAutomationExecutor implements AutomationExecutor {
 
+    /**
+     * 同一 JVM 内允许并行执行的任务数（每个任务独占一个浏览器会话）
+     */
+    @Value("${kk.automation.maxConcurrentTasks:4}")
+    private int maxConcurrentTasks;
+
     private final BrowserService browserService;
     private final TaskRepository taskRepository;
+    private final StepPacer stepPacer;
+    private final ExecutionProfileRegistry profileRegistry;
+    private final NetworkPolicy networkPolicy;
+    private final StepLatencyRegistry stepLatencyRegistry;
+    private final ScreenshotWriter screenshotWriter;
+    private final PlanCompiler planCompiler;
+    private final RunLogSink runLogSink;
+    private final ExtractSinks extractSinks;
     private final Map<String, AutomationTask.TaskStatus> runningTasks = new ConcurrentHashMap<>();
+    private final Map<String, CancellationToken> cancellations = new ConcurrentHashMap<>();
+
+    /**
+     * 等待并发名额时检查取消令牌的间隔
+     */
+    private static final long SLOT_POLL_MS = 50;
+
+    /**
+     * 浏览器崩溃/断开后单个任务最多恢复次数，0 表示不恢复（也不记录断点）
+     */
+    @Value("${kk.automation.resume.maxResumes:2}")
+    private int maxResumes;
+
+    /**
+     * 每次执行在内存（TaskResult.logs）中保留的最近日志条数，完整日志见 TaskResult.logFile
+     */
+    @Value("${kk.automation.log.ringCapacity:200}")
+    private int logRingCapacity;
+
+    /**
+     * TaskResult.slowSelectors 保留的最慢选择器个数
+     */
+    @Value("${kk.metrics.selectors.slowTopN:5}")
+    private int slowSelectorTopN;
+
+    /**
+     * 失败追踪：内存中滚动记录最近若干步，失败或超过耗时阈值时才写盘
+     */
+    @Value("${kk.automation.trace.enabled:false}")
+    private boolean traceEnabled;
+
+    @Value("${kk.automation.trace.steps:20}")
+    private int traceSteps;
+
+    /**
+     * 逐步 DOM 快照的字符上限，0 表示只在写盘时采集一次
+     */
+    @Value("${kk.automation.trace.domSnapshotChars:0}")
+    private int traceDomSnapshotChars;
+
+    @Value("${kk.automation.trace.finalDomChars:1000000}")
+    private int traceFinalDomChars;
+
+    /**
+     * 成功任务总耗时超过该值（毫秒）也写盘，0 表示只在失败时写盘
+     */
+    @Value("${kk.automation.trace.slowThresholdMs:0}")
+    private long traceSlowThresholdMs;
 
-    public PlaywrightAutomationExecutor(@Lazy BrowserService browserService, TaskRepository taskRepository) {
+    @Value("${kk.automation.trace.dir:traces}")
+    private String traceDir;
+
+    /**
+     * 预加载下一个 NAVIGATE 的目标页面（隐藏页面），导航时直接换用
+     */
+    @Value("${kk.automation.prefetch.enabled:false}")
+    private boolean prefetchEnabled;
+
+    /**
+     * EXTRACT 每次页面内调用取出的行数（步骤参数 chunkSize 可覆盖）
+     */
+    @Value("${kk.automation.extract.chunkSize:500}")
+    private int extractChunkSize;
+
+    /**
+     * sink=result 时单个步骤最多收集的行数（数据保存在内存中），0 表示不限制
+     */
+    @Value("${kk.automation.extract.resultMaxRows:10000}")
+    private int extractResultMaxRows;
+
+    /**
+     * DOWNLOAD 默认参数：校验算法（sha256 / sha1 / md5 / none）、大小上限（字节）、从点击到写盘完成的时间上限
+     */
+    @Value("${kk.automation.download.checksum:sha256}")
+    private String downloadChecksum;
+
+    @Value("${kk.automation.download.maxBytes:2147483648}")
+    private long downloadMaxBytes;
+
+    @Value("${kk.automation.download.timeoutMs:300000}")
+    private long downloadTimeoutMs;
+    private Semaphore slots;
+
+    public PlaywrightAutomationExecutor(@Lazy BrowserService browserService, TaskRepository taskRepository,
+                                        StepPacer stepPacer, ExecutionProfileRegistry profileRegistry,
+                                        NetworkPolicy networkPolicy, StepLatencyRegistry stepLatencyRegistry,
+                                        ScreenshotWriter screenshotWriter, PlanCompiler planCompiler,
+                                        RunLogSink runLogSink, ExtractSinks extractSinks) {
         this.browserService = browserService;
         this.taskRepository = taskRepository;
+        this.stepPacer = stepPacer;
+        this.profileRegistry = profileRegistry;
+        this.networkPolicy = networkPolicy;
+        this.stepLatencyRegistry = stepLatencyRegistry;
+        this.screenshotWriter = screenshotWriter;
+        this.planCompiler = planCompiler;
+        this.runLogSink = runLogSink;
+        this.extractSinks = extractSinks;
+    }
+
+    @PostConstruct
+    public void init() {
+        slots = new Semaphore(Math.max(1, maxConcurrentTasks), true);
     }
 
     @Override
     public TaskResult executeTask(AutomationTask task, Consumer<String> logCallback) {
         LocalDateTime startTime = LocalDateTime.now();
-        List<String> logs = new ArrayList<>();
+        ExecutionLog runLog = new ExecutionLog(task.getId(), logRingCapacity, runLogSink, logCallback);
+        List<StepTiming> timings = new ArrayList<>();
+        List<SelectorTiming> selectorTimings = new ArrayList<>();
+        TraceRecorder trace = traceEnabled ? new TraceRecorder(traceSteps, traceDomSnapshotChars) : null;
+        BrowserSession session = null;
+        int resumeCount = 0;
+        boolean acquired = false;
+        ExecutionProfile profile = profileRegistry.resolve(task);
+        CancellationToken cancellation = new CancellationToken();
+        cancellations.put(task.getId(), cancellation);
+        RunOutputs outputs = new RunOutputs();
 
         try {
-            logCallback.accept("开始执行任务: " + task.getName());
-            logs.add("开始执行任务: " + task.getName());
+            runLog.info(-1, "TASK_START", "开始执行任务: {} (配置档: {})", task.getName(), profile.getName());
 
             task.setStatus(AutomationTask.TaskStatus.RUNNING);
             runningTasks.put(task.getId(), AutomationTask.TaskStatus.RUNNING);
             taskRepository.saveTask(task);
 
-            // 启动浏览器
-            browserService.launchBrowser(task.isHeadless());
-            logCallback.accept("浏览器已启动");
-            logs.add("浏览器已启动");
+            // 先编译校验，错误任务不占用并发名额与浏览器会话
+            ExecutionPlan plan = planCompiler.compile(task, profile);
 
-            // 执行步骤
-            for (TaskStep step : task.getSteps()) {
-                if (runningTasks.get(task.getId()) == AutomationTask.TaskStatus.STOPPED) {
-                    throw new KKException("任务已被停止");
-                }
+            // 占用并发名额后再借出独立会话；排队期间被停止则直接退出
+            while (!slots.tryAcquire(SLOT_POLL_MS, TimeUnit.MILLISECONDS)) {
+                cancellation.throwIfCancelled();
+            }
+            acquired = true;
+            cancellation.throwIfCancelled();
+            SessionOptions sessionOptions = new SessionOptions()
+                    .setTaskId(task.getId())
+                    .setHeadless(task.isHeadless())
+                    .setProfile(profile)
+                    .setBlockRules(networkPolicy.resolve(task))
+                    .setCancellation(cancellation)
+                    .setTrace(trace != null);
+            session = browserService.openSession(sessionOptions);
+            runLog.info(-1, "SESSION_OPEN", "浏览器已启动");
+
+            // 依赖图：就绪节点在各自分支页面上并行执行
+            Long criticalPathMs = null;
+            if (plan.graph() != null) {
+                criticalPathMs = executeGraph(task, plan, session, cancellation, runLog, timings, selectorTimings, trace,
+                        profile, outputs);
+            } else {
+                // 执行步骤：就绪即进入下一步，delay 只作为就绪等待上限
+                long lastStartNanos = 0;
+                long readyNanos = System.nanoTime();
+                int sampleEvery = Math.max(1, profile.getLogSampleEvery());
+                List<CompiledStep> steps = plan.steps();
+
+                // 断点：幂等步骤完成后记录；mutated 表示断点后页面状态已变化，unsafe 表示断点后执行过有副作用的步骤
+                SessionCheckpoint checkpoint = null;
+                boolean mutated = false;
+                boolean unsafe = false;
+                // 已发起预加载的 NAVIGATE 步骤序号
+                int prefetched = -1;
+                int i = 0;
+                while (i < steps.size()) {
+                    CompiledStep step = steps.get(i);
+                    cancellation.throwIfCancelled();
+
+                    StepTiming timing = newTiming(i, step);
+                    timings.add(timing);
+                    int completed = 0;
+                    try {
+                        stepPacer.throttle(step.source(), lastStartNanos, cancellation);
+                        lastStartNanos = System.nanoTime();
+                        timing.setQueueNanos(lastStartNanos - readyNanos);
+                        unsafe |= hasSideEffect(steps, i, Math.max(1, step.fuseRun()));
+
+                        // 按配置档抽样输出步骤日志，失败信息不受抽样影响
+                        boolean sampled = i % sampleEvery == 0 || i == steps.size() - 1;
+
+                        // 合并执行：整组在一次页面内脚本中完成，未完成的步骤随后逐个执行
+                        if (step.fuseRun() > 1) {
+                            List<CompiledStep> group = steps.subList(i, i + step.fuseRun());
+                            if (sampled) {
+                                runLog.info(i, "FUSED_START", "合并执行 {} 步: {} … {}",
+                                        group.size(), step.description(), group.get(group.size() - 1).description());
+                            }
+                            int fused;
+                            try {
+                                fused = executeFused(session, group, task.getVariables());
+                            } finally {
+                                timing.setActionNanos(System.nanoTime() - lastStartNanos);
+                            }
+                            if (fused > 0) {
+                                long share = timing.getActionNanos() / fused;
+                                timing.setActionNanos(share).setFused(true).setSuccess(true);
+                                StepTiming lastTiming = timing;
+                                for (int k = 1; k < fused; k++) {
+                                    lastTiming = newTiming(i + k, group.get(k)).setActionNanos(share).setFused(true).setSuccess(true);
+                                    timings.add(lastTiming);
+                                }
+                                long actionEndNanos = System.nanoTime();
+                                stepPacer.awaitReady(session, group.get(fused - 1).source());
+                                readyNanos = System.nanoTime();
+                                lastTiming.setPostWaitNanos(readyNanos - actionEndNanos);
+                                if (sampled) {
+                                    runLog.info(i, "FUSED_DONE", "完成合并步骤: {}/{}", fused, group.size());
+                                }
+                                completed = fused;
+                            }
+                        } else if (sampled) {
+                            runLog.info(i, "STEP_START", "执行步骤: {}", step.description());
+                        }
+
+                        if (completed == 0) {
+                            long actionStartNanos = System.nanoTime();
+                            try {
+                                executeStep(session, step, task.getVariables(), outputs);
+                            } finally {
+                                timing.setActionNanos(timing.getActionNanos() + System.nanoTime() - actionStartNanos);
+                            }
+                            long actionEndNanos = System.nanoTime();
+                            stepPacer.awaitReady(session, step.source());
+                            readyNanos = System.nanoTime();
+                            timing.setPostWaitNanos(readyNanos - actionEndNanos).setSuccess(true);
+                            if (sampled) {
+                                runLog.info(i, "STEP_DONE", "完成步骤: {}", step.description());
+                            }
+                            completed = 1;
+                        }
+
+                        if (trace != null) {
+                            for (StepTiming done : timings.subList(timings.size() - completed, timings.size())) {
+                                trace.record(session, done, null);
+                            }
+                        }
+
+                        // 更新断点：最后完成的是幂等步骤时记录，页面状态未变化则只推进序号
+                        for (int k = i; k < i + completed; k++) {
+                            if (!isReadOnly(steps.get(k))) {
+                                mutated = true;
+                            }
+                        }
+                        if (maxResumes > 0 && isIdempotent(steps.get(i + completed - 1))) {
+                            checkpoint = mutated || checkpoint == null
+                                    ? session.checkpoint(i + completed)
+                                    : checkpoint.advanceTo(i + completed);
+                            mutated = false;
+                            unsafe = false;
+                        }
+                        if (prefetchEnabled) {
+                            prefetched = prefetchNext(session, steps, i + completed, prefetched, task.getVariables());
+                        }
+                    } catch (Exception e) {
+                        if (trace != null && !cancellation.isCancelled()) {
+                            trace.record(session, timing, e.getMessage());
+                        }
+                        if (!canResume(session, cancellation, resumeCount, unsafe)) {
+                            throw e;
+                        }
+                        resumeCount++;
+                        int next = checkpoint == null ? 0 : checkpoint.nextStep();
+                        log.warn("浏览器已断开，第 {} 次恢复: {} ({})", resumeCount, task.getName(), e.getMessage());
+                        runLog.warn(i, "SESSION_RESUME", "浏览器已断开，第 {} 次恢复，从第 {} 步继续", resumeCount, next + 1);
 
-                executeStep(step, logCallback);
-                logs.add("完成步骤: " + step.getDescription());
-                Thread.sleep(step.getDelay());
+                        selectorTimings.addAll(session.selectorTimings());
+                        session = resumeSession(session, sessionOptions, checkpoint);
+                        if (trace != null) {
+                            trace.resetCounters();
+                        }
+                        i = next;
+                        prefetched = -1;
+                        mutated = false;
+                        unsafe = false;
+                        lastStartNanos = 0;
+                        readyNanos = System.nanoTime();
+                        continue;
+                    }
+                    i += completed;
+                }
             }
 
             task.setStatus(AutomationTask.TaskStatus.SUCCESS);
             runningTasks.put(task.getId(), AutomationTask.TaskStatus.SUCCESS);
 
-            logCallback.accept("任务执行完成!");
-            logs.add("任务执行完成!");
+            runLog.info(-1, "TASK_DONE", "任务执行完成!");
+
+            long durationMs = java.time.Duration.between(startTime, LocalDateTime.now()).toMillis();
+            String traceArtifact = traceSlowThresholdMs > 0 && durationMs > traceSlowThresholdMs
+                    ? persistTrace(trace, task, "slow: " + durationMs + "ms", session)
+                    : null;
 
             TaskResult result = TaskResult.builder()
                     .taskId(task.getId())
                     .taskName(task.getName())
                     .success(true)
+                    .profile(profile.getName())
                     .startTime(startTime)
                     .endTime(LocalDateTime.now())
-                    .duration(java.time.Duration.between(startTime, LocalDateTime.now()).toMillis())
-                    .logs(logs)
+                    .duration(durationMs)
+                    .logs(runLog.recent())
+                    .logFile(runLog.getFile())
+                    .logSummary(runLog.summary())
+                    .stepTimings(timings)
+                    .slowSelectors(slowSelectors(selectorTimings, session))
+                    .traceArtifact(traceArtifact)
+                    .traceOverheadNanos(trace == null ? 0 : trace.getOverheadNanos())
+                    .criticalPathMs(criticalPathMs)
+                    .extracts(outputs.extracts())
+                    .downloads(outputs.downloads())
+                    .data(outputs.data())
+                    .network(session.networkStats())
+                    .resumeCount(resumeCount)
                     .build();
 
             taskRepository.saveResult(result);
             return result;
 
         } catch (Exception e) {
+            if (cancellation.isCancelled()) {
+                return stoppedResult(task, profile, startTime, runLog, timings,
+                        slowSelectors(selectorTimings, session), session, resumeCount, cancellation, outputs);
+            }
             log.error("任务执行失败", e);
             task.setStatus(AutomationTask.TaskStatus.FAILED);
             runningTasks.put(task.getId(), AutomationTask.TaskStatus.FAILED);
 
-            String errorMsg = "错误: " + e.getMessage();
-            logCallback.accept(errorMsg);
-            logs.add(errorMsg);
+            runLog.error(timings.isEmpty() ? -1 : timings.get(timings.size() - 1).getIndex(),
+                    "TASK_FAILED", "错误: {}", e.getMessage());
+            String traceArtifact = persistTrace(trace, task, "failed: " + e.getMessage(), session);
 
             TaskResult result = TaskResult.builder()
                     .taskId(task.getId())
                     .taskName(task.getName())
                     .success(false)
+                    .profile(profile.getName())
                     .startTime(startTime)
                     .endTime(LocalDateTime.now())
                     .duration(java.time.Duration.between(startTime, LocalDateTime.now()).toMillis())
-                    .logs(logs)
+                    .logs(runLog.recent())
+                    .logFile(runLog.getFile())
+                    .logSummary(runLog.summary())
+                    .stepTimings(timings)
+                    .slowSelectors(slowSelectors(selectorTimings, session))
+                    .traceArtifact(traceArtifact)
+                    .traceOverheadNanos(trace == null ? 0 : trace.getOverheadNanos())
                     .errorMessage(e.getMessage())
+                    .extracts(outputs.extracts())
+                    .downloads(outputs.downloads())
+                    .data(outputs.data())
+                    .network(session == null ? null : session.networkStats())
+                    .resumeCount(resumeCount)
                     .build();
 
             taskRepository.saveResult(result);
             return result;
 
         } finally {
+            stepLatencyRegistry.recordAll(task.getName(), timings);
+            cancellations.remove(task.getId());
+            runLog.close();
+            if (session != null) {
+                session.close();
+            }
+            if (acquired) {
+                slots.release();
+            }
             taskRepository.saveTask(task);
             runningTasks.remove(task.getId());
         }
     }
 
-    private void executeStep(TaskStep step, Consumer<String> logCallback) {
-        logCallback.accept("执行步骤: " + step.getDescription());
+    /**
+     * 节点执行结果，由分支线程交回调度循环
+     */
+    private record NodeOutcome(int index, Exception error) {
+    }
+
+    /**
+     * 按依赖图执行：依赖全部完成的节点立即在其分支页面上启动（虚拟线程），返回关键路径耗时（毫秒）
+     *
+     * 说明：
+     * - 分支页面在该分支第一步启动前打开，最后一步完成后关闭；分支 0 使用任务会话的主页面
+     * - 同一上下文的页面共用驱动锁，驱动调用仍串行，但导航、等待元素等分片等待可以交错推进
+     * - 任一节点失败后不再启动新节点，并取消其他分支页面上的步骤；主页面上正在执行的步骤执行完为止
+     * - 依赖图任务不记录断点，浏览器崩溃直接失败
+     */
+    private long executeGraph(AutomationTask task, ExecutionPlan plan, BrowserSession root, CancellationToken cancellation,
+                              ExecutionLog runLog, List<StepTiming> timings, List<SelectorTiming> selectorTimings,
+                              TraceRecorder trace, ExecutionProfile profile, RunOutputs outputs) throws Exception {
+        TaskGraph graph = plan.graph();
+        List<CompiledStep> steps = plan.steps();
+        int n = steps.size();
+        int sampleEvery = Math.max(1, profile.getLogSampleEvery());
+
+        // 分支页面的取消令牌：任务停止或任一节点失败时取消
+        CancellationToken branches = new CancellationToken();
+        BrowserSession[] lanes = new BrowserSession[graph.laneCount()];
+        lanes[0] = root;
+        long[] laneLastStart = new long[graph.laneCount()];
+        String[] forkUrls = new String[n];
+        long[] readyNanos = new long[n];
+        long[] durationNanos = new long[n];
+        int[] remaining = new int[n];
 
-        switch (step.getType()) {
-            case NAVIGATE -> browserService.navigateTo(step.getValue());
-            case CLICK -> browserService.click(step.getSelector());
-            case FILL -> browserService.fill(step.getSelector(), step.getValue());
-            case SCREENSHOT -> browserService.screenshot(step.getValue());
-            case WAIT -> browserService.waitForSelector(step.getSelector(),
-                    Integer.parseInt(step.getValue()));
-            case SCRIPT -> browserService.evaluateScript(step.getValue());
+        Deque<Integer> ready = new ArrayDeque<>();
+        for (int i : graph.order()) {
+            remaining[i] = graph.dependencies().get(i).size();
+            if (remaining[i] == 0) {
+                ready.add(i);
+                readyNanos[i] = System.nanoTime();
+            }
+        }
+
+        runLog.info(-1, "GRAPH_START", "按依赖图执行 {} 步，{} 个分支", n, graph.laneCount());
+        BlockingQueue<NodeOutcome> outcomes = new LinkedBlockingQueue<>();
+        Exception failure = null;
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            int running = 0;
+            int finished = 0;
+            while (finished < n) {
+                while (failure == null && !ready.isEmpty()) {
+                    int i = ready.poll();
+                    int lane = graph.lane(i);
+                    if (lanes[lane] == null) {
+                        lanes[lane] = root.openPage(branches);
+                    }
+                    BrowserSession page = lanes[lane];
+                    CancellationToken token = lane == 0 ? cancellation : branches;
+                    workers.execute(() -> outcomes.add(new NodeOutcome(i, runNode(task, steps.get(i), graph, page, token,
+                            laneLastStart, forkUrls, readyNanos[i], durationNanos, runLog, timings, trace, sampleEvery, n, outputs))));
+                    running++;
+                }
+                if (running == 0) break;
+
+                NodeOutcome outcome = outcomes.poll(SLOT_POLL_MS, TimeUnit.MILLISECONDS);
+                if (outcome == null) {
+                    if (cancellation.isCancelled() && branches.cancel(cancellation.getReason()) && failure == null) {
+                        failure = new TaskCancelledException(cancellation.getReason());
+                    }
+                    continue;
+                }
+                running--;
+                finished++;
+                int i = outcome.index();
+                if (outcome.error() != null) {
+                    if (failure == null) {
+                        failure = outcome.error();
+                        branches.cancel("第 " + (i + 1) + " 步失败，停止其他分支");
+                    }
+                    continue;
+                }
+
+                int lane = graph.lane(i);
+                if (lane > 0 && graph.isLaneEnd(i)) {
+                    selectorTimings.addAll(lanes[lane].selectorTimings());
+                    lanes[lane].close();
+                    lanes[lane] = null;
+                }
+                for (int next : graph.dependents().get(i)) {
+                    if (--remaining[next] == 0) {
+                        ready.add(next);
+                        readyNanos[next] = System.nanoTime();
+                    }
+                }
+            }
+        } finally {
+            // 线程池关闭时已等待所有分支线程结束，此处分支页面不再被使用
+            for (int lane = 1; lane < lanes.length; lane++) {
+                if (lanes[lane] != null) {
+                    selectorTimings.addAll(lanes[lane].selectorTimings());
+                    lanes[lane].close();
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        cancellation.throwIfCancelled();
+
+        // 关键路径：沿依赖累加步骤耗时（动作 + 就绪等待），取最大值
+        long[] pathNanos = new long[n];
+        long critical = 0;
+        for (int i : graph.order()) {
+            long longest = 0;
+            for (int dep : graph.dependencies().get(i)) {
+                longest = Math.max(longest, pathNanos[dep]);
+            }
+            pathNanos[i] = longest + durationNanos[i];
+            critical = Math.max(critical, pathNanos[i]);
+        }
+        long criticalPathMs = TimeUnit.NANOSECONDS.toMillis(critical);
+        runLog.info(-1, "GRAPH_DONE", "依赖图执行完成，关键路径 {}ms", criticalPathMs);
+        return criticalPathMs;
+    }
+
+    /**
+     * 在分支页面上执行单个节点，返回异常（成功为 null）；分支首步按需先打开来源节点的页面地址
+     */
+    private Exception runNode(AutomationTask task, CompiledStep step, TaskGraph graph, BrowserSession page,
+                              CancellationToken token, long[] laneLastStart, String[] forkUrls, long readyNanos, long[] durationNanos,
+                              ExecutionLog runLog, List<StepTiming> timings, TraceRecorder trace, int sampleEvery, int n,
+                              RunOutputs outputs) {
+        int i = step.index();
+        int lane = graph.lane(i);
+        StepTiming timing = newTiming(i, step);
+        boolean sampled = i % sampleEvery == 0 || i == n - 1;
+        try {
+            stepPacer.throttle(step.source(), laneLastStart[lane], token);
+            long startNanos = System.nanoTime();
+            laneLastStart[lane] = startNanos;
+            timing.setQueueNanos(startNanos - readyNanos);
+            if (sampled) {
+                runLog.info(i, "STEP_START", "执行步骤 (分支 {}): {}", lane, step.description());
+            }
+
+            try {
+                int from = graph.forkFrom().get(i);
+                if (from >= 0 && step.type() != TaskStep.StepType.NAVIGATE && forkUrls[from] != null
+                        && !forkUrls[from].startsWith("about:")) {
+                    page.navigateTo(forkUrls[from]);
+                }
+                executeStep(page, step, task.getVariables(), outputs);
+            } finally {
+                timing.setActionNanos(System.nanoTime() - startNanos);
+            }
+            long actionEndNanos = System.nanoTime();
+            stepPacer.awaitReady(page, step.source());
+            timing.setPostWaitNanos(System.nanoTime() - actionEndNanos).setSuccess(true);
+            durationNanos[i] = timing.getActionNanos() + timing.getPostWaitNanos();
+
+            if (graph.isForkSource(i)) {
+                forkUrls[i] = page.currentUrl();
+            }
+            if (trace != null) {
+                synchronized (trace) {
+                    trace.record(page, timing, null);
+                }
+            }
+            if (sampled) {
+                runLog.info(i, "STEP_DONE", "完成步骤 (分支 {}): {}", lane, step.description());
+            }
+            return null;
+        } catch (Exception e) {
+            if (trace != null && !(e instanceof TaskCancelledException)) {
+                synchronized (trace) {
+                    trace.record(page, timing, e.getMessage());
+                }
+            }
+            return e;
+        } finally {
+            synchronized (timings) {
+                timings.add(timing);
+            }
+        }
+    }
+
+    /**
+     * 可以据此记录断点的步骤：重复执行不改变页面或外部状态
+     */
+    private static boolean isIdempotent(CompiledStep step) {
+        return switch (step.type()) {
+            case NAVIGATE, WAIT, SCREENSHOT, EXTRACT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 不改变页面状态的步骤：之后的断点只需推进序号
+     */
+    private static boolean isReadOnly(CompiledStep step) {
+        return switch (step.type()) {
+            case WAIT, SCREENSHOT, EXTRACT -> true;
+            default -> false;
+        };
+    }
+
+    /**
+     * 预加载下一个 NAVIGATE，返回已预加载的步骤序号
+     *
+     * 只有其前面剩余的步骤都不改变页面状态（或该步声明 params.prefetch=true）时才发起，
+     * 避免在登录、提交之前就加载目标页面；params.prefetch=false 的步骤不预加载，
+     * 紧接着就要执行的导航没有可重叠的时间，也不预加载。预加载失败不影响任务，导航时按常规方式加载
+     */
+    private int prefetchNext(BrowserSession session, List<CompiledStep> steps, int from, int prefetched,
+                             Map<String, String> variables) {
+        int next = from;
+        while (next < steps.size() && steps.get(next).type() != TaskStep.StepType.NAVIGATE) {
+            next++;
+        }
+        if (next >= steps.size() || next == from || next == prefetched) {
+            return prefetched;
+        }
+
+        CompiledStep target = steps.get(next);
+        String flag = target.source().param("prefetch");
+        if ("false".equalsIgnoreCase(flag)) {
+            return prefetched;
+        }
+        if (!"true".equalsIgnoreCase(flag)) {
+            for (int k = from; k < next; k++) {
+                if (!isReadOnly(steps.get(k))) return prefetched;
+            }
+        }
+
+        String url = target.templated() ? Placeholders.resolve(target.value(), variables) : target.value();
+        try {
+            session.prefetch(url);
+            log.debug("预加载第 {} 步的页面: {}", next + 1, url);
+        } catch (TaskCancelledException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.debug("预加载失败，导航时按常规方式加载: {} ({})", url, e.getMessage());
+        }
+        return next;
+    }
+
+    /**
+     * 有副作用的步骤执行后，在下一个断点之前崩溃不再自动恢复，避免重复提交：
+     * CLICK / SCRIPT 默认视为有副作用，声明 params.idempotent=true 才允许恢复后重放；
+     * 其余类型声明 params.sideEffect=true 时同样视为有副作用
+     */
+    private static boolean hasSideEffect(List<CompiledStep> steps, int from, int count) {
+        for (int k = from; k < from + count && k < steps.size(); k++) {
+            if (hasSideEffect(steps.get(k))) return true;
+        }
+        return false;
+    }
+
+    private static boolean hasSideEffect(CompiledStep step) {
+        if ("true".equalsIgnoreCase(step.source().param("sideEffect"))) return true;
+        return switch (step.type()) {
+            case CLICK, SCRIPT -> !"true".equalsIgnoreCase(step.source().param("idempotent"));
+            default -> false;
+        };
+    }
+
+    private boolean canResume(BrowserSession session, CancellationToken cancellation, int resumeCount, boolean unsafe) {
+        return maxResumes > 0
+                && resumeCount < maxResumes
+                && !unsafe
+                && session != null
+                && !cancellation.isCancelled()
+                && session.isCrashed();
+    }
+
+    /**
+     * 被停止的任务：先关闭本任务的会话，再以停止请求发出至今的耗时作为停止延迟
+     */
+    private TaskResult stoppedResult(AutomationTask task, ExecutionProfile profile, LocalDateTime startTime,
+                                     ExecutionLog runLog, List<StepTiming> timings, List<SelectorTiming> slowSelectors,
+                                     BrowserSession session, int resumeCount, CancellationToken cancellation,
+                                     RunOutputs outputs) {
+        if (session != null) {
+            session.close();
+        }
+        long stopLatencyMs = cancellation.millisSinceCancel();
+        task.setStatus(AutomationTask.TaskStatus.STOPPED);
+        runningTasks.put(task.getId(), AutomationTask.TaskStatus.STOPPED);
+
+        log.info("任务已停止 (停止耗时 {}ms): {}", stopLatencyMs, task.getName());
+        runLog.warn(-1, "TASK_STOPPED", "任务已停止 (停止耗时 {}ms)", stopLatencyMs);
+
+        TaskResult result = TaskResult.builder()
+                .taskId(task.getId())
+                .taskName(task.getName())
+                .success(false)
+                .profile(profile.getName())
+                .startTime(startTime)
+                .endTime(LocalDateTime.now())
+                .duration(java.time.Duration.between(startTime, LocalDateTime.now()).toMillis())
+                .logs(runLog.recent())
+                .logFile(runLog.getFile())
+                .logSummary(runLog.summary())
+                .stepTimings(timings)
+                .slowSelectors(slowSelectors)
+                .errorMessage(cancellation.getReason())
+                .network(session == null ? null : session.networkStats())
+                .resumeCount(resumeCount)
+                .stopLatencyMs(stopLatencyMs)
+                // 停止前已完成的提取与下载照常返回，与失败路径一致
+                .extracts(outputs.extracts())
+                .downloads(outputs.downloads())
+                .data(outputs.data())
+                .build();
+
+        taskRepository.saveResult(result);
+        return result;
+    }
+
+    /**
+     * 丢弃崩溃的会话，按断点还原 storageState 并回到断点 URL
+     */
+    private BrowserSession resumeSession(BrowserSession crashed, SessionOptions options, SessionCheckpoint checkpoint) {
+        crashed.close();
+
+        BrowserSession fresh = browserService.openSession(options.copy()
+                .setStorageState(checkpoint == null ? null : checkpoint.storageState()));
+        if (checkpoint != null && checkpoint.url() != null && !checkpoint.url().startsWith("about:")) {
+            fresh.navigateTo(checkpoint.url());
+        }
+        return fresh;
+    }
+
+    /**
+     * 合并各会话（含崩溃恢复前的会话）的选择器统计，取累计解析耗时最长的若干个
+     */
+    private List<SelectorTiming> slowSelectors(List<SelectorTiming> earlier, BrowserSession session) {
+        Map<String, SelectorTiming> merged = new LinkedHashMap<>();
+        List<SelectorTiming> all = new ArrayList<>(earlier);
+        if (session != null) {
+            all.addAll(session.selectorTimings());
+        }
+        for (SelectorTiming timing : all) {
+            merged.merge(timing.getSelector(), timing, SelectorTiming::merge);
+        }
+        return merged.values().stream()
+                .sorted(Comparator.comparingLong(SelectorTiming::getTotalNanos).reversed())
+                .limit(Math.max(0, slowSelectorTopN))
+                .toList();
+    }
+
+    /**
+     * 写出失败追踪，返回目录路径；未开启或写盘失败时返回 null（不影响任务结果）
+     */
+    private String persistTrace(TraceRecorder trace, AutomationTask task, String reason, BrowserSession session) {
+        if (trace == null) return null;
+        long begin = System.nanoTime();
+        try {
+            Path path = trace.persist(Paths.get(traceDir), task.getId(), task.getName(), reason, session, traceFinalDomChars);
+            log.info("已写入失败追踪 ({}ms): {}", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin), path);
+            return path.toString();
+        } catch (IOException | RuntimeException e) {
+            log.warn("写入失败追踪失败: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private static StepTiming newTiming(int index, CompiledStep step) {
+        return new StepTiming()
+                .setIndex(index)
+                .setType(step.type())
+                .setDescription(step.description());
+    }
+
+    /**
+     * 合并执行一组 DOM 步骤，返回成功执行的步骤数；首个元素等待超时等异常直接归属到该组第一步
+     */
+    private int executeFused(BrowserSession session, List<CompiledStep> group, Map<String, String> variables) {
+        List<DomAction> actions = group.stream()
+                .map(s -> new DomAction(
+                        s.type() == TaskStep.StepType.CLICK ? DomAction.Kind.CLICK : DomAction.Kind.FILL,
+                        s.selector(),
+                        s.templated() ? Placeholders.resolve(s.value(), variables) : s.value()))
+                .toList();
+        DomAction.Result result = session.executeFused(actions);
+        if (result.completed() < group.size()) {
+            CompiledStep stopped = group.get(result.completed());
+            log.debug("合并执行在第 {} 步停止 ({}), 剩余步骤逐个执行: {}",
+                    stopped.index() + 1, result.error(), stopped.description());
+        }
+        return result.completed();
+    }
+
+    /**
+     * 执行单个已编译步骤；含占位符的 value / selector 按任务变量替换（计划本身不被修改）
+     */
+    private void executeStep(BrowserSession session, CompiledStep step, Map<String, String> variables, RunOutputs outputs) {
+        String selector = step.templated() ? Placeholders.resolve(step.selector(), variables) : step.selector();
+        String value = step.templated() ? Placeholders.resolve(step.value(), variables) : step.value();
+        switch (step.type()) {
+            case NAVIGATE -> session.navigateTo(value, step.navigationWait(), selector, Constants.DEFAULT_TIMEOUT);
+            case CLICK -> session.click(selector);
+            case FILL -> session.fill(selector, value);
+            // 只在步骤内取回图片字节，写盘交给后台线程
+            case SCREENSHOT -> screenshotWriter.write(Paths.get(value), session.captureScreenshot(step.screenshot()));
+            case WAIT -> session.waitForSelector(selector, step.timeoutMs() >= 0 ? step.timeoutMs() : parseTimeout(value));
+            case SCRIPT -> session.evaluateScript(value);
+            case EXTRACT -> extract(session, step, selector, value, outputs);
+            case DOWNLOAD -> {
+                DownloadSpec spec = step.download().withDefaults(downloadChecksum, downloadMaxBytes, downloadTimeoutMs);
+                DownloadRecord record = session.download(selector, value, spec).setIndex(step.index());
+                outputs.downloaded(record);
+                log.debug("下载完成: {} 字节，{}ms，{} KB/s -> {}", record.getBytes(),
+                        TimeUnit.NANOSECONDS.toMillis(record.getDurationNanos()), record.getBytesPerSecond() / 1024,
+                        record.getPath());
+            }
+            case SCROLL, HOVER -> log.debug("跳过暂不支持的步骤: {}", step.description());
+            default -> throw new KKException("不支持的步骤类型: " + step.type());
+        }
+    }
+
+    /**
+     * 批量提取：按块在页面内取出行并立即交给输出，内存中只保留当前一块（sink=result 除外）
+     *
+     * 每块一次驱动调用，块与块之间释放驱动锁并检查取消令牌；取到的行数不足一块或已达上限即结束。
+     */
+    private void extract(BrowserSession session, CompiledStep step, String selector, String target, RunOutputs outputs) {
+        ExtractSpec spec = step.extract();
+        int chunkSize = spec.chunkSize() > 0 ? spec.chunkSize() : Math.max(1, extractChunkSize);
+        int maxRows = spec.maxRows();
+        if (ExtractSpec.SINK_RESULT.equals(spec.sink()) && extractResultMaxRows > 0) {
+            maxRows = maxRows > 0 ? Math.min(maxRows, extractResultMaxRows) : extractResultMaxRows;
+        }
+
+        long begin = System.nanoTime();
+        int rows = 0;
+        int chunks = 0;
+        int total = 0;
+        Object data;
+        try (ExtractSink sink = extractSinks.open(spec, target)) {
+            while (true) {
+                int limit = maxRows > 0 ? Math.min(chunkSize, maxRows - rows) : chunkSize;
+                if (limit <= 0) break;
+                ExtractSpec.Chunk chunk = session.extractRows(selector, spec.fields(), rows, limit);
+                chunks++;
+                total = chunk.total();
+                if (!chunk.rows().isEmpty()) {
+                    sink.write(chunk.rows());
+                }
+                rows += chunk.rows().size();
+                if (chunk.rows().size() < limit || rows >= total) break;
+            }
+            data = sink.result();
+        } catch (IOException e) {
+            throw new KKException("写出提取结果失败: " + e.getMessage(), e);
+        }
+
+        ExtractSummary summary = new ExtractSummary()
+                .setIndex(step.index())
+                .setSink(spec.sink())
+                .setTarget(target)
+                .setTotal(total)
+                .setRows(rows)
+                .setChunks(chunks)
+                .setNanos(System.nanoTime() - begin)
+                .setTruncated(rows < total);
+        String key = step.source().getId() == null || step.source().getId().isBlank()
+                ? "step" + (step.index() + 1)
+                : step.source().getId().trim();
+        outputs.extracted(summary, key, data);
+        log.debug("提取完成: {} 行 / 共 {} 行，{} 块，{}ms -> {}", rows, total, chunks,
+                TimeUnit.NANOSECONDS.toMillis(summary.getNanos()), target == null ? spec.sink() : target);
+    }
+
+    /**
+     * 一次执行中各步骤产出的数据，依赖图模式下由多个分支线程写入
+     *
+     * 按步骤序号保存，崩溃恢复后重复执行的步骤覆盖之前的结果。
+     */
+    private static final class RunOutputs {
+        private final Map<Integer, ExtractSummary> extracts = new TreeMap<>();
+        private final Map<Integer, DownloadRecord> downloads = new TreeMap<>();
+        private final Map<String, Object> data = new LinkedHashMap<>();
+
+        synchronized void extracted(ExtractSummary summary, String key, Object rows) {
+            extracts.put(summary.getIndex(), summary);
+            if (rows != null) {
+                data.put(key, rows);
+            }
+        }
+
+        synchronized void downloaded(DownloadRecord record) {
+            downloads.put(record.getIndex(), record);
+        }
+
+        synchronized List<DownloadRecord> downloads() {
+            return new ArrayList<>(downloads.values());
+        }
+
+        synchronized List<ExtractSummary> extracts() {
+            return new ArrayList<>(extracts.values());
+        }
+
+        synchronized Object data() {
+            return data.isEmpty() ? null : new LinkedHashMap<>(data);
+        }
+    }
+
+    private static int parseTimeout(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new KKException("等待超时不是整数: " + value);
         }
     }
 
     @Override
     public void stopTask(String taskId) {
-        runningTasks.put(taskId, AutomationTask.TaskStatus.STOPPED);
-        browserService.closeBrowser();
-        log.info("任务已停止: {}", taskId);
+        runningTasks.computeIfPresent(taskId, (id, status) -> AutomationTask.TaskStatus.STOPPED);
+        // 只取消该任务：执行线程在当前等待片结束或下一次驱动调用前退出，并关闭自己的会话，
+        // 同一浏览器上的其他任务不受影响
+        CancellationToken cancellation = cancellations.get(taskId);
+        if (cancellation != null && cancellation.cancel("任务已被停止")) {
+            log.info("已请求停止任务: {}", taskId);
+        }
     }
 
     @Override
     public AutomationTask.TaskStatus getTaskStatus(String taskId) {
         return runningTasks.getOrDefault(taskId, AutomationTask.TaskStatus.PENDING);
     }
-}
\ No newline at end of file
+}
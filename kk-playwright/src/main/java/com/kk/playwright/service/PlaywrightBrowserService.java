@@ -1,49 +1,224 @@
 package com.kk.playwright.service;
 
+import com.kk.common.exception.KKException;
+import com.kk.core.metrics.SelectorStatsRegistry;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.CancellationToken;
+import com.kk.core.service.SessionOptions;
 import com.kk.core.service.impl.AbstractBrowserService;
+import com.kk.playwright.cache.AssetCache;
+import com.kk.playwright.network.NetworkInterceptor;
+import com.kk.playwright.pool.BrowserShard;
+import com.kk.playwright.pool.ContextPoolKey;
+import com.kk.playwright.pool.PooledContext;
 import com.microsoft.playwright.*;
-import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
-import java.nio.file.Paths;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Slf4j
 @Service
 @Lazy
 public class PlaywrightBrowserService extends AbstractBrowserService {
 
-    private Playwright playwright;
-    private Browser browser;
-    private BrowserContext context;
-    private Page page;
+    /**
+     * 每种启动参数至少保留的空闲上下文数量
+     */
+    @Value("${kk.playwright.pool.minIdle:1}")
+    private int poolMinIdle;
+
+    /**
+     * 每种启动参数最多保留的空闲上下文数量
+     */
+    @Value("${kk.playwright.pool.maxIdle:4}")
+    private int poolMaxIdle;
+
+    /**
+     * 单个上下文最多复用次数，达到后销毁重建
+     */
+    @Value("${kk.playwright.pool.maxUses:50}")
+    private int poolMaxUses;
+
+    /**
+     * 浏览器分片数（每个分片一个 Playwright 驱动 + Chromium 进程组），0 表示按 CPU 核数 / 4 自动确定
+     */
+    @Value("${kk.playwright.shards.count:1}")
+    private int shardCount;
+
+    /**
+     * 分片累计服务多少个会话后排空并重启驱动与浏览器，0 表示不回收
+     */
+    @Value("${kk.playwright.shards.recycleAfter:0}")
+    private long shardRecycleAfter;
+
+    /**
+     * 选择分片时 CPU 占用（核数）相对活动页面数的权重
+     */
+    @Value("${kk.playwright.shards.cpuWeight:1.0}")
+    private double shardCpuWeight;
+
+    /**
+     * 所有分片都在排空时，新会话等待分片回收的最长时间（毫秒），超时后仍借用负载最低的排空中分片
+     */
+    @Value("${kk.playwright.shards.drainGraceMs:30000}")
+    private long shardDrainGraceMs;
+
+    /**
+     * 等待分片回收时的轮询间隔
+     */
+    private static final long DRAIN_POLL_MS = 50;
+
+    private final AssetCache assetCache;
+    private final SelectorStatsRegistry selectorStats;
+
+    /**
+     * Playwright 实例及其创建的所有对象只能被一个线程同时访问，每个分片各持一把驱动锁
+     */
+    private volatile List<BrowserShard> shards;
+
+    /**
+     * 单页面接口（launchBrowser/navigateTo/...）使用的默认会话
+     */
+    private volatile PlaywrightBrowserSession defaultSession;
 
-    private void ensurePlaywrightInitialized() {
-        if (playwright == null) {
-            logInfo("延迟初始化 Playwright 核心...");
-            playwright = Playwright.create();
+    public PlaywrightBrowserService(AssetCache assetCache, SelectorStatsRegistry selectorStats) {
+        this.assetCache = assetCache;
+        this.selectorStats = selectorStats;
+    }
+
+    private List<BrowserShard> shards() {
+        List<BrowserShard> current = shards;
+        if (current == null) {
+            synchronized (this) {
+                if (shards == null) {
+                    int count = shardCount > 0 ? shardCount : Math.max(1, Runtime.getRuntime().availableProcessors() / 4);
+                    List<BrowserShard> created = new ArrayList<>(count);
+                    for (int i = 0; i < count; i++) {
+                        created.add(new BrowserShard(i, poolMinIdle, poolMaxIdle, poolMaxUses, shardRecycleAfter));
+                    }
+                    shards = List.copyOf(created);
+                    logInfo("浏览器分片数: {}", count);
+                }
+                current = shards;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 选择负载最低的可用分片：未排空，或排空中但已没有会话（借用时先回收）。
+     * 没有可用分片时（单分片或全部排空中）轮询等待回收，最多 drainGraceMs，超时后退回负载最低的排空中分片，
+     * 避免持续负载下排空中的分片一直接到新会话而永远无法回收
+     */
+    private BrowserShard selectShard(CancellationToken cancellation) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, shardDrainGraceMs));
+        while (true) {
+            boolean expired = System.nanoTime() >= deadline;
+            BrowserShard shard = pickShard(expired);
+            if (shard != null) {
+                return shard;
+            }
+            try {
+                cancellation.sleep(DRAIN_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KKException("等待浏览器分片回收时被中断");
+            }
+        }
+    }
+
+    private synchronized BrowserShard pickShard(boolean allowDraining) {
+        List<BrowserShard> all = shards();
+        // 至少保留一个未排空的分片；只有一个分片时只能整体排空，新会话等待其回收
+        for (BrowserShard shard : all) {
+            if (shard.isRecycleDue()
+                    && (all.size() == 1 || all.stream().anyMatch(other -> other != shard && !other.isDraining()))) {
+                shard.beginDrain();
+            }
+        }
+
+        BrowserShard best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (BrowserShard shard : all) {
+            BrowserShard.Load load = shard.load();
+            if (!allowDraining && shard.isDraining() && load.activePages() > 0) continue;
+            double score = load.score(shardCpuWeight);
+            if (best == null || score < bestScore) {
+                best = shard;
+                bestScore = score;
+            }
+        }
+        if (best != null) {
+            if (allowDraining && best.isDraining() && best.load().activePages() > 0) {
+                log.warn("浏览器分片 #{} 排空超过 {}ms 仍有会话，继续借用", best.getIndex(), shardDrainGraceMs);
+            }
+            best.reserve();
         }
+        return best;
     }
 
     @Override
-    public void launchBrowser(boolean headless) {
-        // 确保 Playwright 基础环境已就绪
-        ensurePlaywrightInitialized();
+    public BrowserSession openSession(SessionOptions options) {
+        BrowserShard shard = selectShard(options.getCancellation());
+        ReentrantLock driverLock = shard.getDriverLock();
+        driverLock.lock();
+        try {
+            PooledContext pooled = shard.borrow(ContextPoolKey.of(options), options.getStorageState());
+            logInfo("已借出浏览器上下文 (分片: #{}, headless: {}, 配置档: {}, 复用次数: {})",
+                    shard.getIndex(), options.isHeadless(), options.getProfile().getName(), pooled.getUses());
 
-        if (browser != null && browser.isConnected()) {
-            logInfo("浏览器已启动");
-            return;
+            NetworkInterceptor interceptor = null;
+            try {
+                if (NetworkInterceptor.isNeeded(options.getBlockRules(), assetCache)) {
+                    interceptor = new NetworkInterceptor(options.getBlockRules(), assetCache);
+                    interceptor.install(pooled.getContext());
+                }
+            } catch (RuntimeException e) {
+                shard.release(pooled);
+                throw e;
+            }
+            return new PlaywrightBrowserSession(driverLock, pooled, options, interceptor, shard::release, selectorStats);
+        } finally {
+            driverLock.unlock();
         }
+    }
 
-        logInfo("启动浏览器 (headless: {})", headless);
-        browser = playwright.chromium().launch(new BrowserType.LaunchOptions()
-                .setHeadless(headless)
-                .setSlowMo(50));
+    /**
+     * 预热：初始化各分片的 Playwright 驱动并启动指定参数的浏览器与空闲上下文，之后的首批任务无需等待启动
+     */
+    public void warmUp(SessionOptions options) {
+        for (BrowserShard shard : shards()) {
+            shard.getDriverLock().lock();
+            try {
+                shard.warm(ContextPoolKey.of(options));
+            } finally {
+                shard.getDriverLock().unlock();
+            }
+        }
+    }
 
-        context = browser.newContext(new Browser.NewContextOptions()
-                .setViewportSize(1920, 1080));
+    /**
+     * 各分片当前负载
+     */
+    public List<BrowserShard.Load> getShardLoads() {
+        return shards().stream().map(BrowserShard::load).toList();
+    }
 
-        page = context.newPage();
+    @Override
+    public void launchBrowser(boolean headless) {
+        if (defaultSession != null && defaultSession.isOpen()) {
+            logInfo("浏览器已启动");
+            return;
+        }
+
+        defaultSession = (PlaywrightBrowserSession) openSession(new SessionOptions().setHeadless(headless));
         active = true;
     }
 
@@ -51,79 +226,86 @@ public class PlaywrightBrowserService extends AbstractBrowserService {
     public void navigateTo(String url) {
         validateActive();
         logInfo("导航到: {}", url);
-        page.navigate(url);
+        defaultSession.navigateTo(url);
     }
 
     @Override
     public void click(String selector) {
         validateActive();
         logInfo("点击元素: {}", selector);
-        page.click(selector);
+        defaultSession.click(selector);
     }
 
     @Override
     public void fill(String selector, String value) {
         validateActive();
         logInfo("填充 {} 为: {}", selector, value);
-        page.fill(selector, value);
+        defaultSession.fill(selector, value);
     }
 
     @Override
     public String getText(String selector) {
         validateActive();
-        return page.textContent(selector);
+        return defaultSession.getText(selector);
     }
 
     @Override
     public void screenshot(String path) {
         validateActive();
         logInfo("截图保存到: {}", path);
-        page.screenshot(new Page.ScreenshotOptions()
-                .setPath(Paths.get(path))
-                .setFullPage(true));
+        defaultSession.screenshot(path);
     }
 
     @Override
     public Object evaluateScript(String script) {
         validateActive();
-        return page.evaluate(script);
+        return defaultSession.evaluateScript(script);
     }
 
     @Override
     public void waitForSelector(String selector, int timeout) {
         validateActive();
-        page.waitForSelector(selector, new Page.WaitForSelectorOptions()
-                .setTimeout(timeout));
+        defaultSession.waitForSelector(selector, timeout);
     }
 
     @Override
-    public void closeBrowser() {
-        if (page != null) {
-            page.close();
-            page = null;
-        }
-        if (context != null) {
-            context.close();
-            context = null;
-        }
-        if (browser != null) {
-            browser.close();
-            browser = null;
+    public void releaseBrowser() {
+        if (defaultSession != null) {
+            defaultSession.close();
+            defaultSession = null;
         }
         active = false;
+    }
+
+    @Override
+    public void closeBrowser() {
+        releaseBrowser();
+        for (BrowserShard shard : shards()) {
+            shard.getDriverLock().lock();
+            try {
+                shard.closeBrowsers();
+            } finally {
+                shard.getDriverLock().unlock();
+            }
+        }
         logInfo("浏览器已关闭");
     }
 
     public Page getPage() {
-        return page;
+        return defaultSession == null ? null : defaultSession.getPage();
     }
 
     @PreDestroy
     public void cleanup() {
-        closeBrowser();
-        if (playwright != null) {
-            playwright.close();
-            logInfo("Playwright 已关闭");
+        releaseBrowser();
+        for (BrowserShard shard : shards()) {
+            shard.getDriverLock().lock();
+            try {
+                shard.shutdown();
+            } finally {
+                shard.getDriverLock().unlock();
+            }
         }
+        logInfo("Playwright 已关闭");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,1118 @@
+package com.kk.playwright.service;
+
+import com.kk.common.constant.Constants;
+import com.kk.common.exception.KKException;
+import com.kk.common.model.ExecutionProfile;
+import com.kk.common.model.DownloadRecord;
+import com.kk.common.model.NetworkStats;
+import com.kk.common.model.SelectorTiming;
+import com.kk.common.model.TaskStep;
+import com.kk.core.metrics.SelectorStatsRegistry;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.CancellationToken;
+import com.kk.core.service.DomAction;
+import com.kk.core.service.DownloadSpec;
+import com.kk.core.service.ExtractSpec;
+import com.kk.core.service.PageTrace;
+import com.kk.core.service.ScreenshotSpec;
+import com.kk.core.service.SessionCheckpoint;
+import com.kk.core.service.SessionOptions;
+import com.kk.playwright.network.NetworkInterceptor;
+import com.kk.playwright.pool.PooledContext;
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.CDPSession;
+import com.microsoft.playwright.Download;
+import com.microsoft.playwright.Frame;
+import com.microsoft.playwright.JSHandle;
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.TimeoutError;
+import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.ScreenshotScale;
+import com.microsoft.playwright.options.ScreenshotType;
+import com.microsoft.playwright.options.WaitForSelectorState;
+import com.microsoft.playwright.options.WaitUntilState;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Playwright 会话 - 独占一个池化上下文及其页面
+ *
+ * 线程模型：
+ * - Playwright Java 对象非线程安全，同一 Playwright 实例的所有调用都必须持有 driverLock
+ * - 长时间等待（元素出现、页面加载）被切成 WAIT_SLICE_MS 的小片，片与片之间释放锁，
+ *   让同一浏览器上的其他会话得以推进
+ * - 点击、填写、截图、脚本不依赖 Playwright 自带的自动等待（默认 30 秒，期间持有锁）：先分片等到元素可操作
+ *   （点击用 trial 点击检查可操作性，填写轮询可编辑）、字体加载完成或脚本的 Promise 完成，
+ *   最后一次驱动调用只给短超时
+ * - 每次驱动调用前与每一片之间检查任务的取消令牌，停止请求在一片之内生效；
+ *   已发出的单次驱动调用（如导航到 commit）无法中途打断，会在其返回后生效
+ * - 选择器在会话内缓存为 Locator（取第一个匹配，与 page.click 等非严格模式语义一致），
+ *   每次等待元素出现都记录解析耗时、重试片数与首次匹配数，汇总到 SelectorStatsRegistry
+ * - openPage 打开的子会话共享上下文与驱动锁，只持有自己的页面；关闭时只关闭该页面
+ * - prefetch 在同一上下文新开页面并只发起导航（不等待），导航到同一 URL 时换用该页面：
+ *   事件监听迁移到新页面、选择器缓存按新页面重建（保留统计），旧页面关闭
+ * - download 数据写两次：浏览器先写入 Playwright 的临时文件，完成后再按块读出复制到目标路径。
+ *   Playwright 没有“下载完成”事件，等待浏览器写完借助页面 CDP 会话的 Page.downloadProgress 分片进行，
+ *   片间释放锁并检查取消、大小与时间上限，超限时 download.cancel()；收不到进度事件时退回到
+ *   createReadStream 内的阻塞等待（期间持有驱动锁），上限只能在之后的逐块复制中检查
+ */
+public class PlaywrightBrowserSession implements BrowserSession {
+
+    private static final long WAIT_SLICE_MS = 50;
+
+    /**
+     * trial 点击（只检查可操作性：稳定、可用、能接收事件）每片的超时，需容纳滚动入视口与两帧稳定检测
+     */
+    private static final long ACTION_SLICE_MS = 250;
+
+    /**
+     * 可操作性已分片确认后，真正执行点击/填写的驱动调用超时
+     */
+    private static final double ACTION_TIMEOUT_MS = 1000;
+
+    /**
+     * 截图调用的超时：字体已分片等待过，剩下的是实际绘制与编码
+     */
+    private static final double SCREENSHOT_TIMEOUT_MS = 10_000;
+
+    /**
+     * 在页面内启动脚本但不等待其 Promise：返回状态对象，由 Java 侧分片轮询 done
+     */
+    private static final String ASYNC_EVALUATE = "fn => { const s = {done: false};"
+            + " Promise.resolve().then(() => fn()).then("
+            + "  v => { s.value = v; s.done = true; },"
+            + "  e => { s.error = e && e.message ? e.message : String(e); s.done = true; });"
+            + " return s; }";
+
+    private static final Pattern FUNCTION_LIKE = Pattern.compile(
+            "^\\s*(async\\s+)?(function\\b|\\([^)]*\\)\\s*=>|[A-Za-z_$][\\w$]*\\s*=>)");
+
+    /**
+     * 下载时每次从驱动读取的字节数：每块一次驱动往返，块与块之间释放锁
+     */
+    private static final int DOWNLOAD_CHUNK_BYTES = 256 * 1024;
+
+    /**
+     * 下载开始后等待首个 CDP 进度事件的时长，超过即视为拿不到进度，退回阻塞等待
+     */
+    private static final long DOWNLOAD_PROGRESS_GRACE_MS = 1000;
+
+    /**
+     * 元素位置/尺寸隔两帧（requestAnimationFrame）不变即视为稳定；每次轮询自行比较前后两帧，不在页面上留全局状态
+     */
+    private static final String STABLE_SCRIPT = "sel => new Promise(resolve => {"
+            + " const box = () => { const el = document.querySelector(sel); if (!el) return null;"
+            + "  const r = el.getBoundingClientRect(); return [r.x, r.y, r.width, r.height].join(','); };"
+            + " const before = box(); if (before === null) return resolve(false);"
+            + " requestAnimationFrame(() => requestAnimationFrame(() => resolve(box() === before))); })";
+
+    /**
+     * 合并执行 DOM 操作：FILL 通过原生 value setter 赋值（兼容 React 等受控组件）并派发 input / change，
+     * CLICK 调用 element.click()；元素缺失、不可见或不可编辑时停止并返回原因
+     */
+    private static final String FUSED_SCRIPT = "actions => {"
+            + " const NOT_FILLABLE = ['checkbox','radio','file','submit','button','image','reset','range','color'];"
+            + " for (let i = 0; i < actions.length; i++) {"
+            + "  const a = actions[i]; const el = document.querySelector(a.selector);"
+            + "  if (!el) return {done: i, error: 'not-found'};"
+            + "  if (el.getClientRects().length === 0) return {done: i, error: 'not-visible'};"
+            + "  if (a.kind === 'CLICK') { el.click(); continue; }"
+            + "  if (el.disabled || el.readOnly) return {done: i, error: 'not-editable'};"
+            + "  let proto = null;"
+            + "  if (el instanceof HTMLTextAreaElement) proto = HTMLTextAreaElement.prototype;"
+            + "  else if (el instanceof HTMLInputElement && !NOT_FILLABLE.includes(el.type)) proto = HTMLInputElement.prototype;"
+            + "  if (proto) { el.focus(); Object.getOwnPropertyDescriptor(proto, 'value').set.call(el, a.value); }"
+            + "  else if (el.isContentEditable) { el.focus(); el.textContent = a.value; }"
+            + "  else return {done: i, error: 'not-fillable'};"
+            + "  el.dispatchEvent(new Event('input', {bubbles: true}));"
+            + "  el.dispatchEvent(new Event('change', {bubbles: true}));"
+            + " }"
+            + " return {done: actions.length, error: null}; }";
+
+    /**
+     * 批量提取：对匹配的行元素按块取字段值，只把本块结果序列化回 Java
+     */
+    private static final String EXTRACT_SCRIPT = "(rows, a) => {"
+            + " const end = Math.min(rows.length, a.offset + a.limit); const out = [];"
+            + " for (let i = a.offset; i < end; i++) {"
+            + "  const row = rows[i];"
+            + "  out.push(a.fields.map(f => {"
+            + "   const el = f.selector ? row.querySelector(f.selector) : row;"
+            + "   if (!el) return null;"
+            + "   if (!f.attribute) return (el.textContent || '').trim();"
+            + "   if (f.attribute === 'html') return el.innerHTML;"
+            + "   if (f.attribute === 'value' && 'value' in el) return el.value == null ? null : String(el.value);"
+            + "   return el.getAttribute(f.attribute); }));"
+            + " }"
+            + " return {total: rows.length, rows: out}; }";
+
+    private final ReentrantLock driverLock;
+    private final PooledContext pooled;
+    /**
+     * 当前页面；切换到预加载页面时替换，只在持有 driverLock 时修改
+     */
+    private volatile Page page;
+    /**
+     * openPage 打开的子会话：不归还上下文、不卸载路由
+     */
+    private final boolean child;
+    private final SessionOptions options;
+    private final NetworkInterceptor interceptor;
+    private final Consumer<PooledContext> releaser;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final SelectorStatsRegistry selectorStats;
+
+    /**
+     * 预加载中的页面，只由任务线程访问
+     */
+    private Prefetch prefetched;
+
+    /**
+     * 会话内的选择器缓存与本次执行的解析统计，只由任务线程访问
+     */
+    private final Map<String, CachedSelector> selectors = new LinkedHashMap<>();
+
+    /**
+     * 页面崩溃或浏览器断开时由 Playwright 事件置位
+     */
+    private volatile boolean crashed;
+    private final Consumer<Page> crashHandler = page -> crashed = true;
+    private final Consumer<Browser> disconnectHandler = browser -> crashed = true;
+
+    /**
+     * 主框架的导航计数，NAVIGATION 就绪条件据此判断点击/脚本是否触发了跳转
+     */
+    private final NavigationTracker navigation = new NavigationTracker();
+    private final Consumer<Request> navigationRequestHandler = request -> {
+        if (request.isNavigationRequest() && request.frame().parentFrame() == null) {
+            navigation.onStarted();
+        }
+    };
+    private final Consumer<Frame> frameNavigatedHandler = frame -> {
+        if (frame.parentFrame() == null) {
+            navigation.onCommitted();
+        }
+    };
+
+    /**
+     * 失败追踪的请求计数，仅 SessionOptions.trace 开启时注册监听
+     */
+    private final AtomicLong finishedRequests = new AtomicLong();
+    private final AtomicLong failedRequests = new AtomicLong();
+    private volatile String lastFailedRequest;
+    private final Consumer<Request> requestFinishedHandler = request -> finishedRequests.incrementAndGet();
+    private final Consumer<Request> requestFailedHandler = request -> {
+        failedRequests.incrementAndGet();
+        lastFailedRequest = request.method() + " " + request.url() + ": " + request.failure();
+    };
+
+    /**
+     * 须在持有 driverLock 时创建（注册事件监听）
+     */
+    PlaywrightBrowserSession(ReentrantLock driverLock, PooledContext pooled, SessionOptions options,
+                             NetworkInterceptor interceptor, Consumer<PooledContext> releaser,
+                             SelectorStatsRegistry selectorStats) {
+        this(driverLock, pooled, pooled.getPage(), false, options, interceptor, releaser, selectorStats);
+    }
+
+    private PlaywrightBrowserSession(ReentrantLock driverLock, PooledContext pooled, Page page, boolean child,
+                                     SessionOptions options, NetworkInterceptor interceptor,
+                                     Consumer<PooledContext> releaser, SelectorStatsRegistry selectorStats) {
+        this.driverLock = driverLock;
+        this.selectorStats = selectorStats;
+        this.pooled = pooled;
+        this.page = page;
+        this.child = child;
+        this.options = options;
+        this.interceptor = interceptor;
+        this.releaser = releaser;
+
+        page.onCrash(crashHandler);
+        page.onRequest(navigationRequestHandler);
+        page.onFrameNavigated(frameNavigatedHandler);
+        if (options.isTrace()) {
+            page.onRequestFinished(requestFinishedHandler);
+            page.onRequestFailed(requestFailedHandler);
+        }
+        Browser browser = pooled.getContext().browser();
+        if (browser != null) {
+            browser.onDisconnected(disconnectHandler);
+        }
+    }
+
+    @Override
+    public void navigateTo(String url, TaskStep.NavigationWait wait, String selector, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        Prefetch ready = prefetched;
+        prefetched = null;
+        boolean adopted = false;
+        if (ready != null) {
+            try {
+                adopted = ready.url().equals(url) && adopt(ready.page(), timeoutMs);
+            } finally {
+                if (!adopted) discard(ready.page());
+            }
+        }
+        if (!adopted) {
+            run(page -> page.navigate(url, new Page.NavigateOptions()
+                    .setWaitUntil(WaitUntilState.COMMIT)
+                    .setTimeout(timeoutMs)));
+        }
+
+        long remainingMs = Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+        switch (wait == null ? TaskStep.NavigationWait.LOAD : wait) {
+            case COMMIT -> {
+                // 响应已提交即返回
+            }
+            case DOM_CONTENT_LOADED -> awaitLoadState(LoadState.DOMCONTENTLOADED, remainingMs);
+            case NETWORK_IDLE -> awaitLoadState(LoadState.NETWORKIDLE, remainingMs);
+            case SELECTOR -> resolve(selector, remainingMs);
+            default -> awaitLoadState(LoadState.LOAD, remainingMs);
+        }
+    }
+
+    @Override
+    public void prefetch(String url) {
+        Prefetch previous = prefetched;
+        prefetched = null;
+        if (previous != null) {
+            discard(previous.page());
+        }
+        // 通过 location.href 发起导航，不等待响应，驱动调用立即返回
+        Page hidden = call(current -> {
+            Page created = pooled.getContext().newPage();
+            try {
+                created.evaluate("url => { location.href = url; }", url);
+            } catch (PlaywrightException e) {
+                created.close();
+                throw e;
+            }
+            // 有头模式下新页面会成为前台标签，切回当前页面
+            current.bringToFront();
+            return created;
+        });
+        prefetched = new Prefetch(url, hidden);
+    }
+
+    @Override
+    public void click(String selector) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.DEFAULT_TIMEOUT);
+        CachedSelector cached = resolve(selector, Constants.DEFAULT_TIMEOUT);
+        // trial 点击不会真正点击，超时重试没有副作用
+        awaitSliced(remainingMs(deadline), ACTION_SLICE_MS, (page, slice) ->
+                cached.first().click(new Locator.ClickOptions().setTrial(true).setTimeout(slice)));
+        navigation.mark();
+        run(page -> cached.first().click(new Locator.ClickOptions().setTimeout(ACTION_TIMEOUT_MS)));
+    }
+
+    @Override
+    public void fill(String selector, String value) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Constants.DEFAULT_TIMEOUT);
+        CachedSelector cached = resolve(selector, Constants.DEFAULT_TIMEOUT);
+        while (!call(page -> cached.first().isEditable())) {
+            if (System.nanoTime() >= deadline) {
+                throw new KKException("元素不可编辑 (" + Constants.DEFAULT_TIMEOUT + "ms): " + selector);
+            }
+            pause(WAIT_SLICE_MS);
+        }
+        run(page -> cached.first().fill(value, new Locator.FillOptions().setTimeout(ACTION_TIMEOUT_MS)));
+    }
+
+    @Override
+    public String getText(String selector) {
+        CachedSelector cached = locator(selector);
+        return call(page -> cached.first().textContent());
+    }
+
+    @Override
+    public void screenshot(String path) {
+        ExecutionProfile profile = options.getProfile();
+        Page.ScreenshotOptions screenshotOptions = new Page.ScreenshotOptions()
+                .setPath(Paths.get(path))
+                .setFullPage(profile.isScreenshotFullPage());
+        if ("jpeg".equalsIgnoreCase(profile.getScreenshotType())) {
+            screenshotOptions.setType(ScreenshotType.JPEG).setQuality(profile.getScreenshotQuality());
+        }
+        awaitFonts();
+        run(page -> page.screenshot(screenshotOptions.setTimeout(SCREENSHOT_TIMEOUT_MS)));
+    }
+
+    @Override
+    public byte[] captureScreenshot(ScreenshotSpec spec) {
+        Page.ScreenshotOptions screenshotOptions = new Page.ScreenshotOptions()
+                .setFullPage(spec.isFullPage())
+                .setScale(spec.isCssScale() ? ScreenshotScale.CSS : ScreenshotScale.DEVICE);
+        if (spec.isJpeg()) {
+            screenshotOptions.setType(ScreenshotType.JPEG).setQuality(spec.getQuality());
+        }
+        double[] clip = spec.getClip();
+        if (clip != null) {
+            screenshotOptions.setClip(clip[0], clip[1], clip[2], clip[3]);
+        }
+        awaitFonts();
+        return call(page -> page.screenshot(screenshotOptions.setTimeout(SCREENSHOT_TIMEOUT_MS)));
+    }
+
+    /**
+     * 脚本在页面内启动后分片等待其 Promise 完成，最长 DEFAULT_TIMEOUT；
+     * 无法包装为表达式的脚本（语句序列）退回直接 evaluate，其中的异步等待期间持有锁
+     */
+    @Override
+    public Object evaluateScript(String script) {
+        String fn = FUNCTION_LIKE.matcher(script).find() ? script : "() => (\n" + script + "\n)";
+        JSHandle state;
+        navigation.mark();
+        try {
+            // 以逗号表达式开头，避免整体被 Playwright 当作函数调用
+            state = call(page -> page.evaluateHandle("0, (" + ASYNC_EVALUATE + ")(" + fn + "\n)"));
+        } catch (PlaywrightException e) {
+            if (e.getMessage() == null || !e.getMessage().contains("SyntaxError")) throw e;
+            return call(page -> page.evaluate(script));
+        }
+        try {
+            try {
+                awaitSliced(Constants.DEFAULT_TIMEOUT, (page, slice) -> page.waitForFunction("s => s.done", state,
+                        new Page.WaitForFunctionOptions().setTimeout(slice)));
+            } catch (TimeoutError e) {
+                throw new KKException("脚本执行超时 (" + Constants.DEFAULT_TIMEOUT + "ms)");
+            }
+            return call(page -> state.evaluate("s => { if ('error' in s) throw new Error(s.error); return s.value; }"));
+        } finally {
+            driverLock.lock();
+            try {
+                state.dispose();
+            } catch (PlaywrightException ignored) {
+                // 页面已关闭
+            } finally {
+                driverLock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void waitForSelector(String selector, int timeout) {
+        resolve(selector, timeout);
+    }
+
+    @Override
+    public DomAction.Result executeFused(List<DomAction> actions) {
+        if (actions.isEmpty()) {
+            return new DomAction.Result(0, null);
+        }
+        waitForSelector(actions.get(0).selector(), Constants.DEFAULT_TIMEOUT);
+
+        List<Map<String, Object>> arg = actions.stream().map(action -> {
+            Map<String, Object> m = new LinkedHashMap<>();
+            m.put("kind", action.kind().name());
+            m.put("selector", action.selector());
+            m.put("value", action.value() == null ? "" : action.value());
+            return m;
+        }).toList();
+        navigation.mark();
+        Object raw = call(page -> page.evaluate(FUSED_SCRIPT, arg));
+
+        if (raw instanceof Map<?, ?> result && result.get("done") instanceof Number done) {
+            Object error = result.get("error");
+            return new DomAction.Result(done.intValue(), error == null ? null : error.toString());
+        }
+        return new DomAction.Result(0, "unexpected-result");
+    }
+
+    @Override
+    public ExtractSpec.Chunk extractRows(String rowSelector, List<ExtractSpec.Field> fields, int offset, int limit) {
+        Map<String, Object> arg = new LinkedHashMap<>();
+        arg.put("offset", offset);
+        arg.put("limit", limit);
+        arg.put("fields", fields.stream()
+                .map(f -> {
+                    Map<String, Object> m = new LinkedHashMap<>();
+                    m.put("selector", f.selector());
+                    m.put("attribute", f.attribute());
+                    return m;
+                })
+                .toList());
+        Object raw = call(page -> page.locator(rowSelector).evaluateAll(EXTRACT_SCRIPT, arg));
+
+        if (!(raw instanceof Map<?, ?> result) || !(result.get("total") instanceof Number total)) {
+            throw new KKException("提取结果格式错误: " + rowSelector);
+        }
+        List<List<String>> rows = new ArrayList<>();
+        if (result.get("rows") instanceof List<?> list) {
+            for (Object item : list) {
+                List<String> row = new ArrayList<>(fields.size());
+                if (item instanceof List<?> values) {
+                    for (Object value : values) {
+                        row.add(value == null ? null : value.toString());
+                    }
+                }
+                rows.add(row);
+            }
+        }
+        return new ExtractSpec.Chunk(total.intValue(), rows);
+    }
+
+    @Override
+    public DownloadRecord download(String selector, String target, DownloadSpec spec) {
+        long begin = System.nanoTime();
+        long deadline = begin + TimeUnit.MILLISECONDS.toNanos(spec.timeoutMs());
+        CachedSelector cached = resolve(selector, spec.timeoutMs());
+        // 与 click() 相同：可点击等待用 trial 分片进行，真正的点击只给很短的超时，不在持锁时自动等待
+        awaitSliced(remainingMs(deadline), ACTION_SLICE_MS, (page, slice) ->
+                cached.first().click(new Locator.ClickOptions().setTrial(true).setTimeout(slice)));
+
+        // 点击前挂上进度监听，点击后分片等待下载事件，片与片之间释放锁
+        DownloadProgress progress = call(DownloadProgress::attach);
+        AtomicReference<Download> started = new AtomicReference<>();
+        Consumer<Download> handler = started::set;
+        try {
+            run(page -> {
+                page.onDownload(handler);
+                cached.first().click(new Locator.ClickOptions().setTimeout(ACTION_TIMEOUT_MS));
+            });
+        } catch (RuntimeException e) {
+            offDownload(handler);
+            progress.detach(driverLock);
+            throw e;
+        }
+        try {
+            awaitSliced(remainingMs(deadline), (page, slice) -> page.waitForCondition(() -> started.get() != null,
+                    new Page.WaitForConditionOptions().setTimeout(slice)));
+        } catch (TimeoutError e) {
+            progress.detach(driverLock);
+            throw new KKException("点击后未开始下载 (" + spec.timeoutMs() + "ms): " + selector);
+        } catch (RuntimeException e) {
+            progress.detach(driverLock);
+            throw e;
+        } finally {
+            offDownload(handler);
+        }
+
+        Download download = started.get();
+        String suggested;
+        String url;
+        try {
+            suggested = call(page -> download.suggestedFilename());
+            url = call(page -> download.url());
+            awaitDownload(download, progress, spec, deadline, url);
+        } catch (RuntimeException e) {
+            cancelQuietly(download);
+            throw e;
+        } finally {
+            progress.detach(driverLock);
+        }
+        Path file = resolveTarget(target, suggested);
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        MessageDigest digest = spec.newDigest();
+        long bytes = 0;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            // 浏览器已写完临时文件时立即返回流（收不到进度事件时在此阻塞等待）；下载失败时为 null
+            InputStream stream = call(page -> download.createReadStream());
+            if (stream == null) {
+                throw new KKException("下载失败: " + call(page -> download.failure()));
+            }
+            InputStream in = digest == null ? stream : new DigestInputStream(stream, digest);
+            try (OutputStream out = Files.newOutputStream(part)) {
+                byte[] buffer = new byte[DOWNLOAD_CHUNK_BYTES];
+                int n;
+                while ((n = read(in, buffer)) >= 0) {
+                    bytes += n;
+                    if (spec.maxBytes() > 0 && bytes > spec.maxBytes()) {
+                        throw new KKException("下载超过大小上限 " + spec.maxBytes() + " 字节: " + url);
+                    }
+                    if (System.nanoTime() > deadline) {
+                        throw new KKException("下载超时 (" + spec.timeoutMs() + "ms，已写入 " + bytes + " 字节): " + url);
+                    }
+                    out.write(buffer, 0, n);
+                }
+            } finally {
+                // 关闭流同样是一次驱动调用
+                driverLock.lock();
+                try {
+                    in.close();
+                } catch (IOException | PlaywrightException ignored) {
+                    // 浏览器已断开
+                } finally {
+                    driverLock.unlock();
+                }
+            }
+            try {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(part, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            throw new KKException("写入下载文件失败: " + file + " (" + e.getMessage() + ")", e);
+        } finally {
+            try {
+                Files.deleteIfExists(part);
+            } catch (IOException ignored) {
+                // 残留的 .part 不影响结果
+            }
+            // 释放 Playwright 的临时文件
+            driverLock.lock();
+            try {
+                download.delete();
+            } catch (PlaywrightException ignored) {
+                // 浏览器已断开
+            } finally {
+                driverLock.unlock();
+            }
+        }
+
+        long nanos = System.nanoTime() - begin;
+        return new DownloadRecord()
+                .setPath(file.toString())
+                .setUrl(url)
+                .setSuggestedFilename(suggested)
+                .setBytes(bytes)
+                .setDurationNanos(nanos)
+                .setBytesPerSecond(nanos <= 0 ? 0 : bytes * 1_000_000_000L / nanos)
+                .setAlgorithm(digest == null ? DownloadSpec.NO_CHECKSUM : digest.getAlgorithm())
+                .setChecksum(digest == null ? null : HexFormat.of().formatHex(digest.digest()));
+    }
+
+    @Override
+    public boolean awaitReadiness(TaskStep.Readiness readiness, String target, long timeoutMs) {
+        try {
+            switch (readiness) {
+                case NAVIGATION -> {
+                    if (!awaitNavigation(timeoutMs)) return false;
+                }
+                case LOAD -> awaitLoadState(LoadState.LOAD, timeoutMs);
+                case DOM_CONTENT_LOADED -> awaitLoadState(LoadState.DOMCONTENTLOADED, timeoutMs);
+                case NETWORK_IDLE -> awaitLoadState(LoadState.NETWORKIDLE, timeoutMs);
+                case SELECTOR_VISIBLE -> awaitSliced(timeoutMs, (page, slice) ->
+                        page.waitForSelector(target, new Page.WaitForSelectorOptions()
+                                .setState(WaitForSelectorState.VISIBLE)
+                                .setTimeout(slice)));
+                case SELECTOR_STABLE -> awaitSliced(timeoutMs, (page, slice) ->
+                        page.waitForFunction(STABLE_SCRIPT, target, new Page.WaitForFunctionOptions().setTimeout(slice)));
+                case PREDICATE -> awaitSliced(timeoutMs, (page, slice) ->
+                        page.waitForFunction(target, null, new Page.WaitForFunctionOptions().setTimeout(slice)));
+                default -> {
+                    // NONE / AUTO：无需等待
+                }
+            }
+            return true;
+        } catch (TimeoutError e) {
+            return false;
+        }
+    }
+
+    @Override
+    public List<SelectorTiming> selectorTimings() {
+        return selectors.values().stream()
+                .map(CachedSelector::timing)
+                .filter(timing -> timing.getCalls() > 0)
+                .map(timing -> new SelectorTiming().setSelector(timing.getSelector()).merge(timing))
+                .toList();
+    }
+
+    @Override
+    public NetworkStats networkStats() {
+        return interceptor == null ? new NetworkStats() : interceptor.stats();
+    }
+
+    @Override
+    public String currentUrl() {
+        return call(Page::url);
+    }
+
+    @Override
+    public PageTrace traceSnapshot(int maxDomChars) {
+        return call(page -> {
+            String dom = null;
+            if (maxDomChars > 0) {
+                dom = page.content();
+                if (dom.length() > maxDomChars) {
+                    dom = dom.substring(0, maxDomChars);
+                }
+            }
+            return new PageTrace(page.url(), dom, finishedRequests.get(), failedRequests.get(), lastFailedRequest);
+        });
+    }
+
+    @Override
+    public BrowserSession openPage(CancellationToken cancellation) {
+        SessionOptions childOptions = options.copy().setCancellation(cancellation);
+        // 路由安装在上下文上，新页面同样生效
+        return call(current -> new PlaywrightBrowserSession(driverLock, pooled, pooled.getContext().newPage(), true,
+                childOptions, interceptor, releaser, selectorStats));
+    }
+
+    @Override
+    public SessionCheckpoint checkpoint(int nextStep) {
+        return call(page -> new SessionCheckpoint(nextStep, page.url(), pooled.getContext().storageState()));
+    }
+
+    @Override
+    public boolean isCrashed() {
+        if (closed.get()) return false;
+        Browser browser = pooled.getContext().browser();
+        return crashed || browser == null || !browser.isConnected() || page.isClosed();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed.get() && !page.isClosed();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            Prefetch pending = prefetched;
+            prefetched = null;
+            if (pending != null) {
+                discard(pending.page());
+            }
+            driverLock.lock();
+            try {
+                // 监听与路由属于本任务，归还前卸载，避免影响下一个借用者
+                try {
+                    page.offCrash(crashHandler);
+                    page.offRequest(navigationRequestHandler);
+                    page.offFrameNavigated(frameNavigatedHandler);
+                    if (options.isTrace()) {
+                        page.offRequestFinished(requestFinishedHandler);
+                        page.offRequestFailed(requestFailedHandler);
+                    }
+                    Browser browser = pooled.getContext().browser();
+                    if (browser != null) {
+                        browser.offDisconnected(disconnectHandler);
+                    }
+                } catch (PlaywrightException ignored) {
+                    // 上下文已失效，由池负责丢弃
+                }
+                if (child) {
+                    // 子会话只关闭自己的页面，上下文与路由仍归主会话
+                    try {
+                        page.close();
+                    } catch (PlaywrightException ignored) {
+                        // 上下文已失效，页面随之关闭
+                    }
+                    return;
+                }
+                if (interceptor != null) {
+                    try {
+                        interceptor.uninstall(pooled.getContext());
+                    } catch (PlaywrightException ignored) {
+                        // 上下文已失效，由池负责丢弃
+                    }
+                }
+                releaser.accept(pooled);
+            } finally {
+                driverLock.unlock();
+            }
+        }
+    }
+
+    Page getPage() {
+        return page;
+    }
+
+    /**
+     * 预加载的页面及其 URL
+     */
+    private record Prefetch(String url, Page page) {
+    }
+
+    /**
+     * 等待预加载页面提交导航后换用；仍停留在 about:blank 或为错误页（DNS 失败等）时返回 false，由调用方重新导航
+     */
+    private boolean adopt(Page hidden, long timeoutMs) {
+        try {
+            awaitSliced(timeoutMs, (current, slice) -> hidden.waitForURL(
+                    target -> !target.startsWith("about:"),
+                    new Page.WaitForURLOptions().setWaitUntil(WaitUntilState.COMMIT).setTimeout(slice)));
+        } catch (PlaywrightException e) {
+            // 含等待超时（TimeoutError）
+            return false;
+        }
+        return call(old -> {
+            if (hidden.isClosed() || hidden.url().startsWith("chrome-error:")) {
+                return false;
+            }
+            try {
+                old.offCrash(crashHandler);
+                old.offRequest(navigationRequestHandler);
+                old.offFrameNavigated(frameNavigatedHandler);
+                if (options.isTrace()) {
+                    old.offRequestFinished(requestFinishedHandler);
+                    old.offRequestFailed(requestFailedHandler);
+                }
+            } catch (PlaywrightException ignored) {
+                // 旧页面已崩溃或关闭
+            }
+            hidden.onCrash(crashHandler);
+            hidden.onRequest(navigationRequestHandler);
+            hidden.onFrameNavigated(frameNavigatedHandler);
+            if (options.isTrace()) {
+                hidden.onRequestFinished(requestFinishedHandler);
+                hidden.onRequestFailed(requestFailedHandler);
+            }
+            page = hidden;
+            if (!child) {
+                pooled.setPage(hidden);
+            }
+            // Locator 绑定页面，按新页面重建，解析统计保留
+            selectors.replaceAll((selector, cached) -> {
+                Locator all = hidden.locator(selector);
+                return new CachedSelector(all, all.first(), cached.timing());
+            });
+            hidden.bringToFront();
+            try {
+                old.close();
+            } catch (PlaywrightException ignored) {
+                // 旧页面已关闭
+            }
+            return true;
+        });
+    }
+
+    private void offDownload(Consumer<Download> handler) {
+        driverLock.lock();
+        try {
+            page.offDownload(handler);
+        } catch (PlaywrightException ignored) {
+            // 页面已关闭
+        } finally {
+            driverLock.unlock();
+        }
+    }
+
+    /**
+     * 以分隔符结尾或已存在的目录：拼接浏览器建议的文件名（去掉路径部分，防止写到目录之外）
+     */
+    private static Path resolveTarget(String target, String suggested) {
+        Path path = Paths.get(target);
+        if (target.endsWith("/") || target.endsWith("\\") || Files.isDirectory(path)) {
+            Path name = suggested == null || suggested.isBlank() ? null : Paths.get(suggested).getFileName();
+            return path.resolve(name == null ? "download" : name.toString());
+        }
+        return path;
+    }
+
+    /**
+     * 分片等待浏览器写完下载，片间检查取消、大小与时间上限；超限时抛出，由调用方取消下载
+     */
+    private void awaitDownload(Download download, DownloadProgress progress, DownloadSpec spec,
+                               long deadline, String url) {
+        long graceDeadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DOWNLOAD_PROGRESS_GRACE_MS);
+        while (!progress.finished()) {
+            if (!progress.seen() && System.nanoTime() > graceDeadline) {
+                // 拿不到进度事件（非 Chromium 或 CDP 不可用），退回 createReadStream 的阻塞等待
+                return;
+            }
+            long received = progress.received();
+            if (spec.maxBytes() > 0 && received > spec.maxBytes()) {
+                throw new KKException("下载超过大小上限 " + spec.maxBytes() + " 字节: " + url);
+            }
+            if (System.nanoTime() > deadline) {
+                throw new KKException("下载超时 (" + spec.timeoutMs() + "ms，已接收 " + received + " 字节): " + url);
+            }
+            try {
+                run(page -> page.waitForCondition(progress::finished,
+                        new Page.WaitForConditionOptions().setTimeout(WAIT_SLICE_MS)));
+            } catch (TimeoutError ignored) {
+                // 下一片
+            }
+        }
+        if (progress.canceled()) {
+            throw new KKException("下载被浏览器取消: " + url);
+        }
+    }
+
+    private void cancelQuietly(Download download) {
+        driverLock.lock();
+        try {
+            download.cancel();
+            // 取消后立即结束，顺带释放已写入的临时文件
+            download.delete();
+        } catch (PlaywrightException ignored) {
+            // 已结束或浏览器已断开
+        } finally {
+            driverLock.unlock();
+        }
+    }
+
+    /**
+     * 页面 CDP 会话上的下载进度（Chromium 的 Page.downloadWillBegin / Page.downloadProgress），
+     * 只跟踪点击后开始的第一个下载；事件在驱动调用（如 waitForCondition）期间分发
+     */
+    private static final class DownloadProgress {
+
+        private static final DownloadProgress NONE = new DownloadProgress(null);
+
+        private final CDPSession cdp;
+        private volatile String guid;
+        private volatile long received;
+        private volatile String state;
+
+        private DownloadProgress(CDPSession cdp) {
+            this.cdp = cdp;
+        }
+
+        /**
+         * 在持有驱动锁时调用；CDP 不可用时返回不产生事件的实例
+         */
+        static DownloadProgress attach(Page page) {
+            try {
+                CDPSession cdp = page.context().newCDPSession(page);
+                DownloadProgress progress = new DownloadProgress(cdp);
+                cdp.on("Page.downloadWillBegin", event -> {
+                    if (progress.guid == null) progress.guid = event.get("guid").getAsString();
+                });
+                cdp.on("Page.downloadProgress", event -> {
+                    if (!event.get("guid").getAsString().equals(progress.guid)) return;
+                    progress.received = event.get("receivedBytes").getAsLong();
+                    progress.state = event.get("state").getAsString();
+                });
+                cdp.send("Page.enable");
+                return progress;
+            } catch (PlaywrightException e) {
+                return NONE;
+            }
+        }
+
+        boolean seen() {
+            return guid != null;
+        }
+
+        boolean finished() {
+            return "completed".equals(state) || "canceled".equals(state);
+        }
+
+        boolean canceled() {
+            return "canceled".equals(state);
+        }
+
+        long received() {
+            return received;
+        }
+
+        void detach(ReentrantLock driverLock) {
+            if (cdp == null) return;
+            driverLock.lock();
+            try {
+                cdp.detach();
+            } catch (PlaywrightException ignored) {
+                // 页面已关闭
+            } finally {
+                driverLock.unlock();
+            }
+        }
+    }
+
+    private int read(InputStream in, byte[] buffer) {
+        return call(page -> {
+            try {
+                return in.read(buffer);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static long remainingMs(long deadlineNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * 关闭不再使用的预加载页面（失败不影响任务）
+     */
+    private void discard(Page hidden) {
+        driverLock.lock();
+        try {
+            if (!hidden.isClosed()) {
+                hidden.close();
+            }
+        } catch (PlaywrightException ignored) {
+            // 上下文已失效，页面随之关闭
+        } finally {
+            driverLock.unlock();
+        }
+    }
+
+    /**
+     * 等待元素出现（可见）并记录解析统计；首次解析成功时额外取一次匹配数
+     */
+    private CachedSelector resolve(String selector, long timeoutMs) {
+        CachedSelector cached = locator(selector);
+        int[] slices = {0};
+        boolean success = false;
+        long begin = System.nanoTime();
+        try {
+            awaitSliced(timeoutMs, (page, slice) -> {
+                slices[0]++;
+                cached.first().waitFor(new Locator.WaitForOptions().setTimeout(slice));
+            });
+            success = true;
+        } finally {
+            long nanos = System.nanoTime() - begin;
+            int retries = Math.max(0, slices[0] - 1);
+            SelectorTiming timing = cached.timing();
+            if (success && timing.getMatchCount() < 0) {
+                timing.setMatchCount(call(page -> cached.all().count()));
+            }
+            timing.setCalls(timing.getCalls() + 1)
+                    .setRetries(timing.getRetries() + retries)
+                    .setFailures(timing.getFailures() + (success ? 0 : 1))
+                    .setTotalNanos(timing.getTotalNanos() + nanos)
+                    .setMaxNanos(Math.max(timing.getMaxNanos(), nanos));
+            if (selectorStats != null) {
+                selectorStats.record(selector, nanos, retries, success, success ? timing.getMatchCount() : -1);
+            }
+        }
+        return cached;
+    }
+
+    private CachedSelector locator(String selector) {
+        CachedSelector cached = selectors.get(selector);
+        if (cached == null) {
+            cached = call(page -> {
+                Locator all = page.locator(selector);
+                return new CachedSelector(all, all.first(), new SelectorTiming().setSelector(selector));
+            });
+            selectors.put(selector, cached);
+        }
+        return cached;
+    }
+
+    /**
+     * 会话内缓存的选择器：全部匹配（计数用）、第一个匹配（操作用）及本次执行的统计
+     */
+    private record CachedSelector(Locator all, Locator first, SelectorTiming timing) {
+    }
+
+    /**
+     * 分片等待页面字体加载完成（截图前 Playwright 会在锁内做同样的等待）
+     */
+    private void awaitFonts() {
+        try {
+            awaitSliced(Constants.DEFAULT_TIMEOUT, (page, slice) -> page.waitForFunction(
+                    "() => !document.fonts || document.fonts.status === 'loaded'", null,
+                    new Page.WaitForFunctionOptions().setTimeout(slice)));
+        } catch (TimeoutError ignored) {
+            // 字体迟迟未加载完不阻止截图
+        }
+    }
+
+    private void pause(long millis) {
+        try {
+            options.getCancellation().sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new KKException("等待被中断");
+        }
+    }
+
+    /**
+     * 操作没有触发跳转时只等很短的宽限期即返回；已发起则等到提交，再等新页面 DOMContentLoaded
+     * （提交前当前文档仍是旧页面，此时等 DOMContentLoaded 会立即返回）
+     *
+     * @return 发起后超时仍未提交时返回 false
+     */
+    private boolean awaitNavigation(long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        return switch (navigation.awaitCommit(timeoutMs, this::awaitCondition)) {
+            case NONE -> true;
+            case COMMITTED -> {
+                awaitLoadState(LoadState.DOMCONTENTLOADED, remainingMs(deadline));
+                yield true;
+            }
+            case TIMEOUT -> false;
+        };
+    }
+
+    /**
+     * 分片等待条件成立（waitForCondition 期间分发驱动事件），超时返回 false
+     */
+    private boolean awaitCondition(BooleanSupplier condition, long timeoutMs) {
+        try {
+            awaitSliced(timeoutMs, (page, slice) ->
+                    page.waitForCondition(condition, new Page.WaitForConditionOptions().setTimeout(slice)));
+            return true;
+        } catch (TimeoutError e) {
+            return false;
+        }
+    }
+
+    private void awaitLoadState(LoadState state, long timeoutMs) {
+        awaitSliced(timeoutMs, (page, slice) ->
+                page.waitForLoadState(state, new Page.WaitForLoadStateOptions().setTimeout(slice)));
+    }
+
+    private void run(Consumer<Page> action) {
+        call(page -> {
+            action.accept(page);
+            return null;
+        });
+    }
+
+    private <T> T call(Function<Page, T> action) {
+        options.getCancellation().throwIfCancelled();
+        driverLock.lock();
+        try {
+            if (closed.get()) {
+                throw new KKException("浏览器会话已关闭");
+            }
+            return action.apply(page);
+        } finally {
+            driverLock.unlock();
+        }
+    }
+
+    /**
+     * 分片等待：每片最多 WAIT_SLICE_MS，片超时后释放锁再继续，直到总超时
+     */
+    private void awaitSliced(long timeoutMs, BiConsumer<Page, Double> slice) {
+        awaitSliced(timeoutMs, WAIT_SLICE_MS, slice);
+    }
+
+    private void awaitSliced(long timeoutMs, long sliceMs, BiConsumer<Page, Double> slice) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (true) {
+            long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            double currentMs = Math.max(1, Math.min(sliceMs, remainingMs));
+            try {
+                run(page -> slice.accept(page, currentMs));
+                return;
+            } catch (TimeoutError e) {
+                if (System.nanoTime() >= deadline) {
+                    throw e;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.kk.playwright.service;
+
+import com.kk.common.model.ExecutionProfile;
+import com.kk.core.service.SessionOptions;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Playwright 启动预热
+ *
+ * 说明：
+ * - 由 Application 在 Spring 容器就绪后调用 start()，在独立线程中完成驱动解压/启动与浏览器启动，
+ *   不阻塞 JavaFX 界面与 P2P 的启动
+ * - 按全局默认配置档（或 kk.playwright.warmup.profile）预热，与任务实际使用的池键一致，首个任务直接借用
+ * - 预热期间到达的任务会在驱动锁上等待预热完成，不会重复启动
+ */
+@Slf4j
+@Component
+public class PlaywrightWarmup {
+
+    public enum State {
+        /** 未预热 */
+        COLD,
+        /** 预热中 */
+        WARMING,
+        /** 驱动与浏览器已就绪 */
+        READY,
+        /** 预热失败，首个任务将按原方式延迟初始化 */
+        FAILED
+    }
+
+    @Value("${kk.playwright.warmup.enabled:false}")
+    private boolean enabled;
+
+    @Value("${kk.playwright.warmup.headless:true}")
+    private boolean headless;
+
+    /**
+     * 预热使用的配置档，为空时使用全局默认配置档
+     */
+    @Value("${kk.playwright.warmup.profile:}")
+    private String profile;
+
+    private final PlaywrightBrowserService browserService;
+    private final ExecutionProfileRegistry profileRegistry;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.COLD);
+    private final CountDownLatch done = new CountDownLatch(1);
+    private volatile String error;
+    private volatile long elapsedMs;
+
+    public PlaywrightWarmup(@Lazy PlaywrightBrowserService browserService, ExecutionProfileRegistry profileRegistry) {
+        this.browserService = browserService;
+        this.profileRegistry = profileRegistry;
+    }
+
+    /**
+     * 启动后台预热；未启用或已启动过时直接返回
+     */
+    public void start() {
+        if (!enabled || !state.compareAndSet(State.COLD, State.WARMING)) {
+            return;
+        }
+        Thread.ofPlatform()
+                .name("kk-playwright-warmup")
+                .daemon(true)
+                .start(this::warm);
+    }
+
+    public State getState() {
+        return state.get();
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    /**
+     * 等待预热结束（成功或失败）；未启用预热时立即返回 false
+     */
+    public boolean awaitReady(long timeoutMs) throws InterruptedException {
+        if (state.get() == State.COLD) return false;
+        return done.await(timeoutMs, TimeUnit.MILLISECONDS) && state.get() == State.READY;
+    }
+
+    private void warm() {
+        long begin = System.currentTimeMillis();
+        ExecutionProfile warmProfile = profileRegistry.resolve(profile);
+        log.info("开始预热 Playwright (headless: {}, 配置档: {})", headless, warmProfile.getName());
+        try {
+            browserService.warmUp(new SessionOptions()
+                    .setHeadless(headless)
+                    .setProfile(warmProfile));
+            elapsedMs = System.currentTimeMillis() - begin;
+            state.set(State.READY);
+            log.info("Playwright 预热完成，耗时 {}ms", elapsedMs);
+        } catch (Exception e) {
+            elapsedMs = System.currentTimeMillis() - begin;
+            error = e.getMessage();
+            state.set(State.FAILED);
+            log.warn("Playwright 预热失败，首个任务将延迟初始化: {}", e.getMessage());
+        } finally {
+            done.countDown();
+        }
+    }
+}
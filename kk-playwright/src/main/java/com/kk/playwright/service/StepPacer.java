@@ -0,0 +1,65 @@
+package com.kk.playwright.service;
+
+import com.kk.common.model.TaskStep;
+import com.kk.core.service.BrowserSession;
+import com.kk.core.service.CancellationToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 步骤节奏控制 - 以就绪条件代替固定休眠
+ *
+ * 说明：
+ * - 步骤完成后只等到就绪条件满足，step.delay 仅作为等待上限；超时不视为失败，直接进入下一步
+ * - step.throttle > 0 时保证相邻步骤的开始时间至少间隔 throttle 毫秒（针对有频率限制的站点）
+ */
+@Slf4j
+@Component
+public class StepPacer {
+
+    /**
+     * 解析 AUTO：可能触发页面跳转的步骤等待跳转（操作返回时新页面往往还没开始加载，
+     * 直接等 DOMContentLoaded 会被当前页面立即满足），其余无需等待
+     */
+    public TaskStep.Readiness resolve(TaskStep step) {
+        TaskStep.Readiness readiness = step.getReadiness() == null ? TaskStep.Readiness.AUTO : step.getReadiness();
+        if (readiness != TaskStep.Readiness.AUTO) {
+            return readiness;
+        }
+        return switch (step.getType()) {
+            case CLICK, SCRIPT -> TaskStep.Readiness.NAVIGATION;
+            default -> TaskStep.Readiness.NONE;
+        };
+    }
+
+    /**
+     * 节流：距上一步开始不足 throttle 毫秒则补足；休眠期间任务被停止则立即抛出 TaskCancelledException
+     */
+    public void throttle(TaskStep step, long lastStartNanos, CancellationToken cancellation) throws InterruptedException {
+        if (step.getThrottle() <= 0 || lastStartNanos == 0) return;
+
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastStartNanos);
+        long remaining = step.getThrottle() - elapsedMs;
+        if (remaining > 0) {
+            cancellation.sleep(remaining);
+        }
+    }
+
+    /**
+     * 等待步骤就绪，返回是否在上限内就绪
+     */
+    public boolean awaitReady(BrowserSession session, TaskStep step) {
+        TaskStep.Readiness readiness = resolve(step);
+        if (readiness == TaskStep.Readiness.NONE || step.getDelay() <= 0) {
+            return true;
+        }
+
+        boolean ready = session.awaitReadiness(readiness, step.getReadinessTarget(), step.getDelay());
+        if (!ready) {
+            log.debug("步骤就绪等待超时 ({}ms, {}): {}", step.getDelay(), readiness, step.getDescription());
+        }
+        return ready;
+    }
+}
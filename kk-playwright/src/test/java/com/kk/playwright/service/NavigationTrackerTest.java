@@ -0,0 +1,101 @@
+package com.kk.playwright.service;
+
+import com.kk.common.model.TaskStep;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NavigationTrackerTest {
+
+    /**
+     * 与驱动的 waitForCondition 一样轮询条件，并记录每次请求的等待时长
+     */
+    private final List<Long> requested = new ArrayList<>();
+    private final NavigationTracker.Waiter polling = (condition, timeoutMs) -> {
+        requested.add(timeoutMs);
+        return poll(condition, timeoutMs);
+    };
+
+    @Test
+    void nonNavigatingClickWaitsFarLessThanDelay() {
+        long delay = new TaskStep().getDelay();
+        NavigationTracker tracker = new NavigationTracker();
+        tracker.mark();
+
+        long start = System.nanoTime();
+        NavigationTracker.Outcome outcome = tracker.awaitCommit(delay, polling);
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(NavigationTracker.Outcome.NONE, outcome);
+        assertEquals(List.of(NavigationTracker.GRACE_MS), requested);
+        assertTrue(elapsedMs < delay / 2, "不跳转的点击应只等宽限期，实际 " + elapsedMs + "ms");
+    }
+
+    @Test
+    void navigationSeenDuringActionDoesNotWait() {
+        NavigationTracker tracker = new NavigationTracker();
+        tracker.mark();
+        tracker.onStarted();
+        tracker.onCommitted();
+
+        assertEquals(NavigationTracker.Outcome.COMMITTED, tracker.awaitCommit(500, polling));
+        assertTrue(requested.isEmpty());
+    }
+
+    @Test
+    void asyncNavigationWithinGraceIsAwaited() {
+        NavigationTracker tracker = new NavigationTracker();
+        tracker.mark();
+        CompletableFuture.runAsync(() -> {
+            sleep(20);
+            tracker.onStarted();
+            sleep(150);
+            tracker.onCommitted();
+        });
+
+        assertEquals(NavigationTracker.Outcome.COMMITTED, tracker.awaitCommit(2000, polling));
+    }
+
+    @Test
+    void startedButNeverCommittedTimesOut() {
+        NavigationTracker tracker = new NavigationTracker();
+        tracker.mark();
+        tracker.onStarted();
+
+        assertEquals(NavigationTracker.Outcome.TIMEOUT, tracker.awaitCommit(200, polling));
+    }
+
+    @Test
+    void navigationsBeforeMarkAreIgnored() {
+        NavigationTracker tracker = new NavigationTracker();
+        tracker.onStarted();
+        tracker.onCommitted();
+        tracker.mark();
+
+        assertEquals(NavigationTracker.Outcome.NONE, tracker.awaitCommit(500, polling));
+    }
+
+    private static boolean poll(BooleanSupplier condition, long timeoutMs) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() >= deadline) return false;
+            sleep(5);
+        }
+        return true;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
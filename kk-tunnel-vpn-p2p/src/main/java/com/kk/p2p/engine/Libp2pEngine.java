@@ -6,6 +6,7 @@ import cn.hutool.json.JSONObject;
 import cn.hutool.json.JSONUtil;
 import com.kk.p2p.webrtc.WebRtcDataSession;
 import com.kk.p2p.nat.UpnpIgdPortMapper;
+import com.kk.p2p.task.TaskChannel;
 import com.kk.tunnel.vpn.service.WintunService;
 import io.libp2p.core.Connection;
 import io.libp2p.core.Host;
@@ -73,6 +74,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 
 // route add 10.8.0.3 mask 255.255.255.255 10.8.0.2
@@ -88,6 +90,7 @@ public class Libp2pEngine {
     private static final String PEX_PROTOCOL_ID = "/kk/pex/1.0.0";
     private static final String CHAT_PROTOCOL_ID = "/kk-chat/1.0.0";
     private static final String WEBRTC_SIGNAL_PROTOCOL_ID = "/kk-webrtc-signal/1.0.0";
+    private static final String TASK_PROTOCOL_ID = "/kk-task/1.0.0";
 
     private static final long ADDR_TTL_MS = TimeUnit.HOURS.toMillis(6);
     private static final int MAX_FRAME_SIZE = Integer.getInteger("kk.p2p.maxFrameSize", 1024 * 1024);
@@ -421,6 +424,10 @@ public class Libp2pEngine {
     }
 
 
+    // 入站任务流处理器与来源节点过滤（由 P2pTaskWorker 注册）
+    private volatile Consumer<TaskChannel> taskChannelHandler;
+    private volatile Predicate<String> taskPeerFilter = peerId -> false;
+
     // Chat 消息回调：参数为 (fromPeerId, message)
     private volatile BiConsumer<String, String> chatMessageListener = (peerId, msg) -> {
     };
@@ -506,6 +513,7 @@ public class Libp2pEngine {
                             createPexProtocolBinding(),
                             createWebrtcSignalProtocolBinding(),
                             createChatProtocolBinding(),
+                            createTaskProtocolBinding(),
                             createVpnProtocolBinding()
                     )
                     .listen("/ip4/0.0.0.0/tcp/" + listenPort)
@@ -2340,6 +2348,106 @@ public class Libp2pEngine {
         }
     }
 
+    // -------------------- 分布式任务协议（/kk-task/1.0.0） --------------------
+
+    private ProtocolBinding<TaskChannel> createTaskProtocolBinding() {
+        return new ProtocolBinding<TaskChannel>() {
+            @NotNull
+            @Override
+            public ProtocolDescriptor getProtocolDescriptor() {
+                return new ProtocolDescriptor(TASK_PROTOCOL_ID);
+            }
+
+            @NotNull
+            @Override
+            public CompletableFuture<TaskChannel> initChannel(@NotNull P2PChannel ch, @NotNull String selectedProtocol) {
+                Stream stream = (Stream) ch;
+                String remotePeerId = stream.remotePeerId().toBase58();
+                Consumer<TaskChannel> handler = taskChannelHandler;
+                if (!stream.isInitiator() && (handler == null || !taskPeerFilter.test(remotePeerId))) {
+                    // 未启用工作端或来源节点不在白名单：不挂解帧处理器，任何帧都不会被解析
+                    log.warn("拒绝来自 {} 的任务流", remotePeerId);
+                    stream.close();
+                    return CompletableFuture.failedFuture(new IllegalStateException("task stream rejected: " + remotePeerId));
+                }
+                TaskChannel channel = new TaskChannel(remotePeerId,
+                        bytes -> stream.writeAndFlush(frame(bytes)),
+                        stream::close);
+
+                stream.closeFuture().thenRun(channel::closed);
+                stream.pushHandler(new FramedInboundHandler(MAX_FRAME_SIZE, frame -> {
+                    int readableBytes = frame.readableBytes();
+                    if (readableBytes <= 0) {
+                        return;
+                    }
+                    byte[] data = new byte[readableBytes];
+                    frame.readBytes(data);
+                    channel.deliver(new String(data, StandardCharsets.UTF_8));
+                }, (ctx, cause) -> {
+                    log.warn("任务流异常: {} - {}", remotePeerId, cause.getMessage());
+                    ctx.close();
+                }));
+
+                if (!stream.isInitiator()) {
+                    log.info("收到来自 {} 的任务流", remotePeerId);
+                    handler.accept(channel);
+                }
+                return CompletableFuture.completedFuture(channel);
+            }
+        };
+    }
+
+    /**
+     * 设置入站任务流的处理器；未设置时拒绝入站任务流
+     *
+     * @param peerFilter 允许的来源节点（PeerId Base58），不通过的入站流在解析任何帧之前关闭
+     */
+    public void setTaskChannelHandler(Predicate<String> peerFilter, Consumer<TaskChannel> handler) {
+        this.taskPeerFilter = peerFilter == null ? peerId -> false : peerFilter;
+        this.taskChannelHandler = handler;
+    }
+
+    /**
+     * 单帧上限（字节），接收端超过即关闭流；发送较大的消息前应按此裁剪
+     */
+    public int getMaxFrameSize() {
+        return MAX_FRAME_SIZE;
+    }
+
+    /**
+     * 向指定节点打开一条任务流（直连优先，失败回退 relay，与聊天拨号一致）
+     */
+    public CompletableFuture<TaskChannel> openTaskChannel(String targetPeerIdStr) {
+        if (!running.get()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("engine is not running"));
+        }
+        final PeerId targetPeerId;
+        try {
+            targetPeerId = PeerId.fromBase58(targetPeerIdStr);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("invalid peerId", e));
+        }
+
+        return resolvePeerAddrs(targetPeerIdStr, targetPeerId)
+                .thenCompose(addrs -> {
+                    if (addrs.isEmpty()) {
+                        return CompletableFuture.failedFuture(new IllegalStateException("no known multiaddrs for peer"));
+                    }
+                    return connectFirst(targetPeerId, addrs, 0);
+                })
+                .thenCompose(conn -> {
+                    tryOpenPex(conn);
+                    return conn.muxerSession()
+                            .createStream(createTaskProtocolBinding())
+                            .getController();
+                })
+                .orTimeout(Math.max(1000, dialTotalTimeoutMs), TimeUnit.MILLISECONDS)
+                .exceptionallyCompose(ex -> {
+                    maybeTriggerRelayReserveFallback();
+                    return CompletableFuture.failedFuture(ex);
+                });
+    }
+
     private void onPexAdvert(String remotePeerId, String json) {
         try {
             JSONObject obj = JSONUtil.parseObj(json);
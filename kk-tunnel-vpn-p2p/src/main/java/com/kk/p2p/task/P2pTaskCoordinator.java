@@ -0,0 +1,389 @@
+package com.kk.p2p.task;
+
+import cn.hutool.json.JSONObject;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+import com.kk.p2p.engine.Libp2pEngine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 分布式任务 - 协调端
+ *
+ * 说明：
+ * - 向 kk.p2p.task.workers 中的节点打开 /kk-task/1.0.0 流，按各节点上报的空闲名额派发任务（空闲最多者优先）
+ * - 工作端的执行日志转发给 submit 传入的回调，最终 TaskResult 通过返回的 Future 交付
+ * - 派发被拒、或节点在应答 accepted 之前断开/超时，把任务放回队首改派；同一任务最多派发 maxAttempts 次
+ * - 工作端应答 accepted 后任务可能已产生副作用：此后断开、心跳超时或执行超时都以失败结果结束，不自动改派，
+ *   由调用方决定是否重新提交
+ * - 目前应用内没有调用方，作为库 API 提供，由上层（界面或批量调度）按需接入
+ * - 所有状态变更在 this 上同步，网络回调与心跳线程都可能进入
+ */
+@Slf4j
+@Service
+public class P2pTaskCoordinator {
+
+    /**
+     * 工作节点 PeerId 列表（逗号分隔），为空时不启用协调端
+     */
+    @Value("${kk.p2p.task.workers:}")
+    private String workerPeerIds;
+
+    /**
+     * 单个任务最多派发次数（含首次）
+     */
+    @Value("${kk.p2p.task.maxAttempts:3}")
+    private int maxAttempts;
+
+    /**
+     * 心跳间隔（秒），同时用于重连断开的节点
+     */
+    @Value("${kk.p2p.task.heartbeatSeconds:5}")
+    private int heartbeatSeconds;
+
+    /**
+     * 节点无任何消息超过该时长（秒）视为消失
+     */
+    @Value("${kk.p2p.task.workerTimeoutSeconds:20}")
+    private int workerTimeoutSeconds;
+
+    /**
+     * 单次派发的执行超时（秒），超时后通知工作端取消；已被接受的任务以失败结束，不改派
+     */
+    @Value("${kk.p2p.task.dispatchTimeoutSeconds:600}")
+    private int dispatchTimeoutSeconds;
+
+    private final Libp2pEngine engine;
+
+    private final Map<String, Worker> workers = new LinkedHashMap<>();
+    private final Deque<Dispatch> pending = new ArrayDeque<>();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * 工作节点状态
+     *
+     * @param peerId     节点 PeerId
+     * @param connected  任务流是否已建立
+     * @param freeSlots  最近一次上报的空闲名额
+     * @param maxSlots   最近一次上报的总名额
+     * @param inFlight   已派发到该节点、尚未回传结果的任务数
+     * @param lastSeenMs 最近一次收到消息的时间戳，未连接过时为 0
+     */
+    public record WorkerStatus(String peerId, boolean connected, int freeSlots, int maxSlots,
+                               int inFlight, long lastSeenMs) {
+    }
+
+    private static final class Worker {
+        final String peerId;
+        final Map<String, Dispatch> inFlight = new LinkedHashMap<>();
+        TaskChannel channel;
+        boolean connecting;
+        int free;
+        int max;
+        long lastSeenMs;
+
+        Worker(String peerId) {
+            this.peerId = peerId;
+        }
+    }
+
+    private static final class Dispatch {
+        final String id = UUID.randomUUID().toString();
+        final AutomationTask task;
+        final Consumer<String> progress;
+        final CompletableFuture<TaskResult> future = new CompletableFuture<>();
+        final LocalDateTime submittedAt = LocalDateTime.now();
+        int attempts;
+        long dispatchedAtMs;
+        boolean accepted;
+        Worker worker;
+
+        Dispatch(AutomationTask task, Consumer<String> progress) {
+            this.task = task;
+            this.progress = progress == null ? line -> { } : progress;
+        }
+    }
+
+    public P2pTaskCoordinator(Libp2pEngine engine) {
+        this.engine = engine;
+    }
+
+    @PostConstruct
+    public void init() {
+        for (String id : workerPeerIds.split(",")) {
+            if (!id.isBlank()) {
+                workers.put(id.trim(), new Worker(id.trim()));
+            }
+        }
+        if (workers.isEmpty()) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "kk-p2p-task-coordinator");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1, heartbeatSeconds);
+        scheduler.scheduleWithFixedDelay(this::heartbeat, period, period, TimeUnit.SECONDS);
+        log.info("分布式任务协调端已启用，工作节点: {}", workers.keySet());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        List<TaskChannel> channels = new ArrayList<>();
+        synchronized (this) {
+            for (Worker w : workers.values()) {
+                if (w.channel != null) channels.add(w.channel);
+            }
+            pending.forEach(d -> d.future.complete(failed(d, "协调端已关闭")));
+            pending.clear();
+        }
+        channels.forEach(TaskChannel::close);
+    }
+
+    /**
+     * 提交任务；返回的 Future 在工作端回传结果或重试次数耗尽后完成，不会异常完成
+     */
+    public CompletableFuture<TaskResult> submit(AutomationTask task, Consumer<String> progress) {
+        Dispatch d = new Dispatch(task, progress);
+        if (workers.isEmpty()) {
+            d.future.complete(failed(d, "未配置工作节点（kk.p2p.task.workers）"));
+            return d.future;
+        }
+        synchronized (this) {
+            pending.addLast(d);
+            pump();
+        }
+        return d.future;
+    }
+
+    /**
+     * 取消任务：排队中的直接结束，已派发的通知工作端停止（结果仍由工作端回传）
+     */
+    public synchronized void cancel(String taskId) {
+        for (Dispatch d : pending) {
+            if (d.task.getId().equals(taskId)) {
+                pending.remove(d);
+                d.future.complete(failed(d, "任务已取消"));
+                return;
+            }
+        }
+        for (Worker w : workers.values()) {
+            for (Dispatch d : w.inFlight.values()) {
+                if (d.task.getId().equals(taskId) && w.channel != null) {
+                    w.channel.send(TaskMessage.cancel(d.id));
+                }
+            }
+        }
+    }
+
+    public synchronized List<WorkerStatus> getWorkers() {
+        List<WorkerStatus> list = new ArrayList<>(workers.size());
+        for (Worker w : workers.values()) {
+            list.add(new WorkerStatus(w.peerId, w.channel != null, w.free, w.max, w.inFlight.size(), w.lastSeenMs));
+        }
+        return list;
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 把队首任务派发给空闲名额最多的节点，直到队列为空或没有空闲名额
+     */
+    private void pump() {
+        while (!pending.isEmpty()) {
+            Worker target = workers.values().stream()
+                    .filter(w -> w.channel != null && w.free > 0)
+                    .max(Comparator.comparingInt(w -> w.free))
+                    .orElse(null);
+            if (target == null) return;
+
+            Dispatch d = pending.pollFirst();
+            d.attempts++;
+            d.worker = target;
+            d.dispatchedAtMs = System.currentTimeMillis();
+            target.free--;
+            target.inFlight.put(d.id, d);
+            d.progress.accept("派发到节点 " + target.peerId + " (第 " + d.attempts + " 次)");
+            if (!target.channel.send(TaskMessage.dispatch(d.id, d.task))) {
+                target.inFlight.remove(d.id);
+                retry(d, "派发写入失败");
+            }
+        }
+    }
+
+    private void connect(Worker w) {
+        w.connecting = true;
+        engine.openTaskChannel(w.peerId).whenComplete((channel, ex) -> {
+            synchronized (this) {
+                w.connecting = false;
+                if (ex != null) {
+                    log.debug("连接工作节点 {} 失败: {}", w.peerId, ex.getMessage());
+                    return;
+                }
+                w.channel = channel;
+                w.free = 0;
+                w.lastSeenMs = System.currentTimeMillis();
+            }
+            log.info("已连接工作节点 {}", w.peerId);
+            channel.onClose(() -> onClosed(w, channel));
+            channel.onFrame(json -> onMessage(w, channel, json));
+        });
+    }
+
+    private synchronized void onMessage(Worker w, TaskChannel channel, String json) {
+        if (w.channel != channel) return;
+        JSONObject msg = TaskMessage.parse(json);
+        if (msg == null) {
+            log.debug("忽略无法解析的任务帧: {}", w.peerId);
+            return;
+        }
+        w.lastSeenMs = System.currentTimeMillis();
+
+        String type = msg.getStr("type");
+        if (TaskMessage.CAPACITY.equals(type)) {
+            // 已派发但工作端尚未应答的任务还没有计入它上报的名额
+            int unacked = (int) w.inFlight.values().stream().filter(d -> !d.accepted).count();
+            w.max = msg.getInt("max", 0);
+            w.free = Math.max(0, Math.min(msg.getInt("free", 0), w.max - unacked));
+            pump();
+            return;
+        }
+
+        Dispatch d = w.inFlight.get(msg.getStr("dispatchId"));
+        if (d == null) return;
+        switch (type) {
+            case TaskMessage.ACCEPTED -> d.accepted = true;
+            case TaskMessage.REJECTED -> {
+                w.inFlight.remove(d.id);
+                w.free = 0;
+                // 被拒不算一次执行
+                d.attempts--;
+                retry(d, "节点拒绝: " + msg.getStr("reason"));
+            }
+            case TaskMessage.PROGRESS -> d.progress.accept(msg.getStr("line"));
+            case TaskMessage.RESULT -> {
+                w.inFlight.remove(d.id);
+                TaskResult result;
+                try {
+                    result = TaskMessage.result(msg);
+                } catch (Exception e) {
+                    result = failed(d, "结果反序列化失败: " + e.getMessage());
+                }
+                d.future.complete(result);
+                pump();
+            }
+            default -> log.debug("忽略未知任务消息: {}", type);
+        }
+    }
+
+    private synchronized void onClosed(Worker w, TaskChannel channel) {
+        if (w.channel != channel) return;
+        w.channel = null;
+        w.free = 0;
+        if (w.inFlight.isEmpty()) {
+            log.info("工作节点 {} 已断开", w.peerId);
+            return;
+        }
+        log.warn("工作节点 {} 已断开，{} 个任务未完成", w.peerId, w.inFlight.size());
+        List<Dispatch> lost = new ArrayList<>(w.inFlight.values());
+        w.inFlight.clear();
+        // 倒序放回队首，保持原有先后顺序
+        for (int i = lost.size() - 1; i >= 0; i--) {
+            abandon(lost.get(i), "节点 " + w.peerId + " 断开");
+        }
+        pump();
+    }
+
+    /**
+     * 派发中断：工作端尚未接受时改派，已接受时以失败结果结束，避免重复执行
+     */
+    private void abandon(Dispatch d, String reason) {
+        if (!d.accepted) {
+            retry(d, reason);
+            return;
+        }
+        log.warn("任务 {} 已被节点接受后中断，不自动改派: {}", d.task.getId(), reason);
+        d.future.complete(failed(d, reason + "，任务可能已部分执行，未自动改派"));
+    }
+
+    /**
+     * 放回队首等待改派；次数耗尽时以失败结果结束
+     */
+    private void retry(Dispatch d, String reason) {
+        d.worker = null;
+        d.dispatchedAtMs = 0;
+        d.accepted = false;
+        if (d.attempts >= Math.max(1, maxAttempts)) {
+            log.warn("任务 {} 已派发 {} 次仍失败: {}", d.task.getId(), d.attempts, reason);
+            d.future.complete(failed(d, reason + "，已派发 " + d.attempts + " 次"));
+            return;
+        }
+        d.progress.accept(reason + "，等待改派");
+        pending.addFirst(d);
+    }
+
+    private void heartbeat() {
+        List<TaskChannel> timedOut = new ArrayList<>();
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            for (Worker w : workers.values()) {
+                if (w.channel == null) {
+                    if (!w.connecting) connect(w);
+                    continue;
+                }
+                if (now - w.lastSeenMs > TimeUnit.SECONDS.toMillis(workerTimeoutSeconds)) {
+                    log.warn("工作节点 {} 心跳超时", w.peerId);
+                    timedOut.add(w.channel);
+                    continue;
+                }
+                List<Dispatch> expired = w.inFlight.values().stream()
+                        .filter(d -> now - d.dispatchedAtMs > TimeUnit.SECONDS.toMillis(dispatchTimeoutSeconds))
+                        .toList();
+                for (Dispatch d : expired) {
+                    // 之后到达的结果找不到派发记录，会被忽略
+                    w.inFlight.remove(d.id);
+                    w.channel.send(TaskMessage.cancel(d.id));
+                    abandon(d, "节点 " + w.peerId + " 执行超时");
+                }
+                w.channel.send(TaskMessage.ping());
+            }
+            pump();
+        }
+        // 关闭会回调 onClosed，在锁外执行
+        timedOut.forEach(TaskChannel::close);
+    }
+
+    private static TaskResult failed(Dispatch d, String reason) {
+        return TaskResult.builder()
+                .taskId(d.task.getId())
+                .taskName(d.task.getName())
+                .success(false)
+                .startTime(d.submittedAt)
+                .endTime(LocalDateTime.now())
+                .errorMessage(reason)
+                .build();
+    }
+}
@@ -0,0 +1,354 @@
+package com.kk.p2p.task;
+
+import cn.hutool.json.JSONObject;
+import com.kk.common.exception.KKException;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+import com.kk.common.model.TaskStep;
+import com.kk.common.utils.Placeholders;
+import com.kk.core.service.AutomationExecutor;
+import com.kk.core.service.SchedulerMetrics;
+import com.kk.core.service.TaskScheduler;
+import com.kk.p2p.engine.Libp2pEngine;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * 分布式任务 - 工作端
+ *
+ * 说明：
+ * - 只接受 allowedCoordinators 白名单内节点打开的 /kk-task/1.0.0 流，其余在解析任何帧之前关闭；白名单为空时拒绝所有节点
+ * - 上报与接收用的空闲名额取 slots 剩余与本机调度器空闲并发（含本地任务与排队）中的较小值，满额时直接拒绝，由协调端改派
+ * - 远程任务的文件输出（截图、提取文件、下载）只能写到 outputRoot/{协调端 PeerId}/ 下的相对路径，越界的任务直接拒绝
+ * - 结果超过单帧上限时按 data → logs → stepTimings 的顺序裁剪后回传，避免接收端断流后任务被重复执行
+ * - 任务提交到本机 TaskScheduler，与本地任务一样按优先级排队并受并发上限约束；调度器拒绝时回复 rejected，
+ *   提交成功后才回复 accepted，执行日志在 accepted 之后逐行回传，结束后回传 TaskResult
+ * - 远程任务数变化时向所有已连接的协调端广播 capacity；本地负载的变化随心跳应答上报
+ * - 协调端断开时停止它派发的任务：结果已无法回传，协调端也不会改派已接受的任务
+ */
+@Slf4j
+@Service
+public class P2pTaskWorker {
+
+    /**
+     * 是否接受其他节点派发的任务
+     */
+    @Value("${kk.p2p.task.worker.enabled:false}")
+    private boolean enabled;
+
+    /**
+     * 同时接受的远程任务数上限；实际名额还受本机调度器空闲并发约束
+     */
+    @Value("${kk.p2p.task.worker.slots:2}")
+    private int slots;
+
+    /**
+     * 允许派发任务的协调端 PeerId（Base58，逗号分隔）；为空时拒绝所有节点
+     */
+    @Value("${kk.p2p.task.worker.allowedCoordinators:}")
+    private String allowedCoordinators;
+
+    /**
+     * 远程任务文件输出的根目录，每个协调端一个子目录
+     */
+    @Value("${kk.p2p.task.worker.outputRoot:p2p-tasks}")
+    private String outputRoot;
+
+    /**
+     * 结果超限时保留的最后日志行数
+     */
+    private static final int TRUNCATED_LOG_LINES = 50;
+    private static final int TRUNCATED_ERROR_CHARS = 2000;
+
+    private final Libp2pEngine engine;
+    private final TaskScheduler scheduler;
+    private final AutomationExecutor executor;
+
+    private Set<String> allowed = Set.of();
+    private final Set<TaskChannel> coordinators = ConcurrentHashMap.newKeySet();
+    private final Map<String, Running> running = new ConcurrentHashMap<>();
+
+    private record Running(TaskChannel channel, String taskId) {
+    }
+
+    public P2pTaskWorker(Libp2pEngine engine, @Lazy TaskScheduler scheduler, @Lazy AutomationExecutor executor) {
+        this.engine = engine;
+        this.scheduler = scheduler;
+        this.executor = executor;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            allowed = Arrays.stream(allowedCoordinators.split(","))
+                    .map(String::trim)
+                    .filter(id -> !id.isEmpty())
+                    .collect(Collectors.toUnmodifiableSet());
+            engine.setTaskChannelHandler(allowed::contains, this::attach);
+            if (allowed.isEmpty()) {
+                log.warn("分布式任务工作端已启用，但 kk.p2p.task.worker.allowedCoordinators 为空，将拒绝所有节点");
+            } else {
+                log.info("分布式任务工作端已启用，名额: {}，允许的协调端: {}", slots, allowed.size());
+            }
+        }
+    }
+
+    /**
+     * 空闲名额：远程名额剩余与调度器空闲并发（并发上限减去执行中和排队中的任务）的较小值
+     */
+    public int getFreeSlots() {
+        SchedulerMetrics metrics = scheduler.getMetrics();
+        int schedulerFree = metrics.maxConcurrent() - metrics.running() - metrics.queueDepth();
+        return Math.max(0, Math.min(slots - running.size(), schedulerFree));
+    }
+
+    private void attach(TaskChannel channel) {
+        coordinators.add(channel);
+        channel.onClose(() -> detach(channel));
+        channel.onFrame(json -> onMessage(channel, json));
+        channel.send(TaskMessage.capacity(getFreeSlots(), slots));
+    }
+
+    private void detach(TaskChannel channel) {
+        coordinators.remove(channel);
+        running.values().stream()
+                .filter(r -> r.channel() == channel)
+                .forEach(r -> {
+                    log.info("协调端 {} 已断开，停止远程任务 {}", channel.getRemotePeerId(), r.taskId());
+                    stop(r.taskId());
+                });
+    }
+
+    private void onMessage(TaskChannel channel, String json) {
+        JSONObject msg = TaskMessage.parse(json);
+        if (msg == null) {
+            log.debug("忽略无法解析的任务帧: {}", channel.getRemotePeerId());
+            return;
+        }
+        switch (msg.getStr("type")) {
+            case TaskMessage.PING -> channel.send(TaskMessage.capacity(getFreeSlots(), slots));
+            case TaskMessage.DISPATCH -> dispatch(channel, msg);
+            case TaskMessage.CANCEL -> {
+                Running r = running.get(msg.getStr("dispatchId"));
+                if (r != null && r.channel() == channel) {
+                    stop(r.taskId());
+                }
+            }
+            default -> log.debug("忽略未知任务消息: {}", msg.getStr("type"));
+        }
+    }
+
+    private void dispatch(TaskChannel channel, JSONObject msg) {
+        String dispatchId = msg.getStr("dispatchId");
+        AutomationTask task;
+        try {
+            task = TaskMessage.task(msg);
+        } catch (Exception e) {
+            channel.send(TaskMessage.rejected(dispatchId, "任务反序列化失败: " + e.getMessage()));
+            return;
+        }
+        try {
+            confineOutputs(task, outputDir(channel.getRemotePeerId()));
+        } catch (KKException e) {
+            log.warn("拒绝来自 {} 的远程任务 {}: {}", channel.getRemotePeerId(), task.getId(), e.getMessage());
+            channel.send(TaskMessage.rejected(dispatchId, e.getMessage()));
+            return;
+        }
+
+        synchronized (this) {
+            if (getFreeSlots() <= 0) {
+                channel.send(TaskMessage.rejected(dispatchId, "名额已满"));
+                return;
+            }
+            running.put(dispatchId, new Running(channel, task.getId()));
+        }
+
+        // BLOCK 策略下 submit 可能阻塞，不占用收帧线程
+        Thread.ofVirtual()
+                .name("kk-p2p-task-" + task.getId())
+                .start(() -> submit(channel, dispatchId, task));
+    }
+
+    private void submit(TaskChannel channel, String dispatchId, AutomationTask task) {
+        // 协调端只在收到 accepted 后才认为任务可能已执行，执行日志须在 accepted 之后发出
+        CompletableFuture<Void> replied = new CompletableFuture<>();
+        CompletableFuture<TaskResult> future = scheduler.submit(task, line -> {
+            replied.join();
+            channel.send(TaskMessage.progress(dispatchId, line));
+        });
+        if (future.isCompletedExceptionally() && !future.isCancelled()) {
+            running.remove(dispatchId);
+            String reason = future.handle((r, e) -> unwrap(e).getMessage()).join();
+            log.info("本机调度器拒绝来自 {} 的远程任务 {}: {}", channel.getRemotePeerId(), task.getId(), reason);
+            channel.send(TaskMessage.rejected(dispatchId, reason));
+            replied.complete(null);
+            return;
+        }
+        channel.send(TaskMessage.accepted(dispatchId));
+        replied.complete(null);
+        broadcastCapacity();
+        log.info("接受来自 {} 的远程任务: {} ({})", channel.getRemotePeerId(), task.getName(), task.getId());
+
+        future.whenComplete((result, error) -> {
+            running.remove(dispatchId);
+            TaskResult outcome = result;
+            if (error != null) {
+                Throwable cause = unwrap(error);
+                if (cause instanceof CancellationException) {
+                    outcome = failedResult(task, "远程任务在排队中被停止");
+                } else {
+                    log.error("远程任务执行异常: {}", task.getId(), cause);
+                    outcome = failedResult(task, "工作节点执行异常: " + cause.getMessage());
+                }
+            }
+            if (!channel.send(resultFrame(dispatchId, outcome, engine.getMaxFrameSize()))) {
+                log.warn("远程任务 {} 的结果未能回传（协调端已断开）", task.getId());
+            }
+            broadcastCapacity();
+        });
+    }
+
+    /**
+     * 仍在排队的直接出队，已开始的交给执行器停止
+     */
+    private void stop(String taskId) {
+        if (!scheduler.cancel(taskId)) {
+            executor.stopTask(taskId);
+        }
+    }
+
+    private static TaskResult failedResult(AutomationTask task, String message) {
+        LocalDateTime now = LocalDateTime.now();
+        return TaskResult.builder()
+                .taskId(task.getId())
+                .taskName(task.getName())
+                .success(false)
+                .startTime(now)
+                .endTime(now)
+                .errorMessage(message)
+                .build();
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private Path outputDir(String peerId) {
+        return Path.of(outputRoot).toAbsolutePath().normalize().resolve(peerId);
+    }
+
+    /**
+     * 把会写文件的步骤的输出路径解析变量后限制在 root 下，并改写为绝对路径
+     */
+    static void confineOutputs(AutomationTask task, Path root) {
+        for (TaskStep step : task.getSteps()) {
+            if (step.getType() == null || step.getValue() == null || step.getValue().isBlank()) continue;
+            switch (step.getType()) {
+                case SCREENSHOT, EXTRACT, DOWNLOAD ->
+                        step.setValue(confine(root, Placeholders.resolve(step.getValue(), task.getVariables())));
+                default -> {
+                }
+            }
+        }
+    }
+
+    static String confine(Path root, String path) {
+        if (path.contains("${")) {
+            throw new KKException("远程任务输出路径含未定义的变量: " + path);
+        }
+        Path relative;
+        try {
+            relative = Path.of(path.trim());
+        } catch (InvalidPathException e) {
+            throw new KKException("远程任务输出路径无效: " + path);
+        }
+        if (relative.isAbsolute() || relative.getRoot() != null) {
+            throw new KKException("远程任务输出路径须为相对路径: " + path);
+        }
+        Path target = root.resolve(relative).normalize();
+        if (!target.startsWith(root) || target.equals(root)) {
+            throw new KKException("远程任务输出路径越出输出目录: " + path);
+        }
+        // 保留结尾的分隔符：DOWNLOAD 以此表示输出到目录、文件名取浏览器建议值
+        String trimmed = path.trim();
+        boolean directory = trimmed.endsWith("/") || trimmed.endsWith("\\");
+        return directory ? target + File.separator : target.toString();
+    }
+
+    /**
+     * 生成结果帧；超过单帧上限时依次丢弃 data、只保留最后若干行日志、清空步骤耗时，仍超限时只回传结论
+     */
+    static String resultFrame(String dispatchId, TaskResult result, int max) {
+        List<String> truncated = new ArrayList<>();
+        String frame = TaskMessage.result(dispatchId, result);
+        if (fits(frame, max)) return frame;
+
+        if (result.getData() != null) {
+            result.setData(null);
+            truncated.add("data");
+            frame = TaskMessage.result(dispatchId, result, truncated);
+            if (fits(frame, max)) return logTruncated(result, truncated, frame);
+        }
+        List<String> logs = result.getLogs();
+        if (logs != null && logs.size() > TRUNCATED_LOG_LINES) {
+            result.setLogs(new ArrayList<>(logs.subList(logs.size() - TRUNCATED_LOG_LINES, logs.size())));
+            truncated.add("logs");
+            frame = TaskMessage.result(dispatchId, result, truncated);
+            if (fits(frame, max)) return logTruncated(result, truncated, frame);
+        }
+        result.setStepTimings(new ArrayList<>());
+        result.setSlowSelectors(new ArrayList<>());
+        truncated.add("stepTimings");
+        truncated.add("slowSelectors");
+        frame = TaskMessage.result(dispatchId, result, truncated);
+        if (fits(frame, max)) return logTruncated(result, truncated, frame);
+
+        String error = result.getErrorMessage();
+        TaskResult minimal = TaskResult.builder()
+                .taskId(result.getTaskId())
+                .taskName(result.getTaskName())
+                .success(result.isSuccess())
+                .startTime(result.getStartTime())
+                .endTime(result.getEndTime())
+                .duration(result.getDuration())
+                .profile(result.getProfile())
+                .logFile(result.getLogFile())
+                .errorMessage(error == null || error.length() <= TRUNCATED_ERROR_CHARS
+                        ? error : error.substring(0, TRUNCATED_ERROR_CHARS))
+                .build();
+        return logTruncated(result, List.of("*"), TaskMessage.result(dispatchId, minimal, List.of("*")));
+    }
+
+    private static boolean fits(String frame, int max) {
+        return frame.getBytes(StandardCharsets.UTF_8).length <= max;
+    }
+
+    private static String logTruncated(TaskResult result, List<String> truncated, String frame) {
+        log.warn("远程任务 {} 的结果超过单帧上限，已裁剪: {}", result.getTaskId(), truncated);
+        return frame;
+    }
+
+    private void broadcastCapacity() {
+        String msg = TaskMessage.capacity(getFreeSlots(), slots);
+        coordinators.forEach(c -> c.send(msg));
+    }
+}
@@ -0,0 +1,115 @@
+package com.kk.p2p.task;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * 任务协议（/kk-task/1.0.0）的一条 libp2p 流
+ *
+ * 说明：
+ * - 帧格式与其他协议相同（4 字节长度前缀 + UTF-8 JSON），由 Libp2pEngine 负责拆帧与写帧
+ * - 出站流在 getController 完成之后才能设置监听，之前到达的帧先缓存，设置监听时按序补发
+ * - 任意线程都可以发送；流关闭后发送静默丢弃
+ */
+@Slf4j
+public class TaskChannel {
+
+    private final String remotePeerId;
+    private final Consumer<byte[]> writer;
+    private final Runnable closer;
+    private final List<Runnable> closeListeners = new CopyOnWriteArrayList<>();
+
+    private Consumer<String> listener;
+    private List<String> buffered = new ArrayList<>();
+    private volatile boolean closed;
+
+    public TaskChannel(String remotePeerId, Consumer<byte[]> writer, Runnable closer) {
+        this.remotePeerId = remotePeerId;
+        this.writer = writer;
+        this.closer = closer;
+    }
+
+    public String getRemotePeerId() {
+        return remotePeerId;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * 发送一帧 JSON，返回是否已写出
+     */
+    public boolean send(String json) {
+        if (closed) return false;
+        try {
+            writer.accept(json.getBytes(StandardCharsets.UTF_8));
+            return true;
+        } catch (Exception e) {
+            log.debug("任务流写入失败 {}: {}", remotePeerId, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 设置帧监听，并补发之前缓存的帧
+     */
+    public void onFrame(Consumer<String> listener) {
+        List<String> pending;
+        synchronized (this) {
+            this.listener = listener;
+            pending = buffered;
+            buffered = null;
+        }
+        if (pending != null) {
+            pending.forEach(listener);
+        }
+    }
+
+    public void onClose(Runnable listener) {
+        closeListeners.add(listener);
+        if (closed && closeListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    public void close() {
+        try {
+            closer.run();
+        } catch (Exception e) {
+            log.debug("关闭任务流失败 {}: {}", remotePeerId, e.getMessage());
+        }
+        closed();
+    }
+
+    /**
+     * 由 Libp2pEngine 在收到一帧时调用
+     */
+    public void deliver(String json) {
+        Consumer<String> current;
+        synchronized (this) {
+            if (listener == null) {
+                buffered.add(json);
+                return;
+            }
+            current = listener;
+        }
+        current.accept(json);
+    }
+
+    /**
+     * 由 Libp2pEngine 在流关闭时调用（可重复调用）
+     */
+    public void closed() {
+        if (closed) return;
+        closed = true;
+        List<Runnable> listeners = new ArrayList<>(closeListeners);
+        closeListeners.clear();
+        listeners.forEach(Runnable::run);
+    }
+}
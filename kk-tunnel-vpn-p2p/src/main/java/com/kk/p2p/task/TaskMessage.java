@@ -0,0 +1,104 @@
+package com.kk.p2p.task;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+
+import java.util.List;
+
+/**
+ * 任务协议消息（每帧一个 JSON 对象，type 字段区分）
+ *
+ * 协调端 → 工作端：
+ * - ping：心跳，工作端以 capacity 应答
+ * - dispatch：派发任务 {dispatchId, task}
+ * - cancel：取消任务 {dispatchId}
+ *
+ * 工作端 → 协调端：
+ * - capacity：空闲浏览器名额 {free, max}，连接建立、心跳及名额变化时发送
+ * - accepted / rejected：派发应答，rejected 带 reason
+ * - progress：执行日志 {dispatchId, line}
+ * - result：最终结果 {dispatchId, result, truncated?}，超过单帧上限时按字段裁剪，truncated 列出被裁剪的字段
+ */
+final class TaskMessage {
+
+    static final String PING = "ping";
+    static final String DISPATCH = "dispatch";
+    static final String CANCEL = "cancel";
+    static final String CAPACITY = "capacity";
+    static final String ACCEPTED = "accepted";
+    static final String REJECTED = "rejected";
+    static final String PROGRESS = "progress";
+    static final String RESULT = "result";
+
+    private TaskMessage() {
+    }
+
+    static String ping() {
+        return message(PING).toString();
+    }
+
+    static String capacity(int free, int max) {
+        return message(CAPACITY).set("free", free).set("max", max).toString();
+    }
+
+    static String dispatch(String dispatchId, AutomationTask task) {
+        return message(DISPATCH).set("dispatchId", dispatchId).set("task", JSONUtil.parseObj(task)).toString();
+    }
+
+    static String cancel(String dispatchId) {
+        return message(CANCEL).set("dispatchId", dispatchId).toString();
+    }
+
+    static String accepted(String dispatchId) {
+        return message(ACCEPTED).set("dispatchId", dispatchId).toString();
+    }
+
+    static String rejected(String dispatchId, String reason) {
+        return message(REJECTED).set("dispatchId", dispatchId).set("reason", reason).toString();
+    }
+
+    static String progress(String dispatchId, String line) {
+        return message(PROGRESS).set("dispatchId", dispatchId).set("line", line).toString();
+    }
+
+    static String result(String dispatchId, TaskResult result) {
+        return result(dispatchId, result, List.of());
+    }
+
+    /**
+     * @param truncated 为满足单帧上限而裁剪掉的字段，为空时不写入
+     */
+    static String result(String dispatchId, TaskResult result, List<String> truncated) {
+        JSONObject msg = message(RESULT).set("dispatchId", dispatchId).set("result", JSONUtil.parseObj(result));
+        if (!truncated.isEmpty()) {
+            msg.set("truncated", truncated);
+        }
+        return msg.toString();
+    }
+
+    /**
+     * 解析一帧；格式错误或缺少 type 时返回 null
+     */
+    static JSONObject parse(String json) {
+        try {
+            JSONObject obj = JSONUtil.parseObj(json);
+            return obj.getStr("type") == null ? null : obj;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static AutomationTask task(JSONObject obj) {
+        return obj.getJSONObject("task").toBean(AutomationTask.class);
+    }
+
+    static TaskResult result(JSONObject obj) {
+        return obj.getJSONObject("result").toBean(TaskResult.class);
+    }
+
+    private static JSONObject message(String type) {
+        return new JSONObject().set("type", type);
+    }
+}
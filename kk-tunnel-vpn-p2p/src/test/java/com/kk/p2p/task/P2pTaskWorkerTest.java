@@ -0,0 +1,67 @@
+package com.kk.p2p.task;
+
+import com.kk.common.exception.KKException;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskStep;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class P2pTaskWorkerTest {
+
+    private static final Path ROOT = Path.of("p2p-tasks", "peer-a").toAbsolutePath().normalize();
+
+    @Test
+    void confinesRelativePathsUnderRoot() {
+        assertEquals(ROOT.resolve("shots/a.png").toString(), P2pTaskWorker.confine(ROOT, "shots/a.png"));
+        assertEquals(ROOT.resolve("b.csv").toString(), P2pTaskWorker.confine(ROOT, " ./x/../b.csv "));
+    }
+
+    @Test
+    void keepsTrailingSeparatorForDirectories() {
+        assertEquals(ROOT.resolve("files") + File.separator, P2pTaskWorker.confine(ROOT, "files/"));
+    }
+
+    @Test
+    void rejectsPathsOutsideRoot() {
+        assertThrows(KKException.class, () -> P2pTaskWorker.confine(ROOT, ROOT.resolve("a.png").toString()));
+        assertThrows(KKException.class, () -> P2pTaskWorker.confine(ROOT, "../peer-b/a.png"));
+        assertThrows(KKException.class, () -> P2pTaskWorker.confine(ROOT, "x/../../a.png"));
+        assertThrows(KKException.class, () -> P2pTaskWorker.confine(ROOT, "."));
+        assertThrows(KKException.class, () -> P2pTaskWorker.confine(ROOT, "out/${missing}.csv"));
+    }
+
+    @Test
+    void rewritesOnlyFileWritingSteps() {
+        AutomationTask task = new AutomationTask("远程")
+                .addStep(TaskStep.navigate("https://example.com/${page}"))
+                .addStep(TaskStep.screenshot("${page}/shot.png"))
+                .addStep(TaskStep.extract("li", "t=a", "rows.jsonl"))
+                .addStep(TaskStep.extract("li", "t=a", null))
+                .addStep(TaskStep.download("#export", "files/"));
+        task.setVariables(Map.of("page", "home"));
+
+        P2pTaskWorker.confineOutputs(task, ROOT);
+
+        assertEquals("https://example.com/${page}", task.getSteps().get(0).getValue());
+        assertEquals(ROOT.resolve("home/shot.png").toString(), task.getSteps().get(1).getValue());
+        assertEquals(ROOT.resolve("rows.jsonl").toString(), task.getSteps().get(2).getValue());
+        assertNull(task.getSteps().get(3).getValue());
+        assertEquals(ROOT.resolve("files") + File.separator, task.getSteps().get(4).getValue());
+    }
+
+    @Test
+    void rejectsTaskWritingOutsideRoot() {
+        AutomationTask task = new AutomationTask("远程")
+                .addStep(TaskStep.screenshot("${dir}/shot.png"));
+        task.setVariables(Map.of("dir", "/etc"));
+
+        assertThrows(KKException.class, () -> P2pTaskWorker.confineOutputs(task, ROOT));
+    }
+}
@@ -0,0 +1,144 @@
+package com.kk.p2p.task;
+
+import cn.hutool.json.JSONObject;
+import com.kk.common.model.AutomationTask;
+import com.kk.common.model.TaskResult;
+import com.kk.common.model.TaskStep;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TaskMessageTest {
+
+    @Test
+    void dispatchRoundTrip() {
+        AutomationTask task = new AutomationTask("搜索")
+                .addStep(TaskStep.navigate("https://example.com"))
+                .addStep(TaskStep.fill("#q", "${keyword}", "搜索词"))
+                .addStep(TaskStep.extract("li.item", "title=a; link=a@href", "out/${keyword}.csv"));
+        task.setId("t-1");
+        task.setVariables(Map.of("keyword", "kk"));
+
+        JSONObject msg = TaskMessage.parse(TaskMessage.dispatch("d-1", task));
+
+        assertEquals(TaskMessage.DISPATCH, msg.getStr("type"));
+        assertEquals("d-1", msg.getStr("dispatchId"));
+        AutomationTask decoded = TaskMessage.task(msg);
+        assertEquals("t-1", decoded.getId());
+        assertEquals("搜索", decoded.getName());
+        assertEquals(Map.of("keyword", "kk"), decoded.getVariables());
+        assertEquals(3, decoded.getSteps().size());
+        TaskStep extract = decoded.getSteps().get(2);
+        assertEquals(TaskStep.StepType.EXTRACT, extract.getType());
+        assertEquals("li.item", extract.getSelector());
+        assertEquals("out/${keyword}.csv", extract.getValue());
+        assertEquals("title=a; link=a@href", extract.param("fields"));
+    }
+
+    @Test
+    void resultRoundTrip() {
+        TaskResult result = TaskResult.builder()
+                .taskId("t-1")
+                .taskName("搜索")
+                .success(false)
+                .duration(1234)
+                .logs(new ArrayList<>(List.of("开始", "失败")))
+                .errorMessage("元素不存在: #q")
+                .build();
+
+        JSONObject msg = TaskMessage.parse(TaskMessage.result("d-1", result));
+
+        assertEquals(TaskMessage.RESULT, msg.getStr("type"));
+        assertFalse(msg.containsKey("truncated"));
+        TaskResult decoded = TaskMessage.result(msg);
+        assertEquals("t-1", decoded.getTaskId());
+        assertFalse(decoded.isSuccess());
+        assertEquals(1234, decoded.getDuration());
+        assertEquals(List.of("开始", "失败"), decoded.getLogs());
+        assertEquals("元素不存在: #q", decoded.getErrorMessage());
+    }
+
+    @Test
+    void controlMessagesCarryTheirFields() {
+        JSONObject capacity = TaskMessage.parse(TaskMessage.capacity(1, 4));
+        assertEquals(TaskMessage.CAPACITY, capacity.getStr("type"));
+        assertEquals(1, capacity.getInt("free"));
+        assertEquals(4, capacity.getInt("max"));
+
+        JSONObject rejected = TaskMessage.parse(TaskMessage.rejected("d-2", "没有空闲名额"));
+        assertEquals(TaskMessage.REJECTED, rejected.getStr("type"));
+        assertEquals("d-2", rejected.getStr("dispatchId"));
+        assertEquals("没有空闲名额", rejected.getStr("reason"));
+
+        assertEquals(TaskMessage.PING, TaskMessage.parse(TaskMessage.ping()).getStr("type"));
+    }
+
+    @Test
+    void malformedFramesAreIgnored() {
+        assertNull(TaskMessage.parse("not json"));
+        assertNull(TaskMessage.parse("{\"dispatchId\":\"d-1\"}"));
+    }
+
+    @Test
+    void oversizedResultIsTrimmedToFit() {
+        List<String> logs = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            logs.add("第 " + i + " 行日志 " + "x".repeat(100));
+        }
+        TaskResult result = TaskResult.builder()
+                .taskId("t-1")
+                .success(true)
+                .logs(logs)
+                .data(Map.of("rows", "y".repeat(100_000)))
+                .build();
+        int max = 16 * 1024;
+
+        String frame = P2pTaskWorker.resultFrame("d-1", result, max);
+
+        assertTrue(frame.getBytes(StandardCharsets.UTF_8).length <= max);
+        JSONObject msg = TaskMessage.parse(frame);
+        assertEquals(List.of("data", "logs"), msg.getJSONArray("truncated").toList(String.class));
+        TaskResult decoded = TaskMessage.result(msg);
+        assertTrue(decoded.isSuccess());
+        assertNull(decoded.getData());
+        assertEquals(50, decoded.getLogs().size());
+        assertEquals(logs.get(499), decoded.getLogs().get(49));
+    }
+
+    @Test
+    void resultFallsBackToMinimalFrame() {
+        TaskResult result = TaskResult.builder()
+                .taskId("t-1")
+                .success(false)
+                .errorMessage("e".repeat(50_000))
+                .build();
+        int max = 4 * 1024;
+
+        String frame = P2pTaskWorker.resultFrame("d-1", result, max);
+
+        assertTrue(frame.getBytes(StandardCharsets.UTF_8).length <= max);
+        JSONObject msg = TaskMessage.parse(frame);
+        assertEquals(List.of("*"), msg.getJSONArray("truncated").toList(String.class));
+        TaskResult decoded = TaskMessage.result(msg);
+        assertEquals("t-1", decoded.getTaskId());
+        assertFalse(decoded.isSuccess());
+        assertEquals(2000, decoded.getErrorMessage().length());
+    }
+
+    @Test
+    void smallResultIsSentUntouched() {
+        TaskResult result = TaskResult.builder().taskId("t-1").success(true).data(Map.of("k", "v")).build();
+
+        String frame = P2pTaskWorker.resultFrame("d-1", result, 64 * 1024);
+
+        assertEquals(TaskMessage.result("d-1", result), frame);
+    }
+}
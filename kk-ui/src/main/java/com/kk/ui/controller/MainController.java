@@ -29,7 +29,9 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
@@ -61,6 +63,11 @@ public class MainController extends BaseController {
 
     private static final Gson GSON = new Gson();
 
+    /**
+     * 画布首个导航节点（任务 URL）的 ID：依赖图中其他步骤通过它依赖首个导航
+     */
+    private String rootStepId = "s0";
+
     private String addStepButtonDefaultText;
 
     private boolean editingMode = false;
@@ -149,7 +156,10 @@ public class MainController extends BaseController {
 
         int selectedIndex = stepListView.getSelectionModel().getSelectedIndex();
         if (editingMode && selectedIndex >= 0 && selectedIndex < taskSteps.size() && selectedIndex == editingIndex) {
-            // 编辑模式:更新所选步骤
+            // 编辑模式:更新所选步骤,保留画布上的 ID 与连线
+            TaskStep old = taskSteps.get(selectedIndex);
+            step.setId(old.getId());
+            step.getDependsOn().addAll(old.getDependsOn());
             taskSteps.set(selectedIndex, step);
             stepListView.getItems().set(selectedIndex, formatStep(step));
             appendLog(logTextArea, "✓ 已更新步骤: " + formatStep(step));
@@ -157,6 +167,7 @@ public class MainController extends BaseController {
             handleCancelEdit();
         } else {
             // 新增模式:添加步骤
+            linkToTail(step);
             taskSteps.add(step);
             stepListView.getItems().add(formatStep(step));
             appendLog(logTextArea, "✓ 已添加步骤: " + formatStep(step));
@@ -169,6 +180,39 @@ public class MainController extends BaseController {
         syncStepsToGraph();
     }
 
+    /**
+     * 已是依赖图(画布上有连线)时,新步骤接在列表末尾步骤之后;
+     * 否则未声明依赖的步骤会在空白页面上与其他分支并行执行(编译时会被拒绝)
+     */
+    private void linkToTail(TaskStep step) {
+        if (taskSteps.stream().allMatch(s -> s.getDependsOn().isEmpty())) {
+            return;
+        }
+        String tail = rootStepId;
+        if (!taskSteps.isEmpty()) {
+            TaskStep last = taskSteps.get(taskSteps.size() - 1);
+            if (last.getId() == null || last.getId().isBlank()) {
+                last.setId(nextStepId());
+            }
+            tail = last.getId();
+        }
+        step.setId(nextStepId());
+        step.getDependsOn().add(tail);
+    }
+
+    private String nextStepId() {
+        // 未设置 ID 的步骤在画布上显示为 s<序号>,同样视为已占用
+        Set<String> used = new HashSet<>();
+        used.add(rootStepId);
+        for (int i = 0; i < taskSteps.size(); i++) {
+            String id = taskSteps.get(i).getId();
+            used.add(id == null || id.isBlank() ? "s" + (i + 1) : id);
+        }
+        int n = taskSteps.size() + 1;
+        while (used.contains("s" + n)) n++;
+        return "s" + n;
+    }
+
     @FXML
     private void handleCancelEdit() {
         stepListView.getSelectionModel().clearSelection();
@@ -246,7 +290,7 @@ public class MainController extends BaseController {
 
         AutomationTask task = new AutomationTask("用户自定义任务-" + System.currentTimeMillis());
         task.setHeadless(headlessCheckBox.isSelected());
-        task.addStep(TaskStep.navigate(urlTextField.getText()));
+        task.addStep(TaskStep.navigate(urlTextField.getText()).setId(rootStepId));
 
         // 添加所有步骤
         taskSteps.forEach(task::addStep);
@@ -309,6 +353,22 @@ public class MainController extends BaseController {
         showInfo("提示", "加载任务功能开发中");
     }
 
+    @FXML
+    private void handleSelectorReport() {
+        String report = uiService.getSlowSelectorReport();
+        TextArea reportArea = new TextArea(report);
+        reportArea.setEditable(false);
+        reportArea.setStyle("-fx-font-family: monospace;");
+        reportArea.setPrefSize(860, 420);
+
+        Alert alert = new Alert(Alert.AlertType.INFORMATION);
+        alert.setTitle("慢选择器报表");
+        alert.setHeaderText("按 p95 解析耗时排序；匹配数大于 1 表示选择器不唯一");
+        alert.getDialogPane().setContent(reportArea);
+        alert.setResizable(true);
+        alert.showAndWait();
+    }
+
     @FXML
     private void handleAbout() {
         showInfo("关于",
@@ -607,7 +667,7 @@ public class MainController extends BaseController {
         // 头部导航步骤(从任务配置读取)
         String url = urlTextField == null ? "" : urlTextField.getText();
         JsonObject nav = new JsonObject();
-        nav.addProperty("id", "s0");
+        nav.addProperty("id", rootStepId);
         nav.addProperty("type", "nav");
         nav.addProperty("action", "导航");
         nav.addProperty("label", "打开页面");
@@ -617,7 +677,7 @@ public class MainController extends BaseController {
 
         for (int i = 0; i < taskSteps.size(); i++) {
             TaskStep step = taskSteps.get(i);
-            String id = "s" + (i + 1);
+            String id = step.getId() != null && !step.getId().isBlank() ? step.getId() : "s" + (i + 1);
             String action = toActionLabel(step.getType());
 
             String type = stepTypeToFlowType(step.getType());
@@ -634,6 +694,10 @@ public class MainController extends BaseController {
             obj.addProperty("label", step.getDescription() == null ? formatStep(step) : step.getDescription());
             obj.addProperty("fieldLabel", fieldLabel);
             obj.addProperty("value", fieldValue);
+            // 依赖图：画布按 dependsOn 连线；所有步骤都未声明依赖时画布按顺序连成一条链
+            if (step.getDependsOn() != null && !step.getDependsOn().isEmpty()) {
+                obj.add("dependsOn", GSON.toJsonTree(step.getDependsOn()));
+            }
             arr.add(obj);
         }
 
@@ -680,15 +744,24 @@ public class MainController extends BaseController {
                 String action = o.has("action") ? o.get("action").getAsString() : "";
                 String label = o.has("label") ? o.get("label").getAsString() : "";
                 String value = o.has("value") ? o.get("value").getAsString() : "";
+                String id = o.has("id") && !o.get("id").isJsonNull() ? o.get("id").getAsString() : null;
 
                 // 第一条 nav:同步到 URL 输入框,不计入 taskSteps
                 if (i == 0 && "nav".equals(type)) {
                     if (urlTextField != null) urlTextField.setText(value == null ? "" : value);
+                    if (id != null) rootStepId = id;
                     continue;
                 }
 
                 TaskStep step = new TaskStep();
                 step.setDescription(label);
+                step.setId(id);
+                // 画布连线即依赖:分叉的分支并行执行,汇合节点等待所有上游
+                if (o.has("dependsOn") && o.get("dependsOn").isJsonArray()) {
+                    for (JsonElement dep : o.getAsJsonArray("dependsOn")) {
+                        step.getDependsOn().add(dep.getAsString());
+                    }
+                }
 
                 switch (type) {
                     case "click" -> {
@@ -727,6 +800,11 @@ public class MainController extends BaseController {
                 newSteps.add(step);
             }
 
+            // 画布只是一条链时不保留依赖,列表编辑(上移/下移)仍按顺序生效
+            if (isChain(newSteps)) {
+                newSteps.forEach(step -> step.getDependsOn().clear());
+            }
+
             // 刷新列表(会触发 selection listener,这里先清空选择)
             handleCancelEdit();
             taskSteps.setAll(newSteps);
@@ -741,6 +819,17 @@ public class MainController extends BaseController {
         }
     }
 
+    private boolean isChain(List<TaskStep> steps) {
+        String prev = rootStepId;
+        for (TaskStep step : steps) {
+            if (step.getDependsOn().size() != 1 || !step.getDependsOn().get(0).equals(prev)) {
+                return false;
+            }
+            prev = step.getId();
+        }
+        return true;
+    }
+
     private TaskStep.StepType fromActionLabel(String action) {
         String a = action == null ? "" : action;
         return switch (a) {
@@ -43,4 +43,9 @@ public interface UIService {
      * 加载示例任务
      */
     AutomationTask loadDemoTask();
+
+    /**
+     * 最慢选择器报表（跨任务累计）
+     */
+    String getSlowSelectorReport();
 }
\ No newline at end of file
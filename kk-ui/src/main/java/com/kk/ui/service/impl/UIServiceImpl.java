@@ -3,15 +3,18 @@ package com.kk.ui.service.impl;
 import com.kk.common.model.AutomationTask;
 import com.kk.common.model.TaskResult;
 import com.kk.common.model.TaskStep;
+import com.kk.core.metrics.SelectorStatsRegistry;
 import com.kk.core.repository.TaskRepository;
 import com.kk.core.service.AutomationExecutor;
+import com.kk.core.service.TaskScheduler;
 import com.kk.ui.service.UIService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
 
 @Slf4j
 @Service
@@ -19,24 +22,37 @@ import java.util.concurrent.CompletableFuture;
 public class UIServiceImpl implements UIService {
 
     private final AutomationExecutor automationExecutor;
+    private final TaskScheduler taskScheduler;
     private final TaskRepository taskRepository;
+    private final SelectorStatsRegistry selectorStatsRegistry;
+
+    /**
+     * 报表中列出的最慢选择器个数
+     */
+    private static final int SELECTOR_REPORT_SIZE = 20;
 
     @Override
     public void executeTask(AutomationTask task) {
-        CompletableFuture.runAsync(() -> {
-            try {
-                automationExecutor.executeTask(task, message ->
-                        log.info("Task log: {}", message)
-                );
-            } catch (Exception e) {
-                log.error("任务执行失败", e);
-            }
-        });
+        // 完整执行日志已写入 TaskResult.logFile，这里只在调试级别转发
+        taskScheduler.submit(task, message -> log.debug("Task log: {}", message))
+                .exceptionally(e -> {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    if (cause instanceof CancellationException) {
+                        // 排队中被用户停止，不是执行失败
+                        log.info("任务已在排队中停止: {}", task.getName());
+                    } else {
+                        log.error("任务执行失败", cause);
+                    }
+                    return null;
+                });
     }
 
     @Override
     public void stopTask(String taskId) {
-        automationExecutor.stopTask(taskId);
+        // 仍在排队的任务直接出队，已开始的交给执行器停止
+        if (!taskScheduler.cancel(taskId)) {
+            automationExecutor.stopTask(taskId);
+        }
     }
 
     @Override
@@ -69,4 +85,9 @@ public class UIServiceImpl implements UIService {
         task.addStep(TaskStep.screenshot("./screenshots/baidu-result.png"));
         return task;
     }
+
+    @Override
+    public String getSlowSelectorReport() {
+        return selectorStatsRegistry.report(SELECTOR_REPORT_SIZE);
+    }
 }
\ No newline at end of file